@@ -0,0 +1,432 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * An export of the files of a commit as a tar or zip archive. The files'
+ * contents are streamed from their blobs in the object store without
+ * reading whole blobs: the serialized form of a blob begins with the
+ * length of its contents, followed by the contents themselves, so the
+ * header is parsed and the contents are copied as they are. A reader
+ * thread fills a fixed pool of buffers with the contents of the files in
+ * order, ahead of the thread writing the archive, so memory holds at most
+ * the pool whatever the size of the files.
+ * @author Aishik Bhattacharyya
+ */
+class Archive {
+
+    /**
+     * Archive of FILES, blobs in the directory BLOBS, dated TIME.
+     * @param blobs Blobs directory.
+     * @param files Blob IDs of files, by path.
+     * @param time Time of the files, in milliseconds since the epoch.
+     */
+    Archive(File blobs, Map<String, ObjectId> files, long time) {
+        _blobs = blobs;
+        _files = files;
+        _time = time;
+    }
+
+    /**
+     * Write the archive to OUT in tar format, or in zip format if ZIP.
+     * @param out Stream to write to, which is closed.
+     * @param zip Whether to write a zip archive.
+     * @throws IOException If a blob cannot be read or OUT written.
+     */
+    void write(OutputStream out, boolean zip) throws IOException {
+        BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(BUFFERS);
+        for (int k = 0; k < BUFFERS; k += 1) {
+            free.add(new byte[BUFFER_SIZE]);
+        }
+        BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(BUFFERS + 2);
+        Thread reader = new Thread(() -> read(free, filled));
+        reader.setDaemon(true);
+        reader.start();
+        OutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+        try (OutputStream archive = zip ? new ZipOutputStream(buffered)
+                : buffered) {
+            long remaining = 0;
+            while (true) {
+                Chunk chunk = filled.take();
+                if (chunk.error != null) {
+                    throw chunk.error;
+                } else if (chunk.path == null && chunk.data == null) {
+                    break;
+                } else if (chunk.path != null) {
+                    if (zip) {
+                        ZipEntry entry = new ZipEntry(chunk.path);
+                        entry.setTime(_time);
+                        ((ZipOutputStream) archive).putNextEntry(entry);
+                    } else {
+                        pad(archive, remaining);
+                        writeTarHeader(archive, chunk.path, chunk.size);
+                        remaining = chunk.size;
+                    }
+                } else {
+                    archive.write(chunk.data, 0, chunk.length);
+                    free.put(chunk.data);
+                }
+            }
+            if (!zip) {
+                pad(archive, remaining);
+                archive.write(new byte[2 * BLOCK_SIZE]);
+            }
+        } catch (InterruptedException excp) {
+            throw new IOException(excp);
+        } finally {
+            reader.interrupt();
+        }
+    }
+
+    /**
+     * Read the contents of the files in order into buffers taken from
+     * FREE, adding a chunk to FILLED at the start of each file, for each
+     * buffer, and at the end.
+     * @param free Empty buffers.
+     * @param filled Chunks to write.
+     */
+    private void read(BlockingQueue<byte[]> free,
+                      BlockingQueue<Chunk> filled) {
+        try {
+            try {
+                for (Map.Entry<String, ObjectId> file : _files.entrySet()) {
+                    try (DataInputStream in = openContents(
+                            new File(_blobs, file.getValue().toString()))) {
+                        long size = in.readInt();
+                        filled.put(new Chunk(file.getKey(), size, null, 0));
+                        while (size > 0) {
+                            byte[] buffer = free.take();
+                            int length = (int) Math.min(size, buffer.length);
+                            in.readFully(buffer, 0, length);
+                            filled.put(new Chunk(null, 0, buffer, length));
+                            size -= length;
+                        }
+                    }
+                }
+                filled.put(new Chunk(null, 0, null, 0));
+            } catch (IOException | IllegalArgumentException excp) {
+                Chunk error = new Chunk(null, 0, null, 0);
+                error.error = excp instanceof IOException
+                        ? (IOException) excp : new IOException(excp);
+                filled.put(error);
+            }
+        } catch (InterruptedException excp) {
+            return;
+        }
+    }
+
+    /**
+     * Returns a stream of the length of the contents of the blob in FILE,
+     * as an int, followed by the contents. If the blob is not laid out
+     * as expected, it is read whole instead.
+     * @param file Blob file.
+     * @return Stream positioned at the length of the contents.
+     * @throws IOException If FILE cannot be read.
+     */
+    private static DataInputStream openContents(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file), BLOCK_SIZE));
+        try {
+            if (in.readShort() == ObjectStreamConstants.STREAM_MAGIC
+                    && in.readShort() == ObjectStreamConstants.STREAM_VERSION
+                    && in.readByte() == ObjectStreamConstants.TC_OBJECT
+                    && skipBlobDescriptor(in)
+                    && in.readByte() == ObjectStreamConstants.TC_ARRAY
+                    && skipClassDescriptor(in)) {
+                return in;
+            }
+        } catch (IOException excp) {
+            /* Fall through to reading the blob whole. */
+        }
+        in.close();
+        byte[] contents = Utils.readObject(file, Blob.class).getContents();
+        if (contents == null) {
+            contents = new byte[0];
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(contents.length);
+        data.write(contents);
+        return new DataInputStream(new ByteArrayInputStream(
+                bytes.toByteArray()));
+    }
+
+    /**
+     * Skip the class descriptor of Blob in IN, checking that the contents
+     * are its first field written.
+     * @param in Stream positioned at the descriptor.
+     * @return boolean if the descriptor is Blob's and the contents come
+     *         first.
+     * @throws IOException If IN cannot be read.
+     */
+    private static boolean skipBlobDescriptor(DataInputStream in)
+            throws IOException {
+        if (in.readByte() != ObjectStreamConstants.TC_CLASSDESC
+                || !in.readUTF().equals(Blob.class.getName())) {
+            return false;
+        }
+        in.readLong();
+        in.readByte();
+        int fields = in.readShort();
+        boolean first = true;
+        for (int k = 0; k < fields; k += 1) {
+            char type = (char) in.readByte();
+            String name = in.readUTF();
+            if (type != '[' && type != 'L') {
+                return false;
+            }
+            if (first && !name.equals("_contents")) {
+                return false;
+            }
+            first = false;
+            byte tag = in.readByte();
+            if (tag == ObjectStreamConstants.TC_STRING) {
+                in.readUTF();
+            } else if (tag == ObjectStreamConstants.TC_REFERENCE) {
+                in.readInt();
+            } else {
+                return false;
+            }
+        }
+        return !first
+                && in.readByte() == ObjectStreamConstants.TC_ENDBLOCKDATA
+                && in.readByte() == ObjectStreamConstants.TC_NULL;
+    }
+
+    /**
+     * Skip the class descriptor of a byte array in IN.
+     * @param in Stream positioned at the descriptor.
+     * @return boolean if it describes a byte array.
+     * @throws IOException If IN cannot be read.
+     */
+    private static boolean skipClassDescriptor(DataInputStream in)
+            throws IOException {
+        byte tag = in.readByte();
+        if (tag == ObjectStreamConstants.TC_REFERENCE) {
+            in.readInt();
+            return true;
+        }
+        if (tag != ObjectStreamConstants.TC_CLASSDESC
+                || !in.readUTF().equals("[B")) {
+            return false;
+        }
+        in.readLong();
+        in.readByte();
+        return in.readShort() == 0
+                && in.readByte() == ObjectStreamConstants.TC_ENDBLOCKDATA
+                && in.readByte() == ObjectStreamConstants.TC_NULL;
+    }
+
+    /**
+     * Write the ustar header of the file at PATH holding SIZE bytes to
+     * OUT, preceded by a pax header giving the path if it does not fit.
+     * @param out Archive.
+     * @param path Path of file.
+     * @param size Size of file.
+     * @throws IOException If OUT cannot be written.
+     */
+    private void writeTarHeader(OutputStream out, String path, long size)
+            throws IOException {
+        byte[] name = path.getBytes(StandardCharsets.UTF_8);
+        int split = -1;
+        if (name.length > NAME_LENGTH) {
+            for (int k = name.length - NAME_LENGTH - 1; k < name.length;
+                    k += 1) {
+                if (k > 0 && name[k] == '/' && k <= PREFIX_LENGTH) {
+                    split = k;
+                    break;
+                }
+            }
+            if (split < 0) {
+                byte[] record = paxRecord("path", name);
+                out.write(tarHeader("PaxHeader".getBytes(
+                        StandardCharsets.UTF_8), null, record.length, 'x'));
+                out.write(record);
+                pad(out, record.length);
+                name = Arrays.copyOf(name, NAME_LENGTH);
+            }
+        }
+        if (split < 0) {
+            out.write(tarHeader(name, null, size, '0'));
+        } else {
+            out.write(tarHeader(Arrays.copyOfRange(name, split + 1,
+                    name.length), Arrays.copyOf(name, split), size, '0'));
+        }
+    }
+
+    /**
+     * Returns a ustar header.
+     * @param name Name field.
+     * @param prefix Prefix field, or null.
+     * @param size Size of entry.
+     * @param type Type flag.
+     * @return Header block.
+     */
+    private byte[] tarHeader(byte[] name, byte[] prefix, long size,
+                             char type) {
+        byte[] header = new byte[BLOCK_SIZE];
+        System.arraycopy(name, 0, header, 0, name.length);
+        octal(header, 100, 8, FILE_MODE);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, _time / 1000);
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        header[156] = (byte) type;
+        System.arraycopy("ustar\00000".getBytes(StandardCharsets.US_ASCII),
+                0, header, 257, 8);
+        if (prefix != null) {
+            System.arraycopy(prefix, 0, header, 345, prefix.length);
+        }
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        octal(header, 148, 7, sum);
+        return header;
+    }
+
+    /**
+     * Write VALUE in octal into the LENGTH bytes of HEADER at OFFSET,
+     * zero-padded and followed by a NUL.
+     * @param header Header block.
+     * @param offset Offset of field.
+     * @param length Length of field.
+     * @param value Value.
+     */
+    private static void octal(byte[] header, int offset, int length,
+                              long value) {
+        String digits = String.format("%0" + (length - 1) + "o", value);
+        System.arraycopy(digits.getBytes(StandardCharsets.US_ASCII), 0,
+                header, offset, length - 1);
+        header[offset + length - 1] = 0;
+    }
+
+    /**
+     * Returns the pax extended header record setting KEY to VALUE.
+     * @param key Keyword.
+     * @param value Value.
+     * @return Record, "LENGTH KEY=VALUE\n".
+     */
+    private static byte[] paxRecord(String key, byte[] value) {
+        int rest = key.length() + value.length + 3;
+        int length = rest + 1;
+        while (length != rest + Integer.toString(length).length()) {
+            length = rest + Integer.toString(length).length();
+        }
+        byte[] head = (length + " " + key + "=")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] result = Arrays.copyOf(head, length);
+        System.arraycopy(value, 0, result, head.length, value.length);
+        result[length - 1] = '\n';
+        return result;
+    }
+
+    /**
+     * Write the zeros that pad an entry of SIZE bytes to a whole number of
+     * blocks to OUT.
+     * @param out Archive.
+     * @param size Size of entry.
+     * @throws IOException If OUT cannot be written.
+     */
+    private static void pad(OutputStream out, long size) throws IOException {
+        int rest = (int) (size % BLOCK_SIZE);
+        if (rest != 0) {
+            out.write(new byte[BLOCK_SIZE - rest]);
+        }
+    }
+
+    /**
+     * A piece of work for the writer: the start of a file, a buffer of
+     * its contents, the end of the archive, or an error.
+     */
+    private static final class Chunk {
+        /**
+         * Start of the file at PATH of SIZE bytes, or DATA holding LENGTH
+         * bytes of contents, or the end if both are null.
+         * @param path Path of file, or null.
+         * @param size Size of file.
+         * @param data Buffer of contents, or null.
+         * @param length Number of bytes in DATA.
+         */
+        Chunk(String path, long size, byte[] data, int length) {
+            this.path = path;
+            this.size = size;
+            this.data = data;
+            this.length = length;
+        }
+
+        /** Path of file starting, or null. */
+        private final String path;
+        /** Size of file starting. */
+        private final long size;
+        /** Buffer of contents, or null. */
+        private final byte[] data;
+        /** Number of bytes of contents in DATA. */
+        private final int length;
+        /** Error reading the blobs, or null. */
+        private IOException error;
+    }
+
+    /**
+     * Size of the buffers the contents are read into.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Number of buffers the reader may fill ahead of the writer.
+     */
+    private static final int BUFFERS = 16;
+
+    /**
+     * Size of a tar block.
+     */
+    private static final int BLOCK_SIZE = 512;
+
+    /**
+     * Length of the name field of a ustar header.
+     */
+    private static final int NAME_LENGTH = 100;
+
+    /**
+     * Length of the prefix field of a ustar header.
+     */
+    private static final int PREFIX_LENGTH = 155;
+
+    /**
+     * Mode of the files archived.
+     */
+    private static final int FILE_MODE = 0644;
+
+    /**
+     * Blobs directory.
+     */
+    private final File _blobs;
+
+    /**
+     * Blob IDs of the files, by path.
+     */
+    private final Map<String, ObjectId> _files;
+
+    /**
+     * Time of the files, in milliseconds since the epoch.
+     */
+    private final long _time;
+}
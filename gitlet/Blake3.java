@@ -0,0 +1,332 @@
+package gitlet;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The BLAKE3 hash function (default 32-byte output, unkeyed). BLAKE3
+ * hashes its input as a binary tree of 1 KiB chunks, so the two halves of
+ * a large input can be hashed independently; inputs of at least
+ * PARALLEL_THRESHOLD bytes are split across the common fork-join pool.
+ * @author Aishik Bhattacharyya
+ */
+class Blake3 {
+
+    /**
+     * Returns the 32-byte BLAKE3 hash of INPUT.
+     * @param input Bytes to hash.
+     * @return Hash of INPUT.
+     */
+    static byte[] hash(byte[] input) {
+        long[] root;
+        if (input.length <= CHUNK_LEN) {
+            root = chunkOutput(input, 0, input.length, 0);
+        } else if (input.length >= PARALLEL_THRESHOLD) {
+            root = ForkJoinPool.commonPool().invoke(
+                    new Subtree(input, 0, input.length, 0));
+        } else {
+            root = subtreeOutput(input, 0, input.length, 0);
+        }
+        int[] words = compress(root, ROOT);
+        byte[] result = new byte[OUT_LEN];
+        for (int i = 0; i < OUT_LEN; i += 1) {
+            result[i] = (byte) (words[i / 4] >>> (8 * (i % 4)));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the output of the subtree covering INPUT[START .. START + LEN),
+     * whose first chunk is number COUNTER, where LEN is more than one chunk.
+     * Outputs are packed as described for chunkOutput.
+     * @param input Bytes being hashed.
+     * @param start Start of subtree.
+     * @param len Length of subtree.
+     * @param counter Index of first chunk.
+     * @return Parent node output of subtree.
+     */
+    private static long[] subtreeOutput(byte[] input, int start, int len,
+                                        long counter) {
+        int leftLen = leftLength(len);
+        int[] left = chainingValue(input, start, leftLen, counter);
+        int[] right = chainingValue(input, start + leftLen, len - leftLen,
+                counter + leftLen / CHUNK_LEN);
+        return parentOutput(left, right);
+    }
+
+    /**
+     * Returns the chaining value of the subtree covering
+     * INPUT[START .. START + LEN), whose first chunk is number COUNTER.
+     * @param input Bytes being hashed.
+     * @param start Start of subtree.
+     * @param len Length of subtree.
+     * @param counter Index of first chunk.
+     * @return Eight-word chaining value.
+     */
+    private static int[] chainingValue(byte[] input, int start, int len,
+                                       long counter) {
+        long[] output = len <= CHUNK_LEN
+                ? chunkOutput(input, start, len, counter)
+                : subtreeOutput(input, start, len, counter);
+        return compress(output, 0);
+    }
+
+    /**
+     * Returns the number of bytes in the left subtree of a tree over LEN
+     * bytes: the largest power-of-two number of whole chunks that leaves
+     * at least one byte for the right subtree.
+     * @param len Length of tree, more than one chunk.
+     * @return Length of left subtree.
+     */
+    private static int leftLength(int len) {
+        int fullChunks = (len - 1) / CHUNK_LEN;
+        return Integer.highestOneBit(fullChunks) * CHUNK_LEN;
+    }
+
+    /**
+     * Returns the output of the chunk INPUT[START .. START + LEN) numbered
+     * COUNTER, before its last compression. An output is packed as 8 words
+     * of input chaining value, 16 words of block, then the counter, block
+     * length and flags, each widened to a long.
+     * @param input Bytes being hashed.
+     * @param start Start of chunk.
+     * @param len Length of chunk, at most CHUNK_LEN.
+     * @param counter Index of chunk.
+     * @return Chunk output.
+     */
+    private static long[] chunkOutput(byte[] input, int start, int len,
+                                      long counter) {
+        int[] cv = IV.clone();
+        int[] block = new int[BLOCK_WORDS];
+        int pos = 0;
+        int flags = CHUNK_START;
+        while (len - pos > BLOCK_LEN) {
+            readBlock(input, start + pos, BLOCK_LEN, block);
+            int[] out = compress(cv, block, counter, BLOCK_LEN, flags);
+            System.arraycopy(out, 0, cv, 0, 8);
+            flags = 0;
+            pos += BLOCK_LEN;
+        }
+        int blockLen = len - pos;
+        readBlock(input, start + pos, blockLen, block);
+        return packOutput(cv, block, counter, blockLen, flags | CHUNK_END);
+    }
+
+    /**
+     * Returns the output of the parent node over chaining values LEFT and
+     * RIGHT, packed as described for chunkOutput.
+     * @param left Chaining value of left child.
+     * @param right Chaining value of right child.
+     * @return Parent output.
+     */
+    private static long[] parentOutput(int[] left, int[] right) {
+        int[] block = new int[BLOCK_WORDS];
+        System.arraycopy(left, 0, block, 0, 8);
+        System.arraycopy(right, 0, block, 8, 8);
+        return packOutput(IV, block, 0, BLOCK_LEN, PARENT);
+    }
+
+    /**
+     * Packs the arguments of a pending compression into one array.
+     * @param cv Input chaining value.
+     * @param block Message block.
+     * @param counter Chunk counter.
+     * @param blockLen Number of message bytes in BLOCK.
+     * @param flags Domain flags.
+     * @return Packed output.
+     */
+    private static long[] packOutput(int[] cv, int[] block, long counter,
+                                     int blockLen, int flags) {
+        long[] result = new long[27];
+        for (int i = 0; i < 8; i += 1) {
+            result[i] = cv[i];
+        }
+        for (int i = 0; i < BLOCK_WORDS; i += 1) {
+            result[8 + i] = block[i];
+        }
+        result[24] = counter;
+        result[25] = blockLen;
+        result[26] = flags;
+        return result;
+    }
+
+    /**
+     * Performs the compression packed in OUTPUT with EXTRAFLAGS added.
+     * @param output Packed output.
+     * @param extraFlags Flags to add, such as ROOT.
+     * @return First eight words of the compression.
+     */
+    private static int[] compress(long[] output, int extraFlags) {
+        int[] cv = new int[8];
+        int[] block = new int[BLOCK_WORDS];
+        for (int i = 0; i < 8; i += 1) {
+            cv[i] = (int) output[i];
+        }
+        for (int i = 0; i < BLOCK_WORDS; i += 1) {
+            block[i] = (int) output[8 + i];
+        }
+        int[] out = compress(cv, block, output[24], (int) output[25],
+                (int) output[26] | extraFlags);
+        int[] result = new int[8];
+        System.arraycopy(out, 0, result, 0, 8);
+        return result;
+    }
+
+    /**
+     * Read the LEN bytes of INPUT at START into BLOCK as little-endian
+     * words, zero-padding to a full block.
+     * @param input Bytes being hashed.
+     * @param start Start of block.
+     * @param len Number of bytes, at most BLOCK_LEN.
+     * @param block Sixteen words to fill.
+     */
+    private static void readBlock(byte[] input, int start, int len,
+                                  int[] block) {
+        java.util.Arrays.fill(block, 0);
+        for (int i = 0; i < len; i += 1) {
+            block[i / 4] |= (input[start + i] & 0xff) << (8 * (i % 4));
+        }
+    }
+
+    /**
+     * The BLAKE3 compression function.
+     * @param cv Input chaining value.
+     * @param block Message block.
+     * @param counter Chunk counter.
+     * @param blockLen Number of message bytes in BLOCK.
+     * @param flags Domain flags.
+     * @return Sixteen output words.
+     */
+    private static int[] compress(int[] cv, int[] block, long counter,
+                                  int blockLen, int flags) {
+        int[] s = {
+            cv[0], cv[1], cv[2], cv[3], cv[4], cv[5], cv[6], cv[7],
+            IV[0], IV[1], IV[2], IV[3],
+            (int) counter, (int) (counter >>> 32), blockLen, flags
+        };
+        int[] m = block.clone();
+        for (int r = 0; r < ROUNDS; r += 1) {
+            g(s, 0, 4, 8, 12, m[0], m[1]);
+            g(s, 1, 5, 9, 13, m[2], m[3]);
+            g(s, 2, 6, 10, 14, m[4], m[5]);
+            g(s, 3, 7, 11, 15, m[6], m[7]);
+            g(s, 0, 5, 10, 15, m[8], m[9]);
+            g(s, 1, 6, 11, 12, m[10], m[11]);
+            g(s, 2, 7, 8, 13, m[12], m[13]);
+            g(s, 3, 4, 9, 14, m[14], m[15]);
+            int[] permuted = new int[BLOCK_WORDS];
+            for (int i = 0; i < BLOCK_WORDS; i += 1) {
+                permuted[i] = m[PERMUTATION[i]];
+            }
+            m = permuted;
+        }
+        for (int i = 0; i < 8; i += 1) {
+            s[i] ^= s[i + 8];
+            s[i + 8] ^= cv[i];
+        }
+        return s;
+    }
+
+    /**
+     * The BLAKE3 quarter-round on words A, B, C and D of state S, mixing in
+     * message words MX and MY.
+     */
+    private static void g(int[] s, int a, int b, int c, int d,
+                          int mx, int my) {
+        s[a] = s[a] + s[b] + mx;
+        s[d] = Integer.rotateRight(s[d] ^ s[a], 16);
+        s[c] = s[c] + s[d];
+        s[b] = Integer.rotateRight(s[b] ^ s[c], 12);
+        s[a] = s[a] + s[b] + my;
+        s[d] = Integer.rotateRight(s[d] ^ s[a], 8);
+        s[c] = s[c] + s[d];
+        s[b] = Integer.rotateRight(s[b] ^ s[c], 7);
+    }
+
+    /**
+     * Fork-join task computing the output of one subtree, hashing its two
+     * halves in parallel while they are large enough to be worth it.
+     */
+    private static class Subtree extends RecursiveTask<long[]> {
+        /**
+         * Task for the subtree INPUT[START .. START + LEN) whose first
+         * chunk is number COUNTER.
+         */
+        Subtree(byte[] input, int start, int len, long counter) {
+            _input = input;
+            _start = start;
+            _len = len;
+            _counter = counter;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (_len <= CHUNK_LEN) {
+                return chunkOutput(_input, _start, _len, _counter);
+            } else if (_len < PARALLEL_GRAIN) {
+                return subtreeOutput(_input, _start, _len, _counter);
+            }
+            int leftLen = leftLength(_len);
+            Subtree left = new Subtree(_input, _start, leftLen, _counter);
+            Subtree right = new Subtree(_input, _start + leftLen,
+                    _len - leftLen, _counter + leftLen / CHUNK_LEN);
+            left.fork();
+            int[] rightCv = compress(right.compute(), 0);
+            int[] leftCv = compress(left.join(), 0);
+            return parentOutput(leftCv, rightCv);
+        }
+
+        /** Bytes being hashed. */
+        private final byte[] _input;
+        /** Start of subtree. */
+        private final int _start;
+        /** Length of subtree. */
+        private final int _len;
+        /** Index of first chunk of subtree. */
+        private final long _counter;
+    }
+
+    /** Number of bytes in a hash. */
+    static final int OUT_LEN = 32;
+
+    /** Number of bytes in a chunk. */
+    static final int CHUNK_LEN = 1024;
+
+    /** Number of bytes in a block. */
+    static final int BLOCK_LEN = 64;
+
+    /** Number of words in a block. */
+    private static final int BLOCK_WORDS = 16;
+
+    /** Number of rounds in the compression function. */
+    private static final int ROUNDS = 7;
+
+    /** Smallest input hashed on more than one core. */
+    static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    /** Smallest subtree split into parallel tasks. */
+    private static final int PARALLEL_GRAIN = 1 << 16;
+
+    /** Flag for the first block of a chunk. */
+    private static final int CHUNK_START = 1;
+
+    /** Flag for the last block of a chunk. */
+    private static final int CHUNK_END = 2;
+
+    /** Flag for parent nodes. */
+    private static final int PARENT = 4;
+
+    /** Flag for the root node. */
+    private static final int ROOT = 8;
+
+    /** Initialization vector, shared with SHA-256. */
+    private static final int[] IV = {
+        0x6A09E667, 0xBB67AE85, 0x3C6EF372, 0xA54FF53A,
+        0x510E527F, 0x9B05688C, 0x1F83D9AB, 0x5BE0CD19
+    };
+
+    /** Permutation applied to message words between rounds. */
+    private static final int[] PERMUTATION = {
+        2, 6, 3, 10, 7, 0, 4, 13, 1, 11, 12, 5, 9, 14, 15, 8
+    };
+}
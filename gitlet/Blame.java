@@ -0,0 +1,215 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Attribution of each line of a file to the commit that last changed it.
+ * History is walked back through parent links one version at a time: a
+ * parent holding the same blob for the file takes over all of its lines
+ * without any diff, and lines are diffed only where the file actually
+ * changed. Finished attributions are cached per commit and path, so a
+ * later blame stops as soon as its walk reaches a commit blamed before.
+ * @author Aishik Bhattacharyya
+ */
+class Blame {
+
+    /**
+     * Returns the commit that last changed each line of the file at PATH
+     * as of commit HEAD.
+     * @param head ID of commit.
+     * @param path Path of file.
+     * @return ID of commit for each line, or null if HEAD has no such
+     *         file.
+     */
+    static ObjectId[] attribute(ObjectId head, String path) {
+        Commit commit = readCommit(head);
+        ObjectId blob = commit.getFile(path);
+        if (blob == null) {
+            return null;
+        }
+        ObjectId[] cached = readCache(head, path);
+        if (cached != null) {
+            return cached;
+        }
+        List<String> lines = lines(blob);
+        ObjectId[] result = new ObjectId[lines.size()];
+        int[] pending = new int[lines.size()];
+        int[] pos = new int[lines.size()];
+        for (int i = 0; i < pending.length; i += 1) {
+            pending[i] = i;
+            pos[i] = i;
+        }
+        int numPending = pending.length;
+        ObjectId id = head;
+
+        while (numPending > 0) {
+            if (!id.equals(head)) {
+                cached = readCache(id, path);
+                if (cached != null) {
+                    for (int k = 0; k < numPending; k += 1) {
+                        result[pending[k]] = cached[pos[pending[k]]];
+                    }
+                    break;
+                }
+            }
+            ObjectId same = unchangedParent(commit, path, blob);
+            if (same != null) {
+                id = same;
+                commit = readCommit(id);
+                continue;
+            }
+            List<ObjectId> parents = commit.getParents();
+            Commit parent = parents.isEmpty() ? null
+                    : readCommit(parents.get(0));
+            ObjectId parentBlob = parent == null ? null
+                    : parent.getFile(path);
+            if (parentBlob == null) {
+                for (int k = 0; k < numPending; k += 1) {
+                    result[pending[k]] = id;
+                }
+                break;
+            }
+            List<String> parentLines = lines(parentBlob);
+            int[] toParent = lineMap(lines, parentLines);
+            int kept = 0;
+            for (int k = 0; k < numPending; k += 1) {
+                int line = pending[k];
+                int moved = toParent[pos[line]];
+                if (moved < 0) {
+                    result[line] = id;
+                } else {
+                    pos[line] = moved;
+                    pending[kept] = line;
+                    kept += 1;
+                }
+            }
+            numPending = kept;
+            id = parents.get(0);
+            commit = parent;
+            blob = parentBlob;
+            lines = parentLines;
+        }
+        writeCache(head, path, result);
+        return result;
+    }
+
+    /**
+     * Returns the lines of a stored blob.
+     * @param blob ID of blob.
+     * @return Lines of blob, without line terminators.
+     */
+    static List<String> lines(ObjectId blob) {
+        return lines(Utils.readObject(Tree.BLOB_DIR, blob, Blob.class)
+                .getContents());
+    }
+
+    /**
+     * Returns the lines of CONTENTS.
+     * @param contents Contents of a file.
+     * @return Lines of CONTENTS, without line terminators.
+     */
+    static List<String> lines(byte[] contents) {
+        String text = new String(contents, StandardCharsets.UTF_8);
+        if (text.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (text.endsWith("\n")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        return Arrays.asList(text.split("\n", -1));
+    }
+
+    /**
+     * Returns the ID of a parent of COMMIT holding BLOB at PATH, if any.
+     * @param commit Commit whose parents to search.
+     * @param path Path of file.
+     * @param blob Blob of file in COMMIT.
+     * @return ID of parent, or null if the file differs in every parent.
+     */
+    private static ObjectId unchangedParent(Commit commit, String path,
+                                            ObjectId blob) {
+        for (ObjectId parent : commit.getParents()) {
+            if (blob.equals(readCommit(parent).getFile(path))) {
+                return parent;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns, for each line of LINES, the number of the line of OLDLINES
+     * it was kept from, or -1 if it was added.
+     * @param lines Newer version of file.
+     * @param oldLines Older version of file.
+     * @return Line map.
+     */
+    private static int[] lineMap(List<String> lines, List<String> oldLines) {
+        int[] result = new int[lines.size()];
+        Arrays.fill(result, -1);
+        Diff diff = new Diff();
+        diff.setSequences(lines, oldLines);
+        int[] common = diff.commonSubsequence();
+        for (int k = 0; k < common.length; k += 3) {
+            for (int i = 0; i < common[k + 2]; i += 1) {
+                result[common[k] + i] = common[k + 1] + i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Read a commit.
+     * @param id ID of commit.
+     * @return Commit.
+     */
+    private static Commit readCommit(ObjectId id) {
+        return Utils.readObject(Tree.COMMITS_DIR, id, Commit.class);
+    }
+
+    /**
+     * Returns the cache file for the blame of PATH as of commit ID.
+     * @param id ID of commit.
+     * @param path Path of file.
+     * @return Cache file.
+     */
+    private static File cacheFile(ObjectId id, String path) {
+        return new File(CACHE_DIR, ObjectId.hash(id.toString(), "\0", path)
+                .toString());
+    }
+
+    /**
+     * Returns the cached blame of PATH as of commit ID.
+     * @param id ID of commit.
+     * @param path Path of file.
+     * @return Cached attribution, or null if there is none.
+     */
+    private static ObjectId[] readCache(ObjectId id, String path) {
+        File file = cacheFile(id, path);
+        if (!file.isFile()) {
+            return null;
+        }
+        return Utils.readObject(file, ObjectId[].class);
+    }
+
+    /**
+     * Cache BLAME, the blame of PATH as of commit ID. Commits never
+     * change, so cached blames never need to be invalidated.
+     * @param id ID of commit.
+     * @param path Path of file.
+     * @param blame Attribution of each line.
+     */
+    private static void writeCache(ObjectId id, String path,
+                                   ObjectId[] blame) {
+        CACHE_DIR.mkdir();
+        Repo.local().replaceObject(cacheFile(id, path), blame);
+    }
+
+    /**
+     * Directory of cached blames.
+     */
+    static final File CACHE_DIR = new File(Tree.COMMON_DIR, "blame");
+}
@@ -10,15 +10,27 @@ public class Blob implements Serializable {
         File f = new File(CWD, name);
         if (f.exists()) {
             this._contents = Utils.readContents(f);
-            this._hash = Utils.sha1(this._contents);
+            this._hash = ObjectId.hash(this._contents);
         }
     }
 
+    /**
+     * Blob of the file NAME holding CONTENTS, which need not be in the
+     * working directory.
+     * @param name File name.
+     * @param contents Contents of file.
+     */
+    public Blob(String name, byte[] contents) {
+        this._name = name;
+        this._contents = contents;
+        this._hash = ObjectId.hash(contents);
+    }
+
     /**
      * Get SHA1 ID of blob.
      * @return SHA1 ID.
      */
-    public String getHash() {
+    public ObjectId getHash() {
         return this._hash;
     }
 
@@ -61,11 +73,16 @@ public class Blob implements Serializable {
     /**
      * SHA1 ID of blob for serialization.
      */
-    private String _hash;
+    private ObjectId _hash;
 
     /**
      * Common Working Directory of project.
      */
     static final File CWD = Tree.CWD;
 
+    /**
+     * Version of the serialized form of a blob, kept in step with
+     * Repo.FORMAT.
+     */
+    private static final long serialVersionUID = 1L;
 }
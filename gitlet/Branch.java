@@ -1,22 +1,20 @@
 package gitlet;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
 
 public class Branch implements Serializable {
     public Branch(String name) {
         this._name = name;
-        this._ID = Utils.sha1(Utils.serialize(this));
-        this._commits = new LinkedHashMap<>();
+        this._ID = ObjectId.hash(Utils.serialize(this));
+        this._commits = new ObjectIdSet();
     }
 
     /**
      * Returns commit history of branch.
      * @return Commit history of branch.
      */
-    public LinkedHashMap<String, String> getCommits() {
+    public ObjectIdSet getCommits() {
         return _commits;
     }
 
@@ -24,23 +22,23 @@ public class Branch implements Serializable {
      * Sets commit history of branch.
      * @param commits New commit history.
      */
-    public void setCommits(LinkedHashMap<String, String> commits) {
+    public void setCommits(ObjectIdSet commits) {
         _commits = commits;
     }
 
     /**
-     * Sets new SHA1 ID of head commit.
-     * @param head New SHA1 ID of head commit.
+     * Sets new ID of head commit.
+     * @param head New ID of head commit.
      */
-    public void setHead(String head) {
+    public void setHead(ObjectId head) {
         _head = head;
     }
 
     /**
-     * Returns SHA1 ID of branch.
-     * @return SHA1 ID of branch.
+     * Returns ID of branch.
+     * @return ID of branch.
      */
-    public String getID() {
+    public ObjectId getID() {
         return _ID;
     }
 
@@ -53,10 +51,10 @@ public class Branch implements Serializable {
     }
 
     /**
-     * Returns SHA1 ID of head commit.
-     * @return SHA1 ID of head commit.
+     * Returns ID of head commit.
+     * @return ID of head commit.
      */
-    public String getHeadCommit() {
+    public ObjectId getHeadCommit() {
         return _head;
     }
 
@@ -65,7 +63,7 @@ public class Branch implements Serializable {
      * @param newCommit New commit to add.
      */
     public void addCommit(Commit newCommit) {
-        _commits.put(newCommit.getID(), "");
+        _commits.add(newCommit.getID());
         _head = newCommit.getID();
     }
 
@@ -73,51 +71,53 @@ public class Branch implements Serializable {
      * Calculate split point of two branches for merging purposes.
      * @param currentBranch Current branch to merge on.
      * @param otherBranch Other branch to merge with.
-     * @return SHA1 ID of split point commit.
+     * @return ID of split point commit, or null if there is none.
      */
-    public static String splitPoint(Branch currentBranch, Branch otherBranch) {
-        String currentBranchHead = currentBranch._head;
-        String otherBranchHead = otherBranch._head;
+    public static ObjectId splitPoint(Branch currentBranch,
+                                      Branch otherBranch) {
+        ObjectIdSet allCurrentCommits = Branch.bfs(currentBranch._head);
+        ObjectIdSet otherBranchCommits = Branch.bfs(otherBranch._head);
 
-        ArrayList<String> allCurrentCommits = Branch.bfs(currentBranchHead);
-        ArrayList<String> otherBranchCommits = Branch.bfs(otherBranchHead);
-
-        for (String commit : allCurrentCommits) {
+        for (ObjectId commit : allCurrentCommits) {
             if (otherBranchCommits.contains(commit)) {
                 return commit;
             }
         }
-        return "";
+        return null;
+    }
+
+    /**
+     * Returns a commit and all of its ancestors.
+     * @param head ID of commit.
+     * @return HEAD and its ancestors, in breadth-first order.
+     */
+    public static ObjectIdSet ancestors(ObjectId head) {
+        return bfs(head);
     }
 
     /**
      * Helper breadth-first-search method to find commit's ancestor history.
-     * @param branchHead SHA1 ID of root.
-     * @return Commit's ancestors.
+     * @param branchHead ID of root.
+     * @return Commit's ancestors, in breadth-first order.
      */
-    private static ArrayList<String> bfs(String branchHead) {
-        LinkedList<String> queue = new LinkedList<>();
-        ArrayList<String> visited = new ArrayList<>();
-        ArrayList<String> result = new ArrayList<>();
+    private static ObjectIdSet bfs(ObjectId branchHead) {
+        ArrayDeque<ObjectId> queue = new ArrayDeque<>();
+        ObjectIdSet visited = new ObjectIdSet();
         visited.add(branchHead);
         queue.add(branchHead);
 
         while (!queue.isEmpty()) {
-            String commit = queue.remove();
-            result.add(commit);
-            Commit currCommit = Utils.readObject(
-                    Utils.join(Tree.COMMITS_DIR, commit), Commit.class);
-
-            ArrayList<String> neighbors = new ArrayList
-                    <>(currCommit.getParents().keySet());
-            for (String neighbor : neighbors) {
-                if (!visited.contains(neighbor)) {
+            ObjectId commit = queue.remove();
+            Commit currCommit = Utils.readObject(Tree.COMMITS_DIR, commit,
+                    Commit.class);
+
+            for (ObjectId neighbor : currCommit.getParents()) {
+                if (visited.add(neighbor)) {
                     queue.add(neighbor);
-                    visited.add(neighbor);
                 }
             }
         }
-        return result;
+        return visited;
     }
 
     /**
@@ -125,17 +125,23 @@ public class Branch implements Serializable {
      */
     private String _name;
     /**
-     * SHA1 ID of this branch.
+     * ID of this branch.
      */
-    private String _ID;
+    private ObjectId _ID;
 
     /**
      * Commit history of branch.
      */
-    private LinkedHashMap<String, String> _commits;
+    private ObjectIdSet _commits;
+
+    /**
+     * ID of head commit.
+     */
+    private ObjectId _head;
 
     /**
-     * SHA1 ID of head commit.
+     * Version of the serialized form of a branch, kept in step with
+     * Repo.FORMAT.
      */
-    private String _head;
+    private static final long serialVersionUID = 1L;
 }
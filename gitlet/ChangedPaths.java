@@ -0,0 +1,115 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Bloom filters of the paths each commit changed from its first parent.
+ * A record is appended to a side file of the store whenever a commit is
+ * made or copied in, so the filters are computed once, from paths already
+ * known, and never rewritten. A path-filtered log reads the whole file
+ * at once and loads only the commits whose filters might hold the path;
+ * since a filter never misses a path that was added to it, skipping the
+ * rest is always safe.
+ * @author Aishik Bhattacharyya
+ */
+class ChangedPaths {
+
+    /**
+     * Filters read from a side file.
+     * @param filters Filter of each commit, or null for commits that
+     *                changed too many paths to filter.
+     */
+    private ChangedPaths(HashMap<ObjectId, ObjectFilter> filters) {
+        _filters = filters;
+    }
+
+    /**
+     * Append to FILE the record that commit ID changed PATHS.
+     * @param file Side file.
+     * @param id ID of commit.
+     * @param paths Paths changed from the commit's first parent.
+     * @throws IOException If FILE cannot be written.
+     */
+    static void append(File file, ObjectId id, Collection<String> paths)
+            throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            byte[] idBytes = id.toBytes();
+            out.writeByte(idBytes.length);
+            out.write(idBytes);
+            if (paths.size() > MAX_PATHS) {
+                out.writeInt(-1);
+                return;
+            }
+            ObjectFilter filter = new ObjectFilter(paths.size());
+            for (String path : paths) {
+                filter.add(ObjectId.hash(path));
+            }
+            long[] bits = filter.bits();
+            out.writeInt(bits.length);
+            for (long word : bits) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    /**
+     * Returns the filters recorded in FILE.
+     * @param file Side file, which need not exist.
+     * @return Filters.
+     * @throws IOException If FILE cannot be read.
+     */
+    static ChangedPaths read(File file) throws IOException {
+        HashMap<ObjectId, ObjectFilter> filters = new HashMap<>();
+        if (file.isFile()) {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(
+                    file.toPath()));
+            while (data.hasRemaining()) {
+                byte[] idBytes = new byte[data.get()];
+                data.get(idBytes);
+                int words = data.getInt();
+                ObjectFilter filter = null;
+                if (words >= 0) {
+                    long[] bits = new long[words];
+                    data.asLongBuffer().get(bits);
+                    data.position(data.position() + 8 * words);
+                    filter = new ObjectFilter(bits);
+                }
+                filters.put(ObjectId.of(idBytes), filter);
+            }
+        }
+        return new ChangedPaths(filters);
+    }
+
+    /**
+     * Determine if commit ID may have changed the path whose hash is
+     * PATHID.
+     * @param id ID of commit.
+     * @param pathID ObjectId.hash of the path.
+     * @return false if the commit certainly left the path alone.
+     */
+    boolean mightHaveChanged(ObjectId id, ObjectId pathID) {
+        ObjectFilter filter = _filters.get(id);
+        return filter == null || filter.mightContain(pathID);
+    }
+
+    /**
+     * Most paths a commit may change and still have a filter. Commits
+     * changing more are always loaded, as they are rare and their filters
+     * would be large.
+     */
+    private static final int MAX_PATHS = 512;
+
+    /**
+     * Filter of each commit, or null for commits without one.
+     */
+    private final HashMap<ObjectId, ObjectFilter> _filters;
+}
@@ -1,25 +1,41 @@
 package gitlet;
 
+import java.io.PrintWriter;
 import java.io.Serializable;
-import java.util.LinkedHashMap;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.TreeMap;
 
 public class Commit implements Serializable {
-    public Commit(String message, String timeStamp) {
+    /**
+     * New commit with MESSAGE, made at TIME in a zone OFFSET seconds
+     * ahead of UTC.
+     *
+     * @param message Commit message.
+     * @param time Time of commit, in milliseconds since the epoch.
+     * @param offset Offset from UTC of the committer's zone, in seconds.
+     */
+    public Commit(String message, long time, int offset) {
         this._message = message;
-        this._timeStamp = timeStamp;
-        this._ID = Utils.sha1(Utils.serialize(this));
-        this.files = new TreeMap<String, String>();
-        this._parents = new LinkedHashMap<>();
+        this._time = time;
+        this._offset = offset;
+        this._ID = ObjectId.hash(Utils.serialize(this));
+        this._tree = Directory.emptyID();
+        this._parents = new ArrayList<>();
     }
 
     /**
      * Add another parent.
      *
-     * @param commitID SHA1 ID of new parent commit.
+     * @param commitID ID of new parent commit.
      */
-    public void addParent(String commitID) {
-        this._parents.put(commitID, "");
+    public void addParent(ObjectId commitID) {
+        this._parents.add(commitID);
     }
 
     /**
@@ -27,7 +43,7 @@ public class Commit implements Serializable {
      *
      * @return Parents of commit.
      */
-    public LinkedHashMap<String, String> getParents() {
+    public List<ObjectId> getParents() {
         return _parents;
     }
 
@@ -46,34 +62,117 @@ public class Commit implements Serializable {
      * @return Time stamp of commit.
      */
     public String getTimeStamp() {
-        return _timeStamp;
+        return formatTime(_time, _offset);
     }
 
     /**
-     * Set files of commit.
-     * @param newFiles New commit files.
+     * Get time of commit.
+     *
+     * @return Time of commit, in milliseconds since the epoch.
      */
-    public void setFiles(TreeMap<String, String> newFiles) {
-        this.files = newFiles;
-        this._ID = Utils.sha1(Utils.serialize(this));
+    public long getTime() {
+        return _time;
     }
 
     /**
-     * Get SHA1 ID of commit.
+     * Get offset from UTC of the zone the commit was made in.
      *
-     * @return SHA1 ID of commit.
+     * @return Offset, in seconds.
+     */
+    public int getOffset() {
+        return _offset;
+    }
+
+    /**
+     * Returns TIME as shown in logs, in the zone OFFSET seconds ahead of
+     * UTC.
+     *
+     * @param time Time, in milliseconds since the epoch.
+     * @param offset Offset from UTC, in seconds.
+     * @return Formatted time.
+     */
+    static String formatTime(long time, int offset) {
+        return TIME_FORMAT.format(Instant.ofEpochMilli(time)
+                .atOffset(ZoneOffset.ofTotalSeconds(offset)));
+    }
+
+    /**
+     * Set top directory snapshot of commit.
+     * @param treeID ID of new top directory.
      */
-    public String getID() {
+    public void setTree(ObjectId treeID) {
+        this._tree = treeID;
+        this._files = null;
+        this._ID = ObjectId.hash(Utils.serialize(this));
+    }
+
+    /**
+     * Get ID of top directory snapshot of commit.
+     *
+     * @return ID of top directory.
+     */
+    public ObjectId getTree() {
+        return _tree;
+    }
+
+    /**
+     * Get ID of commit.
+     *
+     * @return ID of commit.
+     */
+    public ObjectId getID() {
         return _ID;
     }
 
     /**
-     * Get files of commit.
+     * Determine if the contents of this commit hash to ID, computing the
+     * hash again as the constructor and setTree did rather than trusting
+     * the stored ID: the initial commit is hashed without a tree or
+     * parents, and every other commit once more after them.
+     *
+     * @param id ID the commit is stored under.
+     * @return boolean if the commit is the one named by ID.
+     */
+    boolean hashesTo(ObjectId id) {
+        if (!id.equals(_ID)) {
+            return false;
+        }
+        Commit rebuilt = new Commit(_message, _time, _offset);
+        if (rebuilt._ID.equals(id)) {
+            return _parents.isEmpty() && _tree.equals(rebuilt._tree);
+        }
+        rebuilt._parents.addAll(_parents);
+        rebuilt.setTree(_tree);
+        return rebuilt._ID.equals(id);
+    }
+
+    /**
+     * Get files of commit. The full map is read from the commit's
+     * directory snapshots the first time it is needed.
      *
-     * @return TreeMap of file names and SHA1 IDs
+     * @return TreeMap of file paths and IDs
      */
-    public TreeMap<String, String> getFiles() {
-        return files;
+    public TreeMap<String, ObjectId> getFiles() {
+        if (_files == null) {
+            TreeMap<String, ObjectId> files = new TreeMap<>();
+            Directory.flatten(_tree, "", files);
+            _files = files;
+        }
+        return _files;
+    }
+
+    /**
+     * Get blob ID of a single file of commit, reading only the
+     * directories along its path.
+     *
+     * @param path Path of file.
+     * @return Blob ID, or null if the commit has no such file.
+     */
+    public ObjectId getFile(String path) {
+        if (_files != null) {
+            return _files.get(path);
+        }
+        return Directory.lookup(_tree, path);
     }
 
     /**
@@ -82,9 +181,24 @@ public class Commit implements Serializable {
      * @return String representation of commit.
      */
     public String toString() {
-        String result = "===" + "\n" + "commit " + _ID + "\n";
-        result += "Date: " + _timeStamp + "\n";
-        return result + _message + "\n";
+        StringWriter result = new StringWriter();
+        writeLog(new PrintWriter(result));
+        return result.toString();
+    }
+
+    /**
+     * Write this commit's log entry, as rendered by toString, to OUT.
+     *
+     * @param out Writer to print to.
+     */
+    public void writeLog(PrintWriter out) {
+        out.print("===\ncommit ");
+        out.print(_ID);
+        out.print("\nDate: ");
+        out.print(getTimeStamp());
+        out.print('\n');
+        out.print(_message);
+        out.print('\n');
     }
 
     /**
@@ -93,22 +207,45 @@ public class Commit implements Serializable {
     private String _message;
 
     /**
-     * Time stamp of commit.
+     * Format of times in logs.
      */
-    private String _timeStamp;
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss yyyy Z",
+                    Locale.US);
 
     /**
-     * SHA1 ID of commit.
+     * Time of commit, in milliseconds since the epoch.
      */
-    private String _ID;
+    private long _time;
 
     /**
-     * History of file names to file SHA1 IDs in the commit.
+     * Offset from UTC of the zone the commit was made in, in seconds.
      */
-    private TreeMap<String, String> files;
+    private int _offset;
+
+    /**
+     * ID of commit.
+     */
+    private ObjectId _ID;
+
+    /**
+     * ID of the snapshot of the top directory in the commit.
+     */
+    private ObjectId _tree;
+
+    /**
+     * File paths mapped to file IDs in the commit, once read.
+     */
+    private transient TreeMap<String, ObjectId> _files;
 
     /**
      * Parents of commit.
      */
-    private LinkedHashMap<String, String> _parents;
+    private ArrayList<ObjectId> _parents;
+
+    /**
+     * Version of the serialized form of a commit, kept in step with
+     * Repo.FORMAT.
+     */
+    private static final long serialVersionUID = 1L;
 }
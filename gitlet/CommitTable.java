@@ -0,0 +1,548 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/**
+ * Table of the metadata of every commit in a store, so that scans of the
+ * whole history read two files rather than deserializing every commit.
+ * The table file holds one RECORD_SIZE record per commit, in the order
+ * the commits were added, and the heap file holds their messages, to
+ * which the records point. Both files are only ever appended to, the
+ * heap before the table, and both are mapped into memory when read. Each
+ * record ends with a checksum of itself and its message. Opening checks
+ * only that the table holds whole records and that the last one is
+ * sound, which finds a table torn or left out of step with its heap by a
+ * crash, and rebuilds it from the commits; every other record is checked
+ * the first time it is read, so a command reading a few records reads
+ * only those. A record failing its check discards the table, to be
+ * rebuilt by the next open. Records are read with absolute gets only, so
+ * ranges of them may be scanned by several threads at once. A third
+ * file, the time index, lists the records in order of commit time, so
+ * that the commits made in a window of time are found by binary search.
+ *
+ * Tables are opened by commands holding only the shared lock, so opening
+ * takes a lock of its own while it checks, builds or indexes the files,
+ * and new files are built under unique temporary names and renamed into
+ * place.
+ * @author Aishik Bhattacharyya
+ */
+class CommitTable {
+
+    /**
+     * Table mapped from the file TABLE and the file HEAP.
+     * @param table Table file.
+     * @param heap Heap file.
+     * @throws IOException If the files cannot be mapped.
+     */
+    private CommitTable(File table, File heap) throws IOException {
+        _file = table;
+        _table = map(table);
+        _heap = map(heap);
+        _size = _table.capacity() / RECORD_SIZE;
+        _checked = new AtomicLongArray((_size + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    /**
+     * Returns the table kept in the files TABLE and HEAP, with its time
+     * index kept in INDEX, first building them from the commits in
+     * COMMITS if TABLE does not exist yet or fails its checks. Only one
+     * process at a time opens the table.
+     * @param table Table file.
+     * @param heap Heap file.
+     * @param index Time index file.
+     * @param commits Commits directory.
+     * @param tempDir Directory in which to build new files.
+     * @return Table.
+     * @throws IOException If the files cannot be read or built.
+     */
+    static CommitTable open(File table, File heap, File index,
+                            File commits, File tempDir) throws IOException {
+        tempDir.mkdir();
+        try (FileChannel channel = FileChannel.open(
+                new File(tempDir, LOCK_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            CommitTable result = null;
+            if (table.isFile() && heap.isFile()) {
+                result = new CommitTable(table, heap);
+            }
+            if (result == null || !result.isWhole()) {
+                index.delete();
+                build(table, heap, commits, tempDir);
+                result = new CommitTable(table, heap);
+            }
+            result._byTime = result.timeIndex(index, tempDir);
+            return result;
+        }
+    }
+
+    /**
+     * Build TABLE and HEAP from the commits in COMMITS, under temporary
+     * names in TEMPDIR, and rename them into place, heap first.
+     * @param table Table file.
+     * @param heap Heap file.
+     * @param commits Commits directory.
+     * @param tempDir Directory in which to build new files.
+     * @throws IOException If the files cannot be built.
+     */
+    private static void build(File table, File heap, File commits,
+                              File tempDir) throws IOException {
+        Path newTable = Files.createTempFile(tempDir.toPath(),
+                table.getName(), null);
+        Path newHeap = Files.createTempFile(tempDir.toPath(),
+                heap.getName(), null);
+        String[] names = commits.list();
+        for (String name : names == null ? new String[0] : names) {
+            append(newTable.toFile(), newHeap.toFile(), Utils.readObject(
+                    commits, ObjectId.parse(name), Commit.class));
+        }
+        Files.move(newHeap, heap.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        Files.move(newTable, table.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Create TABLE and HEAP, holding an empty table.
+     * @param table Table file.
+     * @param heap Heap file.
+     * @throws IOException If the files cannot be created.
+     */
+    static void create(File table, File heap) throws IOException {
+        heap.createNewFile();
+        table.createNewFile();
+    }
+
+    /**
+     * Add COMMIT, which must already be stored, to the table kept in the
+     * files TABLE and HEAP. A TABLE left torn by a crash is deleted
+     * instead, so that later records are not misaligned, and the next
+     * open rebuilds it, COMMIT included.
+     * @param table Table file.
+     * @param heap Heap file.
+     * @param commit Commit to add.
+     * @throws IOException If the files cannot be written.
+     */
+    static void append(File table, File heap, Commit commit)
+            throws IOException {
+        if (table.length() % RECORD_SIZE != 0) {
+            Files.delete(table.toPath());
+            return;
+        }
+        byte[] message = commit.getMessage().getBytes(StandardCharsets.UTF_8);
+        long offset = heap.length();
+        Files.write(heap.toPath(), message, StandardOpenOption.APPEND);
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        byte[] id = commit.getID().toBytes();
+        record.put(id);
+        List<ObjectId> parents = commit.getParents();
+        int numParents = Math.min(parents.size(), MAX_PARENTS);
+        for (int i = 0; i < numParents; i += 1) {
+            record.position(PARENTS + i * ObjectId.MAX_LENGTH);
+            record.put(parents.get(i).toBytes());
+        }
+        record.put(ID_LENGTH, (byte) id.length);
+        record.put(NUM_PARENTS, (byte) numParents);
+        record.putInt(MESSAGE_LENGTH, message.length);
+        record.putInt(ZONE_OFFSET, commit.getOffset());
+        record.putLong(TIME, commit.getTime());
+        record.putLong(HEAP_OFFSET, offset);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 0, CHECKSUM);
+        crc.update(message);
+        record.putInt(CHECKSUM, (int) crc.getValue());
+        Files.write(table.toPath(), record.array(),
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Determine if the table is whole: made of whole records, the last of
+     * which is sound. As records are appended in order, heap first, this
+     * finds the damage a crash while appending leaves.
+     * @return boolean if the table may be used.
+     */
+    private boolean isWhole() {
+        return _table.capacity() % RECORD_SIZE == 0
+                && (_size == 0 || isSound(_size - 1));
+    }
+
+    /**
+     * Determine if the Kth record is sound: its message lies within the
+     * heap and its checksum matches.
+     * @param k Record number.
+     * @return boolean if the record is sound.
+     */
+    private boolean isSound(int k) {
+        int base = k * RECORD_SIZE;
+        long offset = _table.getLong(base + HEAP_OFFSET);
+        int length = _table.getInt(base + MESSAGE_LENGTH);
+        if (offset < 0 || length < 0 || offset + length > _heap.capacity()) {
+            return false;
+        }
+        byte[] fixed = new byte[CHECKSUM];
+        _table.get(base, fixed);
+        ByteBuffer message = _heap.duplicate();
+        message.position((int) offset).limit((int) offset + length);
+        CRC32C crc = new CRC32C();
+        crc.update(fixed);
+        crc.update(message);
+        return (int) crc.getValue() == _table.getInt(base + CHECKSUM);
+    }
+
+    /**
+     * Returns the offset in the table of the Kth record, checking the
+     * record the first time it is read. A record that fails its check
+     * discards the table file, so that the next open rebuilds it.
+     * @param k Record number.
+     * @return Offset of record.
+     */
+    private int record(int k) {
+        long bit = 1L << k;
+        if ((_checked.get(k / Long.SIZE) & bit) == 0) {
+            if (!isSound(k)) {
+                _file.delete();
+                throw Utils.error("The commit table was damaged and has"
+                        + " been discarded; run the command again.");
+            }
+            _checked.getAndAccumulate(k / Long.SIZE, bit, (x, y) -> x | y);
+        }
+        return k * RECORD_SIZE;
+    }
+
+    /**
+     * Returns the number of commits in the table.
+     * @return Number of records.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Returns the ID of the Kth commit.
+     * @param k Record number.
+     * @return Commit ID.
+     */
+    ObjectId id(int k) {
+        int base = record(k);
+        return readID(base, _table.get(base + ID_LENGTH));
+    }
+
+    /**
+     * Returns the parents of the Kth commit.
+     * @param k Record number.
+     * @return IDs of parents.
+     */
+    List<ObjectId> parents(int k) {
+        int base = record(k);
+        int length = _table.get(base + ID_LENGTH);
+        ArrayList<ObjectId> result = new ArrayList<>();
+        for (int i = 0; i < _table.get(base + NUM_PARENTS); i += 1) {
+            result.add(readID(base + PARENTS + i * ObjectId.MAX_LENGTH,
+                    length));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the message of the Kth commit.
+     * @param k Record number.
+     * @return Message.
+     */
+    String message(int k) {
+        int base = record(k);
+        return readString(_table.getLong(base + HEAP_OFFSET),
+                _table.getInt(base + MESSAGE_LENGTH));
+    }
+
+    /**
+     * Returns the time stamp of the Kth commit.
+     * @param k Record number.
+     * @return Time stamp.
+     */
+    String timeStamp(int k) {
+        int base = record(k);
+        return Commit.formatTime(_table.getLong(base + TIME),
+                _table.getInt(base + ZONE_OFFSET));
+    }
+
+    /**
+     * Returns the time of the Kth commit.
+     * @param k Record number.
+     * @return Time, in milliseconds since the epoch.
+     */
+    long time(int k) {
+        return _table.getLong(record(k) + TIME);
+    }
+
+    /**
+     * Returns the record numbers of the commits made from SINCE to UNTIL,
+     * inclusive, most recent first. The ends of the range are found by
+     * binary search of the time index, so only the records in it are
+     * read.
+     * @param since Earliest time, in milliseconds since the epoch.
+     * @param until Latest time, in milliseconds since the epoch.
+     * @return Record numbers.
+     */
+    int[] madeBetween(long since, long until) {
+        int first = countBefore(since, false);
+        int last = countBefore(until, true);
+        int[] result = new int[Math.max(0, last - first)];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = _byTime.get(last - 1 - i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of commits made before TIME, or at TIME if
+     * INCLUSIVE, which is the position in the time index of the first
+     * commit made after them.
+     * @param time Time, in milliseconds since the epoch.
+     * @param inclusive Whether to count commits made at TIME.
+     * @return Number of commits.
+     */
+    private int countBefore(long time, boolean inclusive) {
+        int low = 0;
+        int high = _byTime.limit();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long midTime = time(_byTime.get(mid));
+            if (midTime < time || inclusive && midTime == time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the time index kept in the file INDEX: the record numbers
+     * of all commits, sorted by time. The records added since the index
+     * was last written are sorted and merged into it, and the result is
+     * written back by renaming a new file from TEMPDIR into place.
+     * @param index Index file.
+     * @param tempDir Directory in which to build a new index.
+     * @return Time index.
+     * @throws IOException If the index cannot be read or written.
+     */
+    private IntBuffer timeIndex(File index, File tempDir)
+            throws IOException {
+        IntBuffer old = index.isFile() ? map(index).asIntBuffer()
+                : IntBuffer.allocate(0);
+        int covered = old.limit();
+        if (covered == _size) {
+            return old;
+        }
+        if (covered > _size) {
+            old = IntBuffer.allocate(0);
+            covered = 0;
+        }
+        int[] added = IntStream.range(covered, _size).boxed()
+                .sorted(Comparator.comparingLong(this::time))
+                .mapToInt(Integer::intValue).toArray();
+        ByteBuffer merged = ByteBuffer.allocate(4 * _size);
+        for (int i = 0, j = 0; i < covered || j < added.length; ) {
+            if (j == added.length
+                    || i < covered && time(old.get(i)) <= time(added[j])) {
+                merged.putInt(old.get(i));
+                i += 1;
+            } else {
+                merged.putInt(added[j]);
+                j += 1;
+            }
+        }
+        tempDir.mkdir();
+        Path temp = Files.createTempFile(tempDir.toPath(), index.getName(),
+                null);
+        Files.write(temp, merged.array());
+        Files.move(temp, index.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        return merged.flip().asIntBuffer();
+    }
+
+    /**
+     * Determine if the message of the Kth commit is MESSAGE, comparing
+     * bytes without decoding the stored message.
+     * @param k Record number.
+     * @param message Message, encoded in UTF-8.
+     * @return boolean if the messages are equal.
+     */
+    boolean messageEquals(int k, byte[] message) {
+        int base = record(k);
+        if (_table.getInt(base + MESSAGE_LENGTH) != message.length) {
+            return false;
+        }
+        int offset = (int) _table.getLong(base + HEAP_OFFSET);
+        for (int i = 0; i < message.length; i += 1) {
+            if (_heap.get(offset + i) != message[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Print the Kth commit to OUT as log shows it.
+     * @param k Record number.
+     * @param out Writer to print to.
+     */
+    void writeLog(int k, PrintWriter out) {
+        out.print("===\ncommit ");
+        out.print(id(k));
+        out.print("\nDate: ");
+        out.print(timeStamp(k));
+        out.print('\n');
+        out.print(message(k));
+        out.print('\n');
+    }
+
+    /**
+     * Returns the ID of LENGTH bytes at POSITION of the table.
+     * @param position Offset in table.
+     * @param length Length of ID.
+     * @return ID.
+     */
+    private ObjectId readID(int position, int length) {
+        byte[] bytes = new byte[length];
+        _table.get(position, bytes);
+        return ObjectId.of(bytes);
+    }
+
+    /**
+     * Returns the string of LENGTH bytes at OFFSET of the heap.
+     * @param offset Offset in heap.
+     * @param length Length of string, in bytes.
+     * @return String.
+     */
+    private String readString(long offset, int length) {
+        byte[] bytes = new byte[length];
+        _heap.get((int) offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns FILE mapped read-only into memory.
+     * @param file File to map.
+     * @return Mapped contents.
+     * @throws IOException If FILE cannot be mapped.
+     */
+    private static ByteBuffer map(File file) throws IOException {
+        Path path = file.toPath();
+        try (FileChannel channel = FileChannel.open(path)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+    }
+
+    /**
+     * Most parents recorded for a commit.
+     */
+    private static final int MAX_PARENTS = 2;
+
+    /**
+     * Offset in a record of the commit's ID.
+     */
+    private static final int ID = 0;
+
+    /**
+     * Offset in a record of the IDs of the commit's parents.
+     */
+    private static final int PARENTS = ID + ObjectId.MAX_LENGTH;
+
+    /**
+     * Offset in a record of the length of the IDs, in bytes.
+     */
+    private static final int ID_LENGTH = PARENTS
+            + MAX_PARENTS * ObjectId.MAX_LENGTH;
+
+    /**
+     * Offset in a record of the number of parents.
+     */
+    private static final int NUM_PARENTS = ID_LENGTH + 1;
+
+    /**
+     * Offset in a record of the length of the message, in bytes.
+     */
+    private static final int MESSAGE_LENGTH = ID_LENGTH + 4;
+
+    /**
+     * Offset in a record of the offset from UTC, in seconds, of the zone
+     * the commit was made in.
+     */
+    private static final int ZONE_OFFSET = MESSAGE_LENGTH + 4;
+
+    /**
+     * Offset in a record of the time of the commit.
+     */
+    private static final int TIME = ZONE_OFFSET + 4;
+
+    /**
+     * Offset in a record of the offset in the heap of the message.
+     */
+    private static final int HEAP_OFFSET = TIME + 8;
+
+    /**
+     * Offset in a record of the checksum of the bytes before it and of
+     * the message.
+     */
+    private static final int CHECKSUM = HEAP_OFFSET + 8;
+
+    /**
+     * Size of a record.
+     */
+    static final int RECORD_SIZE = CHECKSUM + 4;
+
+    /**
+     * File in the temporary directory locked while a table is opened.
+     */
+    private static final String LOCK_FILE = "commit-table.lock";
+
+    /**
+     * Table file.
+     */
+    private final File _file;
+
+    /**
+     * Mapped table file.
+     */
+    private final ByteBuffer _table;
+
+    /**
+     * Mapped heap file.
+     */
+    private final ByteBuffer _heap;
+
+    /**
+     * Number of records.
+     */
+    private final int _size;
+
+    /**
+     * One bit for each record, set once the record has been checked.
+     */
+    private final AtomicLongArray _checked;
+
+    /**
+     * Record numbers of all commits, sorted by time.
+     */
+    private IntBuffer _byTime;
+}
@@ -6,9 +6,9 @@ import java.util.List;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 
 import java.io.IOException;
 import java.nio.file.InvalidPathException;
@@ -163,10 +163,7 @@ public class Diff {
      */
     public boolean sequencesEqual() {
         checkData();
-        if (_lines1.size() != _lines2.size()) {
-            return false;
-        }
-        return lls(_lines1.size(), _lines2.size()) == _lines1.size();
+        return _lines1.equals(_lines2);
     }
 
     /**
@@ -188,35 +185,163 @@ public class Diff {
      * a sequence of 3n values s01, s02, L0, s11, s12, L1,..., where
      * si1 is the starting line position of the subsequence in the
      * first file (0-based), si2 is the starting position in the second
-     * file, and Li is the length of the subsequence.
+     * file, and Li is the length of the subsequence.  Uses Myers'
+     * linear-space O((N+M)D) algorithm, so that similar sequences are
+     * compared in time proportional to their size and number of
+     * differences rather than to the product of their sizes.
      */
     public int[] commonSubsequence() {
-        ArrayDeque<Integer> resultList = new ArrayDeque<>();
+        checkData();
+        HashMap<String, Integer> codes = new HashMap<>();
+        _codes1 = encode(_lines1, codes);
+        _codes2 = encode(_lines2, codes);
+        _common = new ArrayList<>();
+        match(0, _codes1.length, 0, _codes2.length);
+        int[] result = toIntArr(_common);
+        _codes1 = _codes2 = null;
+        _common = null;
+        return result;
+    }
+
+    /**
+     * Return LINES with each distinct line replaced by its number in
+     * CODES, adding new lines to CODES.
+     */
+    private static int[] encode(List<String> lines,
+                                HashMap<String, Integer> codes) {
+        int[] result = new int[lines.size()];
+        int i = 0;
+        for (String line : lines) {
+            Integer code = codes.putIfAbsent(line, codes.size());
+            result[i] = code == null ? codes.size() - 1 : code;
+            i += 1;
+        }
+        return result;
+    }
+
+    /**
+     * Append to _common the runs of a longest common subsequence of
+     * _codes1[A0 .. A1-1] and _codes2[B0 .. B1-1].
+     */
+    private void match(int a0, int a1, int b0, int b1) {
+        int prefix = 0;
+        while (a0 + prefix < a1 && b0 + prefix < b1
+                && _codes1[a0 + prefix] == _codes2[b0 + prefix]) {
+            prefix += 1;
+        }
+        addRun(a0, b0, prefix);
+        a0 += prefix;
+        b0 += prefix;
+        int suffix = 0;
+        while (a1 - suffix > a0 && b1 - suffix > b0
+                && _codes1[a1 - suffix - 1] == _codes2[b1 - suffix - 1]) {
+            suffix += 1;
+        }
+        a1 -= suffix;
+        b1 -= suffix;
+        if (a0 < a1 && b0 < b1) {
+            int[] split = middleSnake(a0, a1, b0, b1);
+            if (split == null) {
+                addRun(a1, b1, suffix);
+                return;
+            }
+            match(a0, split[0], b0, split[1]);
+            match(split[0], a1, split[1], b1);
+        }
+        addRun(a1, b1, suffix);
+    }
 
-        int k1, k2;
-        k1 = _lines1.size();
-        k2 = _lines2.size();
-        while (k1 > 0 && k2 > 0) {
-            int ls = lls(k1, k2);
-            if (lls(k1 - 1, k2) == ls) {
-                k1 -= 1;
-            } else if (lls(k1, k2 - 1) == ls) {
-                k2 -= 1;
-            } else {
-                int L;
-                L = 1;
-                while (k1 > L && k2 > L && lls(k1 - L - 1, k2 - L) != ls - L
-                        && lls(k1 - L, k2 - L - 1) != ls - L) {
-                    L += 1;
+    /**
+     * Return a point {X, Y} on a shortest edit path between
+     * _codes1[A0 .. A1-1] and _codes2[B0 .. B1-1], neither of which is
+     * empty and which differ at both ends, found where paths searched
+     * from the two ends meet, or null if the ranges have nothing in
+     * common.
+     */
+    private int[] middleSnake(int a0, int a1, int b0, int b1) {
+        int n = a1 - a0, m = b1 - b0;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int[] v1 = new int[2 * maxD + 2];
+        int[] v2 = new int[2 * maxD + 2];
+        Arrays.fill(v1, -1);
+        Arrays.fill(v2, -1);
+        v1[offset + 1] = 0;
+        v2[offset + 1] = 0;
+        int delta = n - m;
+        boolean front = delta % 2 != 0;
+        int k1start = 0, k1end = 0, k2start = 0, k2end = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                int k1off = offset + k1;
+                int x1 = k1 == -d || (k1 != d && v1[k1off - 1] < v1[k1off + 1])
+                        ? v1[k1off + 1] : v1[k1off - 1] + 1;
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m
+                        && _codes1[a0 + x1] == _codes2[b0 + y1]) {
+                    x1 += 1;
+                    y1 += 1;
+                }
+                v1[k1off] = x1;
+                if (x1 > n) {
+                    k1end += 2;
+                } else if (y1 > m) {
+                    k1start += 2;
+                } else if (front) {
+                    int k2off = offset + delta - k1;
+                    if (k2off >= 0 && k2off < v2.length && v2[k2off] != -1
+                            && x1 >= n - v2[k2off]) {
+                        return new int[] {a0 + x1, b0 + y1};
+                    }
+                }
+            }
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                int k2off = offset + k2;
+                int x2 = k2 == -d || (k2 != d && v2[k2off - 1] < v2[k2off + 1])
+                        ? v2[k2off + 1] : v2[k2off - 1] + 1;
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m
+                        && _codes1[a1 - x2 - 1] == _codes2[b1 - y2 - 1]) {
+                    x2 += 1;
+                    y2 += 1;
+                }
+                v2[k2off] = x2;
+                if (x2 > n) {
+                    k2end += 2;
+                } else if (y2 > m) {
+                    k2start += 2;
+                } else if (!front) {
+                    int k1off = offset + delta - k2;
+                    if (k1off >= 0 && k1off < v1.length && v1[k1off] != -1) {
+                        int x1 = v1[k1off];
+                        int y1 = offset + x1 - k1off;
+                        if (x1 >= n - x2) {
+                            return new int[] {a0 + x1, b0 + y1};
+                        }
+                    }
                 }
-                resultList.offerFirst(L);
-                resultList.offerFirst(k2 - L);
-                resultList.offerFirst(k1 - L);
-                k1 -= L;
-                k2 -= L;
             }
         }
-        return toIntArr(resultList);
+        return null;
+    }
+
+    /**
+     * Append the run of LEN common items starting at S1 and S2 to
+     * _common, joining it to the previous run if they are adjacent.
+     */
+    private void addRun(int s1, int s2, int len) {
+        if (len == 0) {
+            return;
+        }
+        int last = _common.size() - 3;
+        if (last >= 0 && _common.get(last) + _common.get(last + 2) == s1
+                && _common.get(last + 1) + _common.get(last + 2) == s2) {
+            _common.set(last + 2, _common.get(last + 2) + len);
+        } else {
+            _common.add(s1);
+            _common.add(s2);
+            _common.add(len);
+        }
     }
 
     /**
@@ -312,6 +437,17 @@ public class Diff {
      */
     private int[][] _lls;
 
+    /**
+     * The sequences being compared, as line numbers, while
+     * commonSubsequence runs.
+     */
+    private int[] _codes1, _codes2;
+
+    /**
+     * The runs found so far by commonSubsequence.
+     */
+    private ArrayList<Integer> _common;
+
     /**
      * A stack structure used by lls.
      */
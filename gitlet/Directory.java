@@ -0,0 +1,627 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * Snapshot of one directory of the working tree. Maps the names of the
+ * plain files in the directory to their blob IDs, and the names of its
+ * sub-directories to the IDs of their own snapshots. Because a
+ * directory's ID covers the IDs of everything beneath it, two snapshots
+ * with equal IDs are identical all the way down, and commits share every
+ * sub-directory they did not change.
+ *
+ * Directories with more than INLINE_LIMIT entries do not hold their entries
+ * themselves. Instead they hold an index of chunks, each a Directory with a
+ * contiguous range of the entries. Chunk boundaries fall after entries whose
+ * names hash to a chosen pattern, so they depend only on the names nearby,
+ * and a change to one entry rewrites just the one or two chunks around it.
+ * @author Aishik Bhattacharyya
+ */
+public class Directory implements Serializable {
+    public Directory() {
+        _files = new TreeMap<>();
+        _dirs = new TreeMap<>();
+        _chunks = new TreeMap<>();
+    }
+
+    /**
+     * Get file names and blob IDs of this directory.
+     * @return TreeMap of file names to blob IDs.
+     */
+    public TreeMap<String, ObjectId> getFiles() {
+        return inline()._files;
+    }
+
+    /**
+     * Get sub-directory names and IDs of this directory.
+     * @return TreeMap of sub-directory names to directory IDs.
+     */
+    public TreeMap<String, ObjectId> getDirs() {
+        return inline()._dirs;
+    }
+
+    /**
+     * Collect the IDs of the objects this directory refers to directly,
+     * without reading any of its chunks.
+     * @param blobs Receives blob IDs of its files.
+     * @param trees Receives IDs of its sub-directories and chunks.
+     */
+    void references(Collection<ObjectId> blobs, Collection<ObjectId> trees) {
+        blobs.addAll(_files.values());
+        trees.addAll(_dirs.values());
+        trees.addAll(_chunks.values());
+    }
+
+    /**
+     * Determine if this directory has no entries.
+     * @return boolean if directory is empty.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Get number of entries in this directory.
+     * @return Number of files and sub-directories.
+     */
+    public int size() {
+        return isChunked() ? _size : _files.size() + _dirs.size();
+    }
+
+    /**
+     * Get ID of directory.
+     * @return ID.
+     */
+    public ObjectId getID() {
+        return ObjectId.hash(Utils.serialize(this));
+    }
+
+    /**
+     * Store this directory in the trees directory unless an identical one
+     * is already there.
+     * @return ID of directory.
+     */
+    public ObjectId save() {
+        ObjectId id = getID();
+        Repo.local().saveObject(Tree.TREES_DIR, id, this);
+        return id;
+    }
+
+    /**
+     * Returns the ID of the directory with no entries, which need not be
+     * stored.
+     * @return ID of empty directory.
+     */
+    static synchronized ObjectId emptyID() {
+        HashAlgorithm algorithm = HashAlgorithm.current();
+        if (algorithm != _emptyAlgorithm) {
+            _emptyID = new Directory().getID();
+            _emptyAlgorithm = algorithm;
+        }
+        return _emptyID;
+    }
+
+    /**
+     * Read a stored directory.
+     * @param id ID of directory.
+     * @return Directory with that ID.
+     */
+    public static Directory load(ObjectId id) {
+        if (id.equals(emptyID())) {
+            return new Directory();
+        }
+        return Utils.readObject(Tree.TREES_DIR, id, Directory.class);
+    }
+
+    /**
+     * Returns a copy of this directory that may be modified without
+     * affecting this one, which may be shared through the object cache.
+     * @return Copy of directory.
+     */
+    private Directory copy() {
+        Directory result = new Directory();
+        result._files.putAll(_files);
+        result._dirs.putAll(_dirs);
+        result._chunks.putAll(_chunks);
+        result._size = _size;
+        return result;
+    }
+
+    /**
+     * Determine if this directory keeps its entries in chunks.
+     * @return boolean if directory is chunked.
+     */
+    private boolean isChunked() {
+        return !_chunks.isEmpty();
+    }
+
+    /**
+     * Returns the directory holding the entry NAME, which is this one unless
+     * this directory is chunked.
+     * @param name Name of entry.
+     * @return Directory that would hold NAME.
+     */
+    private Directory holder(String name) {
+        if (!isChunked()) {
+            return this;
+        }
+        Map.Entry<String, ObjectId> chunk = _chunks.floorEntry(name);
+        if (chunk == null) {
+            chunk = _chunks.firstEntry();
+        }
+        return load(chunk.getValue());
+    }
+
+    /**
+     * Returns a directory with all of this directory's entries held
+     * directly, reading every chunk if this one is chunked.
+     * @return Unchunked directory with the same entries.
+     */
+    private Directory inline() {
+        if (!isChunked()) {
+            return this;
+        }
+        return inline(_chunks.values());
+    }
+
+    /**
+     * Returns an unchunked directory holding the entries of CHUNKS.
+     * @param chunks IDs of chunks.
+     * @return Unchunked directory.
+     */
+    private static Directory inline(Iterable<ObjectId> chunks) {
+        Directory result = new Directory();
+        for (ObjectId chunkID : chunks) {
+            Directory chunk = load(chunkID);
+            result._files.putAll(chunk._files);
+            result._dirs.putAll(chunk._dirs);
+        }
+        return result;
+    }
+
+    /**
+     * Store a new snapshot that applies CHANGES to the snapshot with SHA1
+     * ID ROOT. Only the directories and chunks along changed paths are
+     * written; everything else is shared with ROOT.
+     * @param root ID of original directory.
+     * @param changes Paths mapped to new blob IDs, or to null for
+     *                paths that are removed.
+     * @return ID of new directory.
+     */
+    public static ObjectId update(ObjectId root,
+                                  Map<String, ObjectId> changes) {
+        if (changes.isEmpty()) {
+            return root;
+        }
+        Directory dir = load(root);
+        TreeMap<String, ObjectId> fileChanges = new TreeMap<>();
+        TreeMap<String, TreeMap<String, ObjectId>> subChanges =
+                new TreeMap<>();
+        for (Map.Entry<String, ObjectId> change : changes.entrySet()) {
+            String path = change.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                fileChanges.put(path, change.getValue());
+            } else {
+                subChanges.computeIfAbsent(path.substring(0, slash),
+                        k -> new TreeMap<>())
+                        .put(path.substring(slash + 1), change.getValue());
+            }
+        }
+        TreeMap<String, ObjectId> dirChanges = new TreeMap<>();
+        for (String name : subChanges.keySet()) {
+            ObjectId oldSub = dir.holder(name)._dirs.get(name);
+            ObjectId newSub = update(oldSub == null ? emptyID() : oldSub,
+                    subChanges.get(name));
+            dirChanges.put(name, newSub.equals(emptyID()) ? null : newSub);
+        }
+        return dir.apply(fileChanges, dirChanges).save();
+    }
+
+    /**
+     * Returns a new directory with FILECHANGES and DIRCHANGES applied to
+     * this one, chunking or unchunking it as its size requires.
+     * @param fileChanges File names mapped to new blob IDs or null.
+     * @param dirChanges Directory names mapped to new IDs or null.
+     * @return Updated directory.
+     */
+    private Directory apply(TreeMap<String, ObjectId> fileChanges,
+                            TreeMap<String, ObjectId> dirChanges) {
+        Directory result;
+        if (!isChunked()) {
+            result = copy();
+            result.put(fileChanges, dirChanges);
+        } else {
+            result = applyToChunks(fileChanges, dirChanges);
+        }
+        if (!result.isChunked() && result.size() > INLINE_LIMIT) {
+            Directory chunked = new Directory();
+            chunked._size = result.size();
+            for (Directory piece : result.split()) {
+                chunked._chunks.put(piece.firstName(), piece.save());
+            }
+            result = chunked;
+        } else if (result.isChunked() && result._size <= INLINE_LIMIT / 2) {
+            result = result.inline();
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new chunked directory with FILECHANGES and DIRCHANGES
+     * applied to this chunked one. Chunks without changes are kept as they
+     * are unless a changed neighbor has to be merged into them.
+     * @param fileChanges File names mapped to new blob IDs or null.
+     * @param dirChanges Directory names mapped to new IDs or null.
+     * @return Updated directory.
+     */
+    private Directory applyToChunks(TreeMap<String, ObjectId> fileChanges,
+                                    TreeMap<String, ObjectId> dirChanges) {
+        Directory result = new Directory();
+        result._size = _size;
+        Directory pending = null;
+        String first = _chunks.firstKey();
+        for (Map.Entry<String, ObjectId> chunk : _chunks.entrySet()) {
+            String low = chunk.getKey().equals(first) ? null : chunk.getKey();
+            String high = _chunks.higherKey(chunk.getKey());
+            TreeMap<String, ObjectId> files = range(fileChanges, low, high);
+            TreeMap<String, ObjectId> dirs = range(dirChanges, low, high);
+            if (files.isEmpty() && dirs.isEmpty() && pending == null) {
+                result._chunks.put(chunk.getKey(), chunk.getValue());
+                continue;
+            }
+            Directory piece = load(chunk.getValue()).copy();
+            result._size -= piece.size();
+            piece.put(files, dirs);
+            result._size += piece.size();
+            if (pending != null) {
+                piece._files.putAll(pending._files);
+                piece._dirs.putAll(pending._dirs);
+            }
+            pending = null;
+            for (Directory part : piece.split()) {
+                if (part.endsAtBoundary()) {
+                    result._chunks.put(part.firstName(), part.save());
+                } else {
+                    pending = part;
+                }
+            }
+        }
+        if (pending != null) {
+            result._chunks.put(pending.firstName(), pending.save());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the entries of CHANGES with names in [LOW, HIGH), where a null
+     * LOW or HIGH leaves that end unbounded.
+     * @param changes Changes keyed by entry name.
+     * @param low Smallest name included, or null.
+     * @param high Smallest name excluded, or null.
+     * @return Changes in range.
+     */
+    private static TreeMap<String, ObjectId> range(
+            TreeMap<String, ObjectId> changes, String low, String high) {
+        if (low == null && high == null) {
+            return changes;
+        } else if (low == null) {
+            return new TreeMap<>(changes.headMap(high));
+        } else if (high == null) {
+            return new TreeMap<>(changes.tailMap(low));
+        }
+        return new TreeMap<>(changes.subMap(low, high));
+    }
+
+    /**
+     * Apply FILECHANGES and DIRCHANGES to this unchunked directory in place.
+     * @param fileChanges File names mapped to new blob IDs or null.
+     * @param dirChanges Directory names mapped to new IDs or null.
+     */
+    private void put(Map<String, ObjectId> fileChanges,
+                     Map<String, ObjectId> dirChanges) {
+        for (Map.Entry<String, ObjectId> change : fileChanges.entrySet()) {
+            if (change.getValue() == null) {
+                _files.remove(change.getKey());
+            } else {
+                _files.put(change.getKey(), change.getValue());
+            }
+        }
+        for (Map.Entry<String, ObjectId> change : dirChanges.entrySet()) {
+            if (change.getValue() == null) {
+                _dirs.remove(change.getKey());
+            } else {
+                _dirs.put(change.getKey(), change.getValue());
+            }
+        }
+    }
+
+    /**
+     * Split this unchunked directory into consecutive pieces, each ending
+     * at a boundary name or after MAX_CHUNK entries. Only the last piece may
+     * end elsewhere.
+     * @return Pieces in name order.
+     */
+    private ArrayList<Directory> split() {
+        TreeSet<String> names = new TreeSet<>(_files.keySet());
+        names.addAll(_dirs.keySet());
+        ArrayList<Directory> result = new ArrayList<>();
+        Directory piece = new Directory();
+        for (String name : names) {
+            if (_files.containsKey(name)) {
+                piece._files.put(name, _files.get(name));
+            } else {
+                piece._dirs.put(name, _dirs.get(name));
+            }
+            if (isBoundary(name) || piece.size() >= MAX_CHUNK) {
+                result.add(piece);
+                piece = new Directory();
+            }
+        }
+        if (!piece.isEmpty()) {
+            result.add(piece);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the smallest entry name in this unchunked directory.
+     * @return First name.
+     */
+    private String firstName() {
+        if (_files.isEmpty()) {
+            return _dirs.firstKey();
+        } else if (_dirs.isEmpty()) {
+            return _files.firstKey();
+        }
+        String file = _files.firstKey();
+        String dir = _dirs.firstKey();
+        return file.compareTo(dir) < 0 ? file : dir;
+    }
+
+    /**
+     * Determine if this unchunked directory ends where a chunk may end.
+     * @return boolean if the last entry is a boundary or the piece is full.
+     */
+    private boolean endsAtBoundary() {
+        String last;
+        if (_files.isEmpty()) {
+            last = _dirs.lastKey();
+        } else if (_dirs.isEmpty()) {
+            last = _files.lastKey();
+        } else {
+            String file = _files.lastKey();
+            String dir = _dirs.lastKey();
+            last = file.compareTo(dir) > 0 ? file : dir;
+        }
+        return isBoundary(last) || size() >= MAX_CHUNK;
+    }
+
+    /**
+     * Determine if a chunk ends after the entry NAME. About one name in
+     * CHUNK_TARGET is a boundary.
+     * @param name Entry name.
+     * @return boolean if NAME is a boundary.
+     */
+    private static boolean isBoundary(String name) {
+        int h = name.hashCode() * 0x9E3779B9;
+        return Integer.remainderUnsigned(h, CHUNK_TARGET) == 0;
+    }
+
+    /**
+     * Find the blob ID of a single path, reading only the directories
+     * and chunks along that path.
+     * @param root ID of top directory.
+     * @param path Path of file relative to top directory.
+     * @return Blob ID, or null if PATH is not a file in the snapshot.
+     */
+    public static ObjectId lookup(ObjectId root, String path) {
+        Directory dir = load(root);
+        int start = 0;
+        int slash = path.indexOf('/');
+        while (slash >= 0) {
+            String name = path.substring(start, slash);
+            ObjectId sub = dir.holder(name)._dirs.get(name);
+            if (sub == null) {
+                return null;
+            }
+            dir = load(sub);
+            start = slash + 1;
+            slash = path.indexOf('/', start);
+        }
+        String name = path.substring(start);
+        return dir.holder(name)._files.get(name);
+    }
+
+    /**
+     * Add every file beneath the snapshot ROOT to RESULT, keyed by its path
+     * with PREFIX prepended.
+     * @param root ID of directory.
+     * @param prefix Path of directory, ending in '/', or "" at the top.
+     * @param result Map of paths to blob IDs to fill in.
+     */
+    public static void flatten(ObjectId root, String prefix,
+                               Map<String, ObjectId> result) {
+        flatten(root, prefix, result, path -> true);
+    }
+
+    /**
+     * Add every file beneath the snapshot ROOT whose path WITHIN accepts
+     * to RESULT, keyed by its path with PREFIX prepended. Directories
+     * whose paths, ending in '/', WITHIN rejects are not read.
+     * @param root ID of directory.
+     * @param prefix Path of directory, ending in '/', or "" at the top.
+     * @param result Map of paths to blob IDs to fill in.
+     * @param within Test of the paths of files and directories.
+     */
+    public static void flatten(ObjectId root, String prefix,
+                               Map<String, ObjectId> result,
+                               Predicate<String> within) {
+        Directory dir = load(root).inline();
+        for (String name : dir._files.keySet()) {
+            if (within.test(prefix + name)) {
+                result.put(prefix + name, dir._files.get(name));
+            }
+        }
+        for (String name : dir._dirs.keySet()) {
+            if (within.test(prefix + name + "/")) {
+                flatten(dir._dirs.get(name), prefix + name + "/", result,
+                        within);
+            }
+        }
+    }
+
+    /**
+     * Find the paths of all files whose blob IDs differ between two
+     * snapshots, including files present in only one of them. Identical
+     * sub-directories and chunks are skipped without being read.
+     * @param first ID of first directory, or null if absent.
+     * @param second ID of second directory, or null if absent.
+     * @return Sorted paths of changed files.
+     */
+    public static TreeSet<String> changedPaths(ObjectId first,
+                                               ObjectId second) {
+        return changedPaths(first, second, path -> true);
+    }
+
+    /**
+     * Find the paths WITHIN accepts of all files whose blob IDs differ
+     * between two snapshots. Directories whose paths, ending in '/',
+     * WITHIN rejects are skipped without being read.
+     * @param first ID of first directory, or null if absent.
+     * @param second ID of second directory, or null if absent.
+     * @param within Test of the paths of files and directories.
+     * @return Sorted paths of changed files.
+     */
+    public static TreeSet<String> changedPaths(ObjectId first,
+                                               ObjectId second,
+                                               Predicate<String> within) {
+        TreeSet<String> result = new TreeSet<>();
+        changedPaths(first, second, "", result, within);
+        return result;
+    }
+
+    /**
+     * Add to RESULT the paths, with PREFIX prepended, of all files whose
+     * blob IDs differ between snapshots FIRST and SECOND.
+     * @param first ID of first directory, or null if absent.
+     * @param second ID of second directory, or null if absent.
+     * @param prefix Path of directories, ending in '/', or "" at the top.
+     * @param result Set of changed paths to fill in.
+     * @param within Test of the paths of files and directories.
+     */
+    private static void changedPaths(ObjectId first, ObjectId second,
+                                     String prefix, TreeSet<String> result,
+                                     Predicate<String> within) {
+        if (first != null && first.equals(second)) {
+            return;
+        }
+        Directory a = first == null ? new Directory() : load(first);
+        Directory b = second == null ? new Directory() : load(second);
+        if (a.isChunked() && b.isChunked()) {
+            HashSet<ObjectId> shared = new HashSet<>(a._chunks.values());
+            shared.retainAll(b._chunks.values());
+            a = unsharedEntries(a, shared);
+            b = unsharedEntries(b, shared);
+        } else {
+            a = a.inline();
+            b = b.inline();
+        }
+        TreeSet<String> names = new TreeSet<>(a._files.keySet());
+        names.addAll(b._files.keySet());
+        for (String name : names) {
+            ObjectId blobA = a._files.get(name);
+            if ((blobA == null || !blobA.equals(b._files.get(name)))
+                    && within.test(prefix + name)) {
+                result.add(prefix + name);
+            }
+        }
+        names = new TreeSet<>(a._dirs.keySet());
+        names.addAll(b._dirs.keySet());
+        for (String name : names) {
+            if (within.test(prefix + name + "/")) {
+                changedPaths(a._dirs.get(name), b._dirs.get(name),
+                        prefix + name + "/", result, within);
+            }
+        }
+    }
+
+    /**
+     * Returns an unchunked directory with the entries of the chunked
+     * directory DIR that are not in any chunk in SHARED.
+     * @param dir Chunked directory.
+     * @param shared IDs of chunks to leave out.
+     * @return Unchunked directory.
+     */
+    private static Directory unsharedEntries(Directory dir,
+                                             HashSet<ObjectId> shared) {
+        ArrayList<ObjectId> chunks = new ArrayList<>();
+        for (ObjectId chunkID : dir._chunks.values()) {
+            if (!shared.contains(chunkID)) {
+                chunks.add(chunkID);
+            }
+        }
+        return inline(chunks);
+    }
+
+    /**
+     * Largest number of entries a directory holds before it is chunked.
+     */
+    static final int INLINE_LIMIT = 1024;
+
+    /**
+     * Average number of entries in a chunk.
+     */
+    static final int CHUNK_TARGET = 256;
+
+    /**
+     * Largest number of entries in a chunk.
+     */
+    static final int MAX_CHUNK = 4 * CHUNK_TARGET;
+
+    /**
+     * ID of the directory with no entries under _emptyAlgorithm.
+     */
+    private static ObjectId _emptyID;
+
+    /**
+     * Hash algorithm that _emptyID was computed with.
+     */
+    private static HashAlgorithm _emptyAlgorithm;
+
+    /**
+     * File names in this directory mapped to blob IDs. Empty if the
+     * directory is chunked.
+     */
+    private TreeMap<String, ObjectId> _files;
+
+    /**
+     * Sub-directory names in this directory mapped to directory IDs.
+     * Empty if the directory is chunked.
+     */
+    private TreeMap<String, ObjectId> _dirs;
+
+    /**
+     * Smallest entry name in each chunk mapped to the chunk's ID.
+     * Empty unless the directory is chunked.
+     */
+    private TreeMap<String, ObjectId> _chunks;
+
+    /**
+     * Total number of entries in all chunks, if the directory is chunked.
+     */
+    private int _size;
+
+    /**
+     * Version of the serialized form of a directory, kept in step with
+     * Repo.FORMAT.
+     */
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,801 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An import of history from a stream in the format read by git
+ * fast-import: blobs, commits, resets and checkpoints, with marks naming
+ * the objects the stream itself creates. Each commit's snapshot is made
+ * by applying its file changes to its first parent's, so only the
+ * directories along changed paths are written, and the working tree is
+ * never touched. Objects go to the store's batch of writes, which syncs
+ * them only at checkpoints; the commit table, the changed-path records
+ * and the branches are brought up to date at each checkpoint, once the
+ * objects they refer to are on disk, so a failed import never leaves a
+ * branch naming a missing commit. Commits that start a history descend
+ * from the repository's initial commit, as every other commit does.
+ * Annotated tags are read and skipped, as Gitlet has no tags.
+ * @author Aishik Bhattacharyya
+ */
+class FastImport {
+
+    /**
+     * Import of the stream IN, whose root commits descend from the commit
+     * ROOT, writing progress messages to OUT.
+     * @param in Stream to import.
+     * @param root ID of the repository's initial commit.
+     * @param out Output for progress messages.
+     */
+    FastImport(InputStream in, ObjectId root, PrintStream out) {
+        _in = in;
+        _root = root;
+        _out = out;
+    }
+
+    /**
+     * Import the whole stream, stopping at "done" or at its end.
+     * @throws IOException If the stream cannot be read or objects cannot
+     *                     be written.
+     */
+    void run() throws IOException {
+        readBranches();
+        Repo.local().beginBatch();
+        try {
+            for (String line = readLine(); line != null; line = readLine()) {
+                if (line.isEmpty() || line.startsWith("#")
+                        || line.startsWith("feature ")
+                        || line.startsWith("option ")) {
+                    continue;
+                } else if (line.equals("done")) {
+                    break;
+                } else if (line.equals("blob")) {
+                    blob();
+                } else if (line.startsWith("commit ")) {
+                    commit(branchName(line.substring("commit ".length())));
+                } else if (line.startsWith("reset ")) {
+                    reset(branchName(line.substring("reset ".length())));
+                } else if (line.startsWith("tag ")) {
+                    tag();
+                } else if (line.equals("checkpoint")) {
+                    checkpoint();
+                } else if (line.startsWith("progress ")) {
+                    _out.println(line.substring("progress ".length()));
+                } else {
+                    throw Utils.error("Unsupported command: %s", line);
+                }
+            }
+            checkpoint();
+        } finally {
+            Repo.local().endBatch();
+        }
+    }
+
+    /**
+     * Read the existing branches.
+     */
+    private void readBranches() {
+        File[] files = Tree.BRANCHES_DIR.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            Branch branch = Utils.readObject(file, Branch.class);
+            _branchFiles.put(branch.getName(), file);
+            _branches.put(branch.getName(), branch);
+        }
+    }
+
+    /**
+     * Import a blob, whose header line has been read.
+     * @throws IOException If the stream cannot be read.
+     */
+    private void blob() throws IOException {
+        String line = readLine();
+        long mark = -1;
+        if (line != null && line.startsWith("mark ")) {
+            mark = mark(line.substring("mark ".length()));
+            line = readLine();
+        }
+        if (line != null && line.startsWith("original-oid ")) {
+            line = readLine();
+        }
+        ObjectId id = saveBlob("", data(line));
+        if (mark >= 0) {
+            _marks.put(mark, id);
+        }
+    }
+
+    /**
+     * Import a commit to the branch BRANCH, whose header line has been
+     * read.
+     * @param branch Name of branch.
+     * @throws IOException If the stream cannot be read.
+     */
+    private void commit(String branch) throws IOException {
+        String line = readLine();
+        long mark = -1;
+        if (line != null && line.startsWith("mark ")) {
+            mark = mark(line.substring("mark ".length()));
+            line = readLine();
+        }
+        if (line != null && line.startsWith("original-oid ")) {
+            line = readLine();
+        }
+        if (line != null && line.startsWith("author ")) {
+            line = readLine();
+        }
+        Matcher committer = line == null ? null : IDENT.matcher(line);
+        if (committer == null || !committer.matches()
+                || !line.startsWith("committer ")) {
+            throw Utils.error("Expected committer: %s", line);
+        }
+        line = readLine();
+        if (line != null && line.startsWith("encoding ")) {
+            line = readLine();
+        }
+        String message = new String(data(line), StandardCharsets.UTF_8)
+                .replaceAll("\n+\\z", "");
+
+        line = readLine();
+        ObjectId parent = null;
+        boolean unborn = _unborn.remove(branch);
+        if (line != null && line.startsWith("from ")) {
+            parent = commitish(line.substring("from ".length()));
+            line = readLine();
+        } else if (unborn) {
+            parent = _root;
+        } else if (_heads.containsKey(branch)) {
+            parent = _heads.get(branch);
+        } else if (_branches.containsKey(branch)) {
+            parent = _branches.get(branch).getHeadCommit();
+        }
+        if (parent == null) {
+            parent = _root;
+        }
+        ArrayList<ObjectId> merges = new ArrayList<>();
+        while (line != null && line.startsWith("merge ")) {
+            merges.add(commitish(line.substring("merge ".length())));
+            line = readLine();
+        }
+
+        ObjectId parentTree = Utils.readObject(Tree.COMMITS_DIR, parent,
+                Commit.class).getTree();
+        ObjectId base = parentTree;
+        TreeMap<String, ObjectId> changes = new TreeMap<>();
+        for (; line != null; line = readLine()) {
+            if (line.startsWith("M ")) {
+                modify(line.substring("M ".length()), base, changes);
+            } else if (line.startsWith("D ")) {
+                delete(path(line.substring("D ".length()), false)[0], base,
+                        changes);
+            } else if (line.startsWith("C ") || line.startsWith("R ")) {
+                String[] paths = path(line.substring("C ".length()), true);
+                copy(paths[0], path(paths[1], false)[0], base, changes,
+                        line.charAt(0) == 'R');
+            } else if (line.equals("deleteall")) {
+                base = Directory.emptyID();
+                changes.clear();
+            } else {
+                _pushback = line;
+                break;
+            }
+        }
+
+        ObjectId tree = Directory.update(base, changes);
+        long seconds = Long.parseLong(committer.group(1));
+        int offset = (committer.group(2).equals("-") ? -1 : 1)
+                * (Integer.parseInt(committer.group(3)) * SECONDS_PER_HOUR
+                   + Integer.parseInt(committer.group(4)) * SECONDS_PER_MIN);
+        Commit commit = new Commit(message, seconds * MILLIS_PER_SEC, offset);
+        commit.addParent(parent);
+        for (ObjectId merge : merges) {
+            commit.addParent(merge);
+        }
+        commit.setTree(tree);
+        ObjectId id = commit.getID();
+        Repo.local().saveObject(Tree.COMMITS_DIR, id, commit);
+        _commits.add(commit);
+        _changedPaths.add(base.equals(parentTree) ? changes.keySet()
+                : Directory.changedPaths(parentTree, tree));
+        if (mark >= 0) {
+            _marks.put(mark, id);
+        }
+
+        ObjectIdSet history = _histories.get(branch);
+        if (history == null
+                || !history.get(history.size() - 1).equals(parent)) {
+            history = history(parent);
+            _histories.put(branch, history);
+        }
+        history.add(id);
+        _heads.put(branch, id);
+        if (_commits.size() >= CHECKPOINT_INTERVAL) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Apply the file change SPEC, of the form "MODE DATAREF PATH", to
+     * CHANGES, which are changes to the snapshot BASE.
+     * @param spec File change after "M ".
+     * @param base ID of snapshot changed.
+     * @param changes Paths mapped to new blob IDs, or to null for removals.
+     * @throws IOException If the stream cannot be read.
+     */
+    private void modify(String spec, ObjectId base,
+                        TreeMap<String, ObjectId> changes) throws IOException {
+        String[] fields = spec.split(" ", 3);
+        if (fields.length < 3) {
+            throw Utils.error("Malformed file change: M %s", spec);
+        }
+        if (!FILE_MODES.contains(fields[0])) {
+            throw Utils.error("Unsupported file mode: %s", fields[0]);
+        }
+        String path = path(fields[2], false)[0];
+        ObjectId blob;
+        if (fields[1].equals("inline")) {
+            blob = saveBlob(path, data(readLine()));
+        } else if (fields[1].startsWith(":")) {
+            blob = _marks.get(mark(fields[1]));
+            if (blob == null) {
+                throw Utils.error("Unknown mark: %s", fields[1]);
+            }
+        } else {
+            blob = ObjectId.parse(fields[1]);
+            if (blob == null
+                    || !Repo.local().hasObject(Tree.BLOB_DIR, blob)) {
+                throw Utils.error("Unknown blob: %s", fields[1]);
+            }
+        }
+        changes.put(path, blob);
+    }
+
+    /**
+     * Record in CHANGES, which are changes to the snapshot BASE, the
+     * removal of the file or directory PATH.
+     * @param path Path of file or directory.
+     * @param base ID of snapshot changed.
+     * @param changes Paths mapped to new blob IDs, or to null for removals.
+     */
+    private static void delete(String path, ObjectId base,
+                               TreeMap<String, ObjectId> changes) {
+        if (file(path, base, changes) != null) {
+            changes.put(path, null);
+        } else {
+            for (String file : filesBeneath(path, base, changes).keySet()) {
+                changes.put(file, null);
+            }
+        }
+    }
+
+    /**
+     * Record in CHANGES, which are changes to the snapshot BASE, a copy
+     * of the file or directory FROM to TO, removing FROM if RENAME.
+     * @param from Path of file or directory copied.
+     * @param to Path of copy.
+     * @param base ID of snapshot changed.
+     * @param changes Paths mapped to new blob IDs, or to null for removals.
+     * @param rename Whether to remove FROM.
+     */
+    private static void copy(String from, String to, ObjectId base,
+                             TreeMap<String, ObjectId> changes,
+                             boolean rename) {
+        TreeMap<String, ObjectId> copied = new TreeMap<>();
+        ObjectId file = file(from, base, changes);
+        if (file != null) {
+            copied.put(to, file);
+        } else {
+            for (Map.Entry<String, ObjectId> entry
+                    : filesBeneath(from, base, changes).entrySet()) {
+                copied.put(to + entry.getKey().substring(from.length()),
+                        entry.getValue());
+            }
+        }
+        if (copied.isEmpty()) {
+            throw Utils.error("Path not in tree: %s", from);
+        }
+        if (rename) {
+            delete(from, base, changes);
+        }
+        changes.putAll(copied);
+    }
+
+    /**
+     * Returns the blob ID of the file at PATH in the snapshot BASE with
+     * CHANGES applied.
+     * @param path Path of file.
+     * @param base ID of snapshot.
+     * @param changes Paths mapped to new blob IDs, or to null for removals.
+     * @return Blob ID, or null if there is no such file.
+     */
+    private static ObjectId file(String path, ObjectId base,
+                                 TreeMap<String, ObjectId> changes) {
+        if (changes.containsKey(path)) {
+            return changes.get(path);
+        }
+        return Directory.lookup(base, path);
+    }
+
+    /**
+     * Returns the files beneath the directory DIR in the snapshot BASE
+     * with CHANGES applied. Only the directories along DIR are read.
+     * @param dir Path of directory.
+     * @param base ID of snapshot.
+     * @param changes Paths mapped to new blob IDs, or to null for removals.
+     * @return Paths of files mapped to their blob IDs.
+     */
+    private static TreeMap<String, ObjectId> filesBeneath(
+            String dir, ObjectId base, TreeMap<String, ObjectId> changes) {
+        String prefix = dir + "/";
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        Directory.flatten(base, "", result, path -> path.startsWith(prefix)
+                || path.endsWith("/") && prefix.startsWith(path));
+        for (Map.Entry<String, ObjectId> change : changes.subMap(prefix,
+                prefix + Character.MAX_VALUE).entrySet()) {
+            if (change.getValue() == null) {
+                result.remove(change.getKey());
+            } else {
+                result.put(change.getKey(), change.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Import a reset of the branch BRANCH, whose header line has been
+     * read: it is moved to the commit named by a following "from" line,
+     * or otherwise its next commit starts a new history.
+     * @param branch Name of branch.
+     * @throws IOException If the stream cannot be read.
+     */
+    private void reset(String branch) throws IOException {
+        String line = readLine();
+        if (line != null && line.startsWith("from ")) {
+            ObjectId head = commitish(line.substring("from ".length()));
+            _heads.put(branch, head);
+            _histories.put(branch, history(head));
+            _unborn.remove(branch);
+        } else {
+            _pushback = line;
+            _unborn.add(branch);
+        }
+    }
+
+    /**
+     * Skip an annotated tag, whose header line has been read.
+     * @throws IOException If the stream cannot be read.
+     */
+    private void tag() throws IOException {
+        String line = readLine();
+        while (line != null && !line.startsWith("data ")) {
+            line = readLine();
+        }
+        data(line);
+    }
+
+    /**
+     * Wait until every object imported so far is on disk, then record
+     * the commits imported since the last checkpoint and write the
+     * branches they moved.
+     * @throws IOException If objects or records cannot be written.
+     */
+    private void checkpoint() throws IOException {
+        Repo repo = Repo.local();
+        repo.checkpoint();
+        for (int k = 0; k < _commits.size(); k += 1) {
+            repo.recordCommit(_commits.get(k));
+            repo.recordChangedPaths(_commits.get(k).getID(),
+                    _changedPaths.get(k));
+        }
+        _commits.clear();
+        _changedPaths.clear();
+        for (Map.Entry<String, ObjectId> head : _heads.entrySet()) {
+            String name = head.getKey();
+            Branch branch = _branches.get(name);
+            if (branch == null) {
+                branch = new Branch(name);
+                _branches.put(name, branch);
+                _branchFiles.put(name, repo.newBranchFile(branch));
+            } else if (head.getValue().equals(branch.getHeadCommit())) {
+                continue;
+            }
+            branch.setCommits(_histories.get(name).copy());
+            branch.setHead(head.getValue());
+            repo.replaceObject(_branchFiles.get(name), branch);
+        }
+    }
+
+    /**
+     * Returns the history of a branch whose head is the commit HEAD: that
+     * of a branch already holding HEAD up to it, or else HEAD's first
+     * parents back to the initial commit.
+     * @param head ID of commit.
+     * @return Commit history, oldest first.
+     */
+    private ObjectIdSet history(ObjectId head) {
+        ArrayList<ObjectIdSet> known = new ArrayList<>(_histories.values());
+        for (Branch branch : _branches.values()) {
+            known.add(branch.getCommits());
+        }
+        for (ObjectIdSet commits : known) {
+            int last = commits.indexOf(head);
+            if (last >= 0) {
+                ObjectIdSet result = new ObjectIdSet();
+                for (int k = 0; k <= last; k += 1) {
+                    result.add(commits.get(k));
+                }
+                return result;
+            }
+        }
+        ArrayList<ObjectId> chain = new ArrayList<>();
+        for (ObjectId id = head; id != null; ) {
+            chain.add(id);
+            List<ObjectId> parents = Utils.readObject(
+                    Tree.COMMITS_DIR, id, Commit.class).getParents();
+            id = parents.isEmpty() ? null : parents.get(0);
+        }
+        Collections.reverse(chain);
+        ObjectIdSet result = new ObjectIdSet();
+        for (ObjectId id : chain) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the commit named by NAME: a mark, a branch, or a full ID.
+     * @param name Name of commit.
+     * @return ID of commit.
+     */
+    private ObjectId commitish(String name) {
+        ObjectId result = null;
+        if (name.startsWith(":")) {
+            result = _marks.get(mark(name));
+        } else {
+            String branch = branchName(name.replaceAll("\\^0\\z", ""));
+            if (_heads.containsKey(branch)) {
+                result = _heads.get(branch);
+            } else if (_branches.containsKey(branch)) {
+                result = _branches.get(branch).getHeadCommit();
+            } else {
+                result = ObjectId.parse(name);
+            }
+        }
+        if (result == null || !Repo.local().hasCommit(result)) {
+            throw Utils.error("Not a commit: %s", name);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the Gitlet branch name for the git ref REF: the branch
+     * refs/heads/NAME is NAME, refs/remotes/R/NAME is R/NAME, and other
+     * refs are named by what follows "refs/".
+     * @param ref Name of ref.
+     * @return Name of branch.
+     */
+    private static String branchName(String ref) {
+        for (String prefix : REF_PREFIXES) {
+            if (ref.startsWith(prefix)) {
+                return ref.substring(prefix.length());
+            }
+        }
+        return ref;
+    }
+
+    /**
+     * Returns the number of the mark SPEC, of the form ":N".
+     * @param spec Mark.
+     * @return Mark number.
+     */
+    private static long mark(String spec) {
+        try {
+            if (spec.startsWith(":")) {
+                return Long.parseLong(spec.substring(1));
+            }
+        } catch (NumberFormatException excp) {
+            /* Reported below. */
+        }
+        throw Utils.error("Malformed mark: %s", spec);
+    }
+
+    /**
+     * Store CONTENTS as the blob of the file NAME.
+     * @param name File name.
+     * @param contents Contents of file.
+     * @return ID of blob.
+     */
+    private static ObjectId saveBlob(String name, byte[] contents) {
+        Blob blob = new Blob(name, contents);
+        Repo.local().saveObject(Tree.BLOB_DIR, blob.getHash(), blob);
+        return blob.getHash();
+    }
+
+    /**
+     * Returns the path at the start of SPEC, which may be quoted with
+     * C-style escapes, and the rest of SPEC after the space following
+     * it. A path that is not quoted runs to the first space if MORE
+     * follows it, and otherwise is all of SPEC.
+     * @param spec Path, possibly followed by a space and more.
+     * @param more Whether more follows the path.
+     * @return Path and the rest of SPEC, which is "" if nothing follows.
+     */
+    private static String[] path(String spec, boolean more) {
+        if (!spec.startsWith("\"")) {
+            int space = more ? spec.indexOf(' ') : -1;
+            if (space < 0) {
+                return new String[] { spec, "" };
+            }
+            return new String[] { spec.substring(0, space),
+                spec.substring(space + 1) };
+        }
+        ByteArrayOutputStream path = new ByteArrayOutputStream();
+        int k = 1;
+        while (k < spec.length() && spec.charAt(k) != '"') {
+            char c = spec.charAt(k);
+            k += 1;
+            if (c != '\\' || k == spec.length()) {
+                byte[] bytes = String.valueOf(c).getBytes(
+                        StandardCharsets.UTF_8);
+                path.write(bytes, 0, bytes.length);
+                continue;
+            }
+            c = spec.charAt(k);
+            k += 1;
+            int octal = Character.digit(c, 8);
+            if (octal >= 0) {
+                for (int n = 1; n < 3 && k < spec.length()
+                        && Character.digit(spec.charAt(k), 8) >= 0; n += 1) {
+                    octal = octal * 8 + Character.digit(spec.charAt(k), 8);
+                    k += 1;
+                }
+                path.write(octal);
+            } else {
+                int index = ESCAPES.indexOf(c);
+                path.write(index < 0 ? c : ESCAPED.charAt(index));
+            }
+        }
+        if (k == spec.length()) {
+            throw Utils.error("Malformed path: %s", spec);
+        }
+        String rest = spec.substring(k + 1);
+        return new String[] { path.toString(StandardCharsets.UTF_8),
+            rest.startsWith(" ") ? rest.substring(1) : rest };
+    }
+
+    /**
+     * Returns the data whose "data" line is LINE, of the form "data N",
+     * followed by N bytes and an optional newline, or "data <<DELIM",
+     * followed by lines up to one that is DELIM.
+     * @param line Header of data.
+     * @return Data.
+     * @throws IOException If the stream cannot be read.
+     */
+    private byte[] data(String line) throws IOException {
+        if (line == null || !line.startsWith("data ")) {
+            throw Utils.error("Expected data: %s", line);
+        }
+        String size = line.substring("data ".length());
+        if (size.startsWith("<<")) {
+            String delim = size.substring(2);
+            StringBuilder result = new StringBuilder();
+            for (String text = readLine(); !delim.equals(text);
+                 text = readLine()) {
+                if (text == null) {
+                    throw Utils.error("Unexpected end of input.");
+                }
+                result.append(text).append('\n');
+            }
+            return result.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        int length;
+        try {
+            length = Integer.parseInt(size);
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Malformed data: %s", line);
+        }
+        byte[] result = new byte[length];
+        for (int k = 0; k < length; ) {
+            if (_pos == _end && !fill()) {
+                throw Utils.error("Unexpected end of input.");
+            }
+            int n = Math.min(length - k, _end - _pos);
+            System.arraycopy(_buf, _pos, result, k, n);
+            _pos += n;
+            k += n;
+        }
+        if ((_pos < _end || fill()) && _buf[_pos] == '\n') {
+            _pos += 1;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the next line of the stream, without its newline.
+     * @return Line, or null at the end of the stream.
+     * @throws IOException If the stream cannot be read.
+     */
+    private String readLine() throws IOException {
+        if (_pushback != null) {
+            String result = _pushback;
+            _pushback = null;
+            return result;
+        }
+        _line.reset();
+        while (true) {
+            if (_pos == _end && !fill()) {
+                return _line.size() == 0 ? null
+                        : _line.toString(StandardCharsets.UTF_8);
+            }
+            int start = _pos;
+            while (_pos < _end && _buf[_pos] != '\n') {
+                _pos += 1;
+            }
+            _line.write(_buf, start, _pos - start);
+            if (_pos < _end) {
+                _pos += 1;
+                return _line.toString(StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    /**
+     * Read more of the stream into _buf, which has been used up.
+     * @return boolean if anything was read.
+     * @throws IOException If the stream cannot be read.
+     */
+    private boolean fill() throws IOException {
+        int n = _in.read(_buf);
+        _pos = 0;
+        _end = Math.max(n, 0);
+        return n > 0;
+    }
+
+    /**
+     * Number of commits imported between automatic checkpoints.
+     */
+    private static final int CHECKPOINT_INTERVAL = 10000;
+
+    /**
+     * Size of the buffer the stream is read through.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Seconds per hour.
+     */
+    private static final int SECONDS_PER_HOUR = 3600;
+
+    /**
+     * Seconds per minute.
+     */
+    private static final int SECONDS_PER_MIN = 60;
+
+    /**
+     * Milliseconds per second.
+     */
+    private static final long MILLIS_PER_SEC = 1000;
+
+    /**
+     * Author or committer line, in git's raw date format.
+     */
+    private static final Pattern IDENT = Pattern.compile(
+            "\\w+ .*> (\\d+) ([+-])(\\d\\d)(\\d\\d)");
+
+    /**
+     * File modes accepted; Gitlet keeps no modes, so all are stored alike.
+     */
+    private static final TreeSet<String> FILE_MODES = new TreeSet<>(
+            List.of("644", "755", "100644", "100755", "120000"));
+
+    /**
+     * Prefixes stripped from refs to make branch names.
+     */
+    private static final String[] REF_PREFIXES = {
+        "refs/heads/", "refs/remotes/", "refs/"
+    };
+
+    /**
+     * Characters following a backslash in quoted paths.
+     */
+    private static final String ESCAPES = "abfnrtv";
+
+    /**
+     * Characters those in ESCAPES stand for.
+     */
+    private static final String ESCAPED = "\007\b\f\n\r\t\013";
+
+    /**
+     * Stream imported.
+     */
+    private final InputStream _in;
+
+    /**
+     * Buffer holding the stream.
+     */
+    private final byte[] _buf = new byte[BUFFER_SIZE];
+
+    /**
+     * Position of the next unread byte in _buf.
+     */
+    private int _pos;
+
+    /**
+     * End of the bytes read into _buf.
+     */
+    private int _end;
+
+    /**
+     * Bytes of the line being read.
+     */
+    private final ByteArrayOutputStream _line = new ByteArrayOutputStream();
+
+    /**
+     * Line read but not yet handled, or null.
+     */
+    private String _pushback;
+
+    /**
+     * ID of the repository's initial commit.
+     */
+    private final ObjectId _root;
+
+    /**
+     * Output for progress messages.
+     */
+    private final PrintStream _out;
+
+    /**
+     * IDs of the blobs and commits named by marks.
+     */
+    private final HashMap<Long, ObjectId> _marks = new HashMap<>();
+
+    /**
+     * Branches as last written, by name.
+     */
+    private final HashMap<String, Branch> _branches = new HashMap<>();
+
+    /**
+     * Files holding the branches in _branches.
+     */
+    private final HashMap<String, File> _branchFiles = new HashMap<>();
+
+    /**
+     * Branches reset with no commit to start from.
+     */
+    private final HashSet<String> _unborn = new HashSet<>();
+
+    /**
+     * Heads of the branches the stream has moved, by name.
+     */
+    private final TreeMap<String, ObjectId> _heads = new TreeMap<>();
+
+    /**
+     * Histories of the branches in _heads.
+     */
+    private final HashMap<String, ObjectIdSet> _histories = new HashMap<>();
+
+    /**
+     * Commits imported since the last checkpoint.
+     */
+    private final ArrayList<Commit> _commits = new ArrayList<>();
+
+    /**
+     * Paths changed by each commit in _commits from its first parent.
+     */
+    private final ArrayList<Collection<String>> _changedPaths =
+            new ArrayList<>();
+}
@@ -0,0 +1,293 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Verification of a store's integrity. Each object is read once, in
+ * parallel across all cores, straight from its file, and hashed again:
+ * blobs from their contents, and directories and commits from their
+ * fields, as they were hashed when made. The IDs each object refers to
+ * are gathered into one compact set, and each is looked up on disk the
+ * first time it is seen, which finds missing objects. A second pass over
+ * the names of the objects then finds those that nothing refers to.
+ * Directory listings are streamed, so besides the set of referenced IDs,
+ * memory holds only the objects being checked.
+ * @author Aishik Bhattacharyya
+ */
+class Fsck {
+
+    /**
+     * Check of the store holding COMMITS, TREES and BLOBS.
+     * @param commits Commits directory.
+     * @param trees Directory snapshots directory.
+     * @param blobs Blobs directory.
+     * @param progress Stream on which to show progress, or null.
+     */
+    Fsck(File commits, File trees, File blobs, PrintStream progress) {
+        _commits = commits;
+        _trees = trees;
+        _blobs = blobs;
+        _progress = progress;
+    }
+
+    /**
+     * Check the branches in the files BRANCHES and the staging areas in
+     * STAGING, noting the commits and blobs they refer to.
+     * @param branches Branch files.
+     * @param staging Staging area files, which need not exist and are
+     *                empty until something is staged.
+     */
+    void checkRefs(File[] branches, List<File> staging) {
+        for (File file : branches) {
+            try {
+                Branch branch = Utils.readObject(file, Branch.class);
+                reference(branch.getHeadCommit(), _commits);
+            } catch (IllegalArgumentException | NullPointerException excp) {
+                report("corrupt branch " + file.getName());
+            }
+        }
+        for (File file : staging) {
+            if (!file.isFile() || file.length() == 0) {
+                continue;
+            }
+            try {
+                Map<?, ?> staged = Utils.readObject(file, TreeMap.class);
+                for (Object id : staged.values()) {
+                    reference((ObjectId) id, _blobs);
+                }
+            } catch (IllegalArgumentException | ClassCastException excp) {
+                report("corrupt staging area " + file.getPath());
+            }
+        }
+    }
+
+    /**
+     * Check every object, returning the problems found.
+     * @return Sorted descriptions of problems.
+     * @throws IOException If an object directory cannot be listed.
+     */
+    List<String> run() throws IOException {
+        long total = 0;
+        if (_progress != null) {
+            for (File dir : new File[] {_commits, _trees, _blobs}) {
+                total += count(dir);
+            }
+        }
+        check(_commits, total);
+        check(_trees, total);
+        check(_blobs, total);
+        if (_progress != null) {
+            _progress.println();
+        }
+        for (File dir : new File[] {_commits, _trees, _blobs}) {
+            try (Stream<Path> names = list(dir)) {
+                names.forEach(path -> {
+                    ObjectId id = parse(path);
+                    if (id != null && !_referenced.contains(id)) {
+                        report("dangling " + kind(dir) + " " + id);
+                    }
+                });
+            }
+        }
+        return new ArrayList<>(_problems);
+    }
+
+    /**
+     * Check every object in DIR in parallel.
+     * @param dir Object directory.
+     * @param total Number of objects in the store, for the progress meter.
+     * @throws IOException If DIR cannot be listed.
+     */
+    private void check(File dir, long total) throws IOException {
+        try (Stream<Path> names = list(dir)) {
+            names.parallel().forEach(path -> {
+                ObjectId id = parse(path);
+                if (id == null) {
+                    report("corrupt " + kind(dir) + " " + path.getFileName());
+                } else if (!verify(dir, path.toFile(), id)) {
+                    report("corrupt " + kind(dir) + " " + id);
+                }
+                long done = _checked.incrementAndGet();
+                if (_progress != null && (done % PROGRESS_STEP == 0
+                        || done == total)) {
+                    synchronized (_progress) {
+                        _progress.printf("\rChecking objects: %d%% (%d/%d)",
+                                100 * done / Math.max(total, 1), done, total);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Determine if FILE, in DIR, holds a sound object whose ID is ID,
+     * noting the objects it refers to.
+     * @param dir Object directory.
+     * @param file Object file.
+     * @param id ID the file is named by.
+     * @return boolean if the object can be read and has ID ID.
+     */
+    private boolean verify(File dir, File file, ObjectId id) {
+        try {
+            if (dir == _blobs) {
+                Blob blob = Utils.readObject(file, Blob.class);
+                return blob.getContents() != null
+                        && ObjectId.hash(blob.getContents()).equals(id);
+            } else if (dir == _trees) {
+                Directory tree = Utils.readObject(file, Directory.class);
+                ArrayList<ObjectId> blobs = new ArrayList<>();
+                ArrayList<ObjectId> trees = new ArrayList<>();
+                tree.references(blobs, trees);
+                referenceAll(blobs, _blobs);
+                referenceAll(trees, _trees);
+                return tree.getID().equals(id);
+            } else {
+                Commit commit = Utils.readObject(file, Commit.class);
+                reference(commit.getTree(), _trees);
+                referenceAll(commit.getParents(), _commits);
+                return commit.hashesTo(id);
+            }
+        } catch (IllegalArgumentException | NullPointerException excp) {
+            return false;
+        }
+    }
+
+    /**
+     * Note references to each of IDS, objects in DIR.
+     * @param ids IDs of objects.
+     * @param dir Object directory.
+     */
+    private void referenceAll(Collection<ObjectId> ids, File dir) {
+        for (ObjectId id : ids) {
+            reference(id, dir);
+        }
+    }
+
+    /**
+     * Note a reference to ID, an object in DIR, reporting it missing if
+     * this is the first reference and it is not there.
+     * @param id ID of object.
+     * @param dir Object directory.
+     */
+    private void reference(ObjectId id, File dir) {
+        boolean first;
+        synchronized (_referenced) {
+            first = _referenced.add(id);
+        }
+        if (first && !new File(dir, id.toString()).isFile()
+                && !(dir == _trees && id.equals(Directory.emptyID()))) {
+            report("missing " + kind(dir) + " " + id);
+        }
+    }
+
+    /**
+     * Report PROBLEM.
+     * @param problem Description of problem.
+     */
+    private void report(String problem) {
+        _problems.add(problem);
+    }
+
+    /**
+     * Returns the ID naming the object file PATH.
+     * @param path Object file.
+     * @return ID, or null if the file's name is not one.
+     */
+    private static ObjectId parse(Path path) {
+        try {
+            return ObjectId.parse(path.getFileName().toString());
+        } catch (IllegalArgumentException excp) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the kind of the objects in DIR.
+     * @param dir Object directory.
+     * @return "commit", "tree" or "blob".
+     */
+    private String kind(File dir) {
+        return dir == _commits ? "commit" : dir == _trees ? "tree" : "blob";
+    }
+
+    /**
+     * Returns the stream of the files in DIR, read as it is consumed.
+     * @param dir Object directory, which need not exist.
+     * @return Paths of the files.
+     * @throws IOException If DIR cannot be listed.
+     */
+    private static Stream<Path> list(File dir) throws IOException {
+        if (!dir.isDirectory()) {
+            return Stream.empty();
+        }
+        return Files.list(dir.toPath());
+    }
+
+    /**
+     * Returns the number of files in DIR.
+     * @param dir Object directory.
+     * @return Number of files.
+     * @throws IOException If DIR cannot be listed.
+     */
+    private static long count(File dir) throws IOException {
+        try (Stream<Path> names = list(dir)) {
+            return names.count();
+        } catch (UncheckedIOException excp) {
+            throw excp.getCause();
+        }
+    }
+
+    /**
+     * Number of objects checked between updates of the progress meter.
+     */
+    private static final int PROGRESS_STEP = 1000;
+
+    /**
+     * Commits directory.
+     */
+    private final File _commits;
+
+    /**
+     * Directory snapshots directory.
+     */
+    private final File _trees;
+
+    /**
+     * Blobs directory.
+     */
+    private final File _blobs;
+
+    /**
+     * Stream showing progress, or null.
+     */
+    private final PrintStream _progress;
+
+    /**
+     * IDs of all objects referred to.
+     */
+    private final ObjectIdSet _referenced = new ObjectIdSet();
+
+    /**
+     * Problems found, in order.
+     */
+    private final ConcurrentSkipListSet<String> _problems =
+            new ConcurrentSkipListSet<>();
+
+    /**
+     * Number of objects checked.
+     */
+    private final AtomicLong _checked = new AtomicLong();
+}
@@ -0,0 +1,175 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hash functions that may name a repository's objects. Each repository
+ * picks one when it is created and records its name in Tree.HASH_FILE;
+ * repositories without that file use SHA-1. Message digests are kept per
+ * thread and reused, rather than looked up on every hash.
+ * @author Aishik Bhattacharyya
+ */
+enum HashAlgorithm {
+    /** SHA-1, the original and default algorithm. */
+    SHA1("sha1", "SHA-1", 20),
+    /** SHA-256. */
+    SHA256("sha256", "SHA-256", 32),
+    /** BLAKE3, which hashes large inputs on several cores. */
+    BLAKE3("blake3", null, Blake3.OUT_LEN);
+
+    /**
+     * Create algorithm called NAME with hashes of LENGTH bytes, computed by
+     * the MessageDigest called JCANAME, or by Blake3 if JCANAME is null.
+     * @param name Name used on the command line and in Tree.HASH_FILE.
+     * @param jcaName Name of the MessageDigest algorithm, or null.
+     * @param length Number of bytes in a hash.
+     */
+    HashAlgorithm(String name, String jcaName, int length) {
+        _name = name;
+        _length = length;
+        _digest = jcaName == null ? null
+                : ThreadLocal.withInitial(() -> newDigest(jcaName));
+    }
+
+    /**
+     * Returns the algorithm called NAME.
+     * @param name Name of algorithm.
+     * @return Algorithm, or null if there is none called NAME.
+     */
+    static HashAlgorithm forName(String name) {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm._name.equals(name)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the algorithm of the repository in the working directory,
+     * reading it from Tree.HASH_FILE the first time it is needed.
+     * @return Current algorithm.
+     */
+    static synchronized HashAlgorithm current() {
+        if (_current == null) {
+            if (Tree.HASH_FILE.isFile()) {
+                String name = Utils.readContentsAsString(Tree.HASH_FILE);
+                _current = forName(name.trim());
+                if (_current == null) {
+                    throw Utils.error("unknown hash algorithm %s", name);
+                }
+            } else {
+                _current = SHA1;
+            }
+        }
+        return _current;
+    }
+
+    /**
+     * Make ALGORITHM the current algorithm, as when creating a repository.
+     * @param algorithm New current algorithm.
+     */
+    static synchronized void setCurrent(HashAlgorithm algorithm) {
+        _current = algorithm;
+    }
+
+    /**
+     * Returns the hash of the concatenation of VALS, which may be any
+     * mixture of byte arrays and Strings.
+     * @param vals Contents to hash.
+     * @return Raw hash, length() bytes long.
+     */
+    byte[] hash(Object... vals) {
+        if (_digest == null) {
+            if (vals.length == 1 && vals[0] instanceof byte[]) {
+                return Blake3.hash((byte[]) vals[0]);
+            }
+            ByteArrayOutputStream input = new ByteArrayOutputStream();
+            for (Object val : vals) {
+                input.writeBytes(toBytes(val));
+            }
+            return Blake3.hash(input.toByteArray());
+        }
+        MessageDigest md = _digest.get();
+        for (Object val : vals) {
+            md.update(toBytes(val));
+        }
+        return md.digest();
+    }
+
+    /**
+     * Get number of bytes in a hash.
+     * @return Hash length.
+     */
+    int length() {
+        return _length;
+    }
+
+    /**
+     * Get number of characters in the hexadecimal form of a hash.
+     * @return Hexadecimal hash length.
+     */
+    int hexLength() {
+        return 2 * _length;
+    }
+
+    /**
+     * Returns name of algorithm, as written in Tree.HASH_FILE.
+     * @return Name of algorithm.
+     */
+    @Override
+    public String toString() {
+        return _name;
+    }
+
+    /**
+     * Returns the bytes hashed for VAL.
+     * @param val Byte array or String.
+     * @return Bytes of VAL.
+     */
+    private static byte[] toBytes(Object val) {
+        if (val instanceof byte[]) {
+            return (byte[]) val;
+        } else if (val instanceof String) {
+            return ((String) val).getBytes(StandardCharsets.UTF_8);
+        }
+        throw new IllegalArgumentException("improper type to hash");
+    }
+
+    /**
+     * Returns a new MessageDigest for the algorithm called JCANAME.
+     * @param jcaName Name of MessageDigest algorithm.
+     * @return New digest.
+     */
+    private static MessageDigest newDigest(String jcaName) {
+        try {
+            return MessageDigest.getInstance(jcaName);
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support "
+                    + jcaName);
+        }
+    }
+
+    /**
+     * Algorithm of the current repository, or null until it is known.
+     */
+    private static HashAlgorithm _current;
+
+    /**
+     * Name of algorithm.
+     */
+    private final String _name;
+
+    /**
+     * Number of bytes in a hash.
+     */
+    private final int _length;
+
+    /**
+     * Digest for each thread, or null for BLAKE3.
+     */
+    private final ThreadLocal<MessageDigest> _digest;
+}
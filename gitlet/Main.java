@@ -1,5 +1,8 @@
 package gitlet;
 
+import java.util.Arrays;
+import java.util.Set;
+
 /**
  * Driver class for Gitlet, the tiny stupid version-control system.
  *
@@ -14,43 +17,91 @@ public class Main {
         if (args.length == 0) {
             System.out.println("Please enter a command.");
         } else {
-            Tree tree = new Tree();
-            String rest = "";
-            for (int i = 1; i < args.length; i++) {
-                rest += args[i] + "";
+            if (!UNLOCKED.contains(args[0])) {
+                Repo.local().lock(READ_ONLY.contains(args[0]));
             }
-            String checkoutRest = rest;
-            if (rest.contains("-")) {
-                if (rest.charAt(0) == '-') {
-                    checkoutRest = "-- " + rest.substring(2);
-                } else {
-                    checkoutRest = rest.substring(0, rest.indexOf("-"))
-                            + " -- " + rest.substring
-                            (rest.indexOf("-") + 2);
+            try {
+                if (Repo.local().exists() && !Repo.local().isSupported()) {
+                    System.out.println("Unsupported repository format.");
+                    return;
                 }
-            }
-            switch (args[0]) {
-            case "init" -> tree.init();
-            case "add" -> tree.add(args[1]);
-            case "commit" -> tree.commit(rest);
-            case "checkout" -> tree.checkout(checkoutRest);
-            case "log" -> tree.log();
-            case "global-log" -> tree.globalLog();
-            case "status" -> tree.status();
-            case "branch" -> tree.branch(args[1]);
-            case "reset" -> tree.reset(args[1]);
-            case "rm-branch" -> tree.removeBranch(args[1]);
-            case "rm" -> tree.removeFile(args[1]);
-            case "find" -> {
-                String newRest = args[1];
-                for (int i = 2; i < args.length; i++) {
-                    newRest += args[i];
+                if (args[0].equals("fsck")) {
+                    Tree.fsck();
+                    return;
                 }
-                tree.find(newRest);
-            }
-            case "merge" -> tree.merge(rest);
-            default -> System.out.println("No command with that name exists.");
+                Tree tree = new Tree();
+                String rest = "";
+                for (int i = 1; i < args.length; i++) {
+                    rest += args[i] + "";
+                }
+                String[] options = Arrays.copyOfRange(args, 1, args.length);
+                String checkoutRest = rest;
+                if (rest.contains("-")) {
+                    if (rest.charAt(0) == '-') {
+                        checkoutRest = "-- " + rest.substring(2);
+                    } else {
+                        checkoutRest = rest.substring(0, rest.indexOf("-"))
+                                + " -- " + rest.substring
+                                (rest.indexOf("-") + 2);
+                    }
+                }
+                switch (args[0]) {
+                case "init" -> tree.init(rest);
+                case "add" -> tree.add(options);
+                case "commit" -> tree.commit(rest);
+                case "checkout" -> tree.checkout(checkoutRest);
+                case "log" -> tree.log(options);
+                case "global-log" -> tree.globalLog(options);
+                case "status" -> tree.status();
+                case "branch" -> tree.branch(args[1]);
+                case "reset" -> tree.reset(args[1]);
+                case "rm-branch" -> tree.removeBranch(args[1]);
+                case "rm" -> tree.removeFile(options);
+                case "find" -> {
+                    String newRest = args[1];
+                    for (int i = 2; i < args.length; i++) {
+                        newRest += args[i];
+                    }
+                    tree.find(newRest);
+                }
+                case "merge" -> tree.merge(rest);
+                case "cherry-pick" -> tree.cherryPick(args[1]);
+                case "rebase" -> tree.rebase(options);
+                case "add-remote" -> tree.addRemote(args[1], args[2]);
+                case "rm-remote" -> tree.removeRemote(args[1]);
+                case "push" -> tree.push(args[1], args[2]);
+                case "fetch" -> tree.fetch(args[1], args[2]);
+                case "pull" -> tree.pull(args[1], args[2]);
+                case "clone" -> tree.clone(args[1]);
+                case "blame" -> tree.blame(args[1]);
+                case "diff" -> tree.diff(options);
+                case "archive" -> tree.archive(options);
+                case "fast-import" -> tree.fastImport(options);
+                case "worktree" -> tree.worktree(options);
+                case "sparse-checkout" -> tree.sparseCheckout(options);
+                case "monitor" -> tree.monitor();
+                default -> System.out.println(
+                        "No command with that name exists.");
+                }
+                Repo.local().saveFilter();
+            } catch (GitletException excp) {
+                System.out.println(excp.getMessage());
+            } finally {
+                Repo.unlockAll();
             }
         }
     }
+
+    /**
+     * Commands that only read the repository, and so may run alongside
+     * each other. All others are run alone.
+     */
+    private static final Set<String> READ_ONLY = Set.of("log", "global-log",
+            "status", "find", "blame", "diff", "fsck", "archive");
+
+    /**
+     * Commands that run until stopped and touch only files of their own,
+     * and so take no lock.
+     */
+    private static final Set<String> UNLOCKED = Set.of("monitor");
 }
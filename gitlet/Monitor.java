@@ -0,0 +1,333 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * A file-system monitor of a working tree, run by the monitor command in
+ * a process of its own. It watches every directory of the working tree
+ * and numbers the paths it hears about in order, and after each batch of
+ * events writes itself to the tree's .gitlet directory: an epoch naming
+ * this run, the last number handed out, and the number of the latest
+ * change to each path. Another command holding the epoch and number of
+ * an earlier query need only look at the paths numbered since. When
+ * events are lost, the monitor starts a new epoch, and every query
+ * against the old one rescans the whole tree.
+ *
+ * A query first creates a cookie file in the .gitlet directory and waits
+ * for the monitor to report it, so every change made before the query
+ * began is known to have been recorded.
+ * @author Aishik Bhattacharyya
+ */
+class Monitor implements Serializable {
+
+    /**
+     * Monitor of the working tree ROOT whose .gitlet directory is
+     * GITLETDIR.
+     * @param root Top of working tree.
+     * @param gitletDir Its .gitlet directory.
+     */
+    Monitor(File root, File gitletDir) {
+        _root = root.getAbsoluteFile().toPath();
+        _gitletDir = gitletDir.getAbsoluteFile().toPath();
+        _epoch = UUID.randomUUID().toString();
+        _changed = new HashMap<>();
+        _cookies = new TreeSet<>();
+    }
+
+    /**
+     * Watch the working tree until the process is stopped, printing an
+     * error if another monitor is already watching it.
+     * @throws IOException If the tree cannot be watched.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    void run() throws IOException, InterruptedException {
+        File lockFile = _gitletDir.resolve(LOCK_FILE).toFile();
+        try (FileChannel lock = FileChannel.open(lockFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+             WatchService watcher = _root.getFileSystem().newWatchService()) {
+            if (lock.tryLock() == null) {
+                System.out.println("A monitor is already running.");
+                return;
+            }
+            _gitletDir.register(watcher, ENTRY_CREATE, ENTRY_DELETE);
+            register(watcher, _root, false);
+            save();
+            while (true) {
+                WatchKey key = watcher.take();
+                while (key != null) {
+                    handle(watcher, key);
+                    key = watcher.poll();
+                }
+                save();
+            }
+        }
+    }
+
+    /**
+     * Record the events of KEY, watching any directories they create.
+     * @param watcher Watch service.
+     * @param key Key with pending events.
+     * @throws IOException If a new directory cannot be watched.
+     */
+    private void handle(WatchService watcher, WatchKey key)
+            throws IOException {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                _epoch = UUID.randomUUID().toString();
+                _changed.clear();
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            String name = path.getFileName().toString();
+            if (dir.equals(_gitletDir)) {
+                if (!name.startsWith(COOKIE_PREFIX)) {
+                    continue;
+                } else if (event.kind() == ENTRY_CREATE) {
+                    _cookies.add(name);
+                } else {
+                    _cookies.remove(name);
+                }
+            } else if (name.charAt(0) != '.') {
+                boolean isDir = Files.isDirectory(path);
+                if (event.kind() == ENTRY_MODIFY && isDir) {
+                    continue;
+                }
+                _sequence += 1;
+                _changed.put(relative(path), _sequence);
+                if (event.kind() == ENTRY_CREATE && isDir) {
+                    register(watcher, path, true);
+                }
+            }
+        }
+        key.reset();
+    }
+
+    /**
+     * Watch DIR and every directory beneath it, skipping those whose names
+     * start with '.' and those holding working trees of their own. If
+     * CHANGED, the files found are recorded as changed, since they may
+     * have been made before their directories were watched.
+     * @param watcher Watch service.
+     * @param dir Directory to watch.
+     * @param changed Whether to record the files beneath DIR.
+     * @throws IOException If a directory cannot be watched.
+     */
+    private void register(WatchService watcher, Path dir, boolean changed)
+            throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(
+                    Path sub, BasicFileAttributes attrs) throws IOException {
+                if (!sub.equals(_root)
+                        && (sub.getFileName().toString().charAt(0) == '.'
+                        || Files.exists(sub.resolve(".gitlet")))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                sub.register(watcher, ENTRY_CREATE, ENTRY_DELETE,
+                        ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file,
+                                             BasicFileAttributes attrs) {
+                if (changed) {
+                    _sequence += 1;
+                    _changed.put(relative(file), _sequence);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Returns the path of PATH relative to the top of the working tree.
+     * @param path Path in the working tree.
+     * @return Path with '/' separators.
+     */
+    private String relative(Path path) {
+        return _root.relativize(path).toString()
+                .replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Write this monitor's state to its file, replacing the old state in
+     * one step.
+     * @throws IOException If the state cannot be written.
+     */
+    private void save() throws IOException {
+        Path temp = Files.createTempFile(_gitletDir, "." + STATE_FILE, null);
+        Files.write(temp, Utils.serialize(this));
+        Files.move(temp, _gitletDir.resolve(STATE_FILE),
+                StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Returns the state of the monitor watching the working tree whose
+     * .gitlet directory is GITLETDIR, once it has recorded every change
+     * made before this call.
+     * @param gitletDir A .gitlet directory.
+     * @return Monitor state, or null if no monitor is running or it did
+     *         not answer in time.
+     */
+    static Monitor query(File gitletDir) {
+        File lockFile = new File(gitletDir, LOCK_FILE);
+        File stateFile = new File(gitletDir, STATE_FILE);
+        if (!lockFile.isFile() || !stateFile.isFile()) {
+            return null;
+        }
+        try (FileChannel lock = FileChannel.open(lockFile.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock held = lock.tryLock();
+            if (held != null) {
+                held.release();
+                return null;
+            }
+        } catch (OverlappingFileLockException excp) {
+            return null;
+        } catch (IOException excp) {
+            return null;
+        }
+
+        File cookie = new File(gitletDir,
+                COOKIE_PREFIX + UUID.randomUUID());
+        try {
+            cookie.createNewFile();
+            long deadline = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(SYNC_TIMEOUT);
+            while (System.nanoTime() < deadline) {
+                try {
+                    Monitor state = Utils.readObject(stateFile,
+                            Monitor.class);
+                    if (state._cookies.contains(cookie.getName())) {
+                        return state;
+                    }
+                } catch (IllegalArgumentException excp) {
+                    return null;
+                }
+                Thread.sleep(1);
+            }
+            return null;
+        } catch (IOException | InterruptedException excp) {
+            return null;
+        } finally {
+            cookie.delete();
+        }
+    }
+
+    /**
+     * Returns the epoch of this monitor's run.
+     * @return Epoch, which changes when events are lost.
+     */
+    String epoch() {
+        return _epoch;
+    }
+
+    /**
+     * Returns the number of the latest change recorded.
+     * @return Sequence number.
+     */
+    long sequence() {
+        return _sequence;
+    }
+
+    /**
+     * Returns the paths changed after the change numbered SINCE in the
+     * current epoch.
+     * @param since Sequence number of an earlier query.
+     * @return Paths of files and directories, relative to the top of the
+     *         working tree.
+     */
+    TreeSet<String> changedSince(long since) {
+        TreeSet<String> result = new TreeSet<>();
+        for (String path : _changed.keySet()) {
+            if (_changed.get(path) > since) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * File in the .gitlet directory holding the monitor's state.
+     */
+    static final String STATE_FILE = "monitor";
+
+    /**
+     * File in the .gitlet directory locked while a monitor runs.
+     */
+    private static final String LOCK_FILE = "monitor.lock";
+
+    /**
+     * Prefix of the names of cookie files.
+     */
+    private static final String COOKIE_PREFIX = "cookie-";
+
+    /**
+     * Milliseconds a query waits for the monitor to report its cookie.
+     */
+    private static final long SYNC_TIMEOUT = 1000;
+
+    /**
+     * Top of the working tree.
+     */
+    private final transient Path _root;
+
+    /**
+     * The .gitlet directory of the working tree.
+     */
+    private final transient Path _gitletDir;
+
+    /**
+     * Name of the current run of events.
+     */
+    private String _epoch;
+
+    /**
+     * Number of the latest change.
+     */
+    private long _sequence;
+
+    /**
+     * Number of the latest change to each path.
+     */
+    private final HashMap<String, Long> _changed;
+
+    /**
+     * Names of the cookie files present.
+     */
+    private final TreeSet<String> _cookies;
+
+    /**
+     * Version of the serialized form of a monitor's record, kept in step with
+     * Repo.FORMAT.
+     */
+    private static final long serialVersionUID = 1L;
+}
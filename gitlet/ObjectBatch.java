@@ -0,0 +1,265 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Object writes batched for bulk imports. Each object is serialized by
+ * the caller and pinned in the object cache, so it can be read back at
+ * once, and is written later, with others, by a pool of threads. The
+ * bytes waiting to be written are bounded, so a caller storing objects
+ * faster than they can be written waits, after handing over its own
+ * batch, whose bytes it would otherwise wait on forever. Files are not
+ * synced as they are written: a checkpoint waits for every write, then
+ * syncs the files written since the last one, in parallel, and their
+ * directories, so everything stored before a checkpoint is on disk once
+ * it returns.
+ * @author Aishik Bhattacharyya
+ */
+class ObjectBatch {
+
+    /**
+     * Store OBJ, whose ID is ID, in FILE, which must not yet exist.
+     * @param file Object file.
+     * @param id ID of object.
+     * @param obj Object.
+     */
+    void write(File file, ObjectId id, Serializable obj) {
+        byte[] bytes = Utils.serialize(obj);
+        int permits = Math.min(bytes.length, MAX_PENDING_BYTES);
+        if (!_budget.tryAcquire(permits)) {
+            flush();
+            _budget.acquireUninterruptibly(permits);
+        }
+        ObjectCache.shared().pin(file.getParentFile(), id, obj);
+        _pending.add(file);
+        _batch.add(new Write(file, id, bytes, permits));
+        _batchBytes += bytes.length;
+        if (_batch.size() >= BATCH_OBJECTS || _batchBytes >= BATCH_BYTES) {
+            flush();
+        }
+    }
+
+    /**
+     * Determine if the object to be written to FILE has been stored but
+     * not yet written.
+     * @param file Object file.
+     * @return boolean if FILE may be incomplete.
+     */
+    boolean isPending(File file) {
+        return _pending.contains(file);
+    }
+
+    /**
+     * Wait until every object stored so far is written and synced to
+     * disk, along with the directories holding them.
+     * @throws IOException If an object cannot be written or synced.
+     */
+    void checkpoint() throws IOException {
+        finish();
+        ArrayList<File> files = new ArrayList<>(_unsynced);
+        _unsynced.clear();
+        Set<File> dirs = new HashSet<>();
+        for (File file : files) {
+            dirs.add(file.getParentFile());
+        }
+        try {
+            files.parallelStream().forEach(ObjectBatch::sync);
+            dirs.parallelStream().forEach(ObjectBatch::sync);
+        } catch (UncheckedIOException excp) {
+            throw excp.getCause();
+        }
+    }
+
+    /**
+     * Wait until every object stored so far is written, without syncing,
+     * and stop the writing threads.
+     * @throws IOException If an object cannot be written.
+     */
+    void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            _pool.shutdown();
+        }
+    }
+
+    /**
+     * Hand the objects collected so far to the writing threads.
+     */
+    private void flush() {
+        if (_batch.isEmpty()) {
+            return;
+        }
+        List<Write> batch = _batch;
+        _batch = new ArrayList<>();
+        _batchBytes = 0;
+        _writes.add(_pool.submit(() -> {
+            for (Write write : batch) {
+                write(write);
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Wait until every object stored so far is written.
+     * @throws IOException If an object cannot be written.
+     */
+    private void finish() throws IOException {
+        flush();
+        try {
+            for (Future<?> write : _writes) {
+                write.get();
+            }
+        } catch (InterruptedException excp) {
+            throw new IOException(excp);
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof IOException) {
+                throw (IOException) excp.getCause();
+            }
+            throw new IOException(excp.getCause());
+        } finally {
+            _writes.clear();
+        }
+    }
+
+    /**
+     * Perform WRITE.
+     * @param write Object to write.
+     * @throws IOException If its file cannot be written.
+     */
+    private void write(Write write) throws IOException {
+        try (OutputStream out = Files.newOutputStream(write.file.toPath(),
+                StandardOpenOption.CREATE_NEW)) {
+            out.write(write.bytes);
+            _unsynced.add(write.file);
+        } catch (FileAlreadyExistsException excp) {
+            /* Written by a process that did not update the filter. */
+        } finally {
+            _pending.remove(write.file);
+            ObjectCache.shared().unpin(write.file.getParentFile(), write.id);
+            _budget.release(write.permits);
+        }
+    }
+
+    /**
+     * Force FILE, which may be a directory, to disk. Directories that
+     * cannot be opened for syncing are skipped.
+     * @param file File to sync.
+     */
+    private static void sync(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                file.isDirectory() ? StandardOpenOption.READ
+                        : StandardOpenOption.WRITE)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            if (!file.isDirectory()) {
+                throw new UncheckedIOException(excp);
+            }
+        }
+    }
+
+    /**
+     * An object waiting to be written.
+     */
+    private static final class Write {
+        /**
+         * Write of BYTES, the object ID, to FILE, holding PERMITS of the
+         * byte budget.
+         * @param file Object file.
+         * @param id ID of object.
+         * @param bytes Serialized object.
+         * @param permits Bytes charged against the budget.
+         */
+        Write(File file, ObjectId id, byte[] bytes, int permits) {
+            this.file = file;
+            this.id = id;
+            this.bytes = bytes;
+            this.permits = permits;
+        }
+
+        /** Object file. */
+        private final File file;
+        /** ID of object. */
+        private final ObjectId id;
+        /** Serialized object. */
+        private final byte[] bytes;
+        /** Bytes charged against the budget. */
+        private final int permits;
+    }
+
+    /**
+     * Number of objects handed to a writing thread at once.
+     */
+    private static final int BATCH_OBJECTS = 256;
+
+    /**
+     * Number of bytes after which a batch is handed over regardless.
+     */
+    private static final int BATCH_BYTES = 4 << 20;
+
+    /**
+     * Largest number of bytes stored but not yet written.
+     */
+    static final int MAX_PENDING_BYTES = 64 << 20;
+
+    /**
+     * Threads writing objects.
+     */
+    private final ExecutorService _pool = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), task -> {
+                Thread thread = new Thread(task);
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Bytes that may still be stored before a write completes.
+     */
+    private final Semaphore _budget = new Semaphore(MAX_PENDING_BYTES);
+
+    /**
+     * Objects collected for the next batch.
+     */
+    private List<Write> _batch = new ArrayList<>();
+
+    /**
+     * Serialized size of the objects in _batch.
+     */
+    private long _batchBytes;
+
+    /**
+     * Batches handed over since the last wait.
+     */
+    private final ArrayList<Future<?>> _writes = new ArrayList<>();
+
+    /**
+     * Files of the objects stored but not yet written.
+     */
+    private final Set<File> _pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Files written since the last checkpoint.
+     */
+    private final ConcurrentLinkedQueue<File> _unsynced =
+            new ConcurrentLinkedQueue<>();
+}
@@ -0,0 +1,234 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Size-bounded, least-recently-used cache of deserialized objects, keyed by
+ * object directory and object ID, so that the blobs, trees and commits of
+ * one store and those of another never answer each other's reads. Stored
+ * objects are content-addressed and never change once written, so cached
+ * entries never need to be invalidated.
+ *
+ * The bounds may be tuned with the system properties gitlet.cache.entries
+ * (maximum number of objects) and gitlet.cache.bytes (maximum total size of
+ * the objects' serialized forms).
+ *
+ * Objects whose files are still being written may be pinned, outside the
+ * bounds, so that reads of them are answered until their files are
+ * complete.
+ * @author Aishik Bhattacharyya
+ */
+class ObjectCache {
+
+    /**
+     * Create a cache holding at most MAXENTRIES objects whose serialized
+     * sizes sum to at most MAXBYTES.
+     * @param maxEntries Maximum number of cached objects.
+     * @param maxBytes Maximum total serialized size of cached objects.
+     */
+    ObjectCache(int maxEntries, long maxBytes) {
+        _maxEntries = maxEntries;
+        _maxBytes = maxBytes;
+        _entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cache shared by the whole process.
+     * @return Process-wide object cache.
+     */
+    static ObjectCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the cached object with ID in the object directory DIR, or
+     * null if it is not cached.
+     * @param dir Object directory.
+     * @param id ID of object.
+     * @return Cached object or null.
+     */
+    synchronized Serializable get(File dir, ObjectId id) {
+        Key key = new Key(dir, id);
+        Serializable pinned = _pinned.get(key);
+        if (pinned != null) {
+            return pinned;
+        }
+        Entry entry = _entries.get(key);
+        return entry == null ? null : entry._value;
+    }
+
+    /**
+     * Caches VALUE under ID in the object directory DIR, charging SIZE
+     * bytes against the byte budget. Objects larger than the whole budget
+     * are not cached.
+     * @param dir Object directory.
+     * @param id ID of object.
+     * @param value Deserialized object.
+     * @param size Serialized size of object in bytes.
+     */
+    synchronized void put(File dir, ObjectId id, Serializable value,
+                          long size) {
+        if (_maxEntries <= 0 || size > _maxBytes) {
+            return;
+        }
+        Entry old = _entries.put(new Key(dir, id), new Entry(value, size));
+        if (old != null) {
+            _bytes -= old._size;
+        }
+        _bytes += size;
+        Iterator<Entry> eldest = _entries.values().iterator();
+        while (_entries.size() > _maxEntries || _bytes > _maxBytes) {
+            _bytes -= eldest.next()._size;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Keeps VALUE under ID in the object directory DIR until it is
+     * unpinned, however full the cache.
+     * @param dir Object directory.
+     * @param id ID of object.
+     * @param value Deserialized object.
+     */
+    synchronized void pin(File dir, ObjectId id, Serializable value) {
+        _pinned.put(new Key(dir, id), value);
+    }
+
+    /**
+     * Releases the object ID in the object directory DIR kept by pin.
+     * @param dir Object directory.
+     * @param id ID of object.
+     */
+    synchronized void unpin(File dir, ObjectId id) {
+        _pinned.remove(new Key(dir, id));
+    }
+
+    /**
+     * Returns the number of cached objects.
+     * @return Number of cached objects.
+     */
+    synchronized int size() {
+        return _entries.size();
+    }
+
+    /**
+     * Returns the total serialized size of cached objects.
+     * @return Cached bytes.
+     */
+    synchronized long bytes() {
+        return _bytes;
+    }
+
+    /** Removes every cached object. */
+    synchronized void clear() {
+        _entries.clear();
+        _bytes = 0;
+    }
+
+    /**
+     * An object ID within one object directory.
+     */
+    private static final class Key {
+        /**
+         * Key of the object ID in DIR.
+         * @param dir Object directory.
+         * @param id ID of object.
+         */
+        Key(File dir, ObjectId id) {
+            _dir = dir.getAbsoluteFile();
+            _id = id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && ((Key) obj)._id.equals(_id)
+                    && ((Key) obj)._dir.equals(_dir);
+        }
+
+        @Override
+        public int hashCode() {
+            return _id.hashCode() * 31 + _dir.hashCode();
+        }
+
+        /**
+         * Object directory.
+         */
+        private final File _dir;
+
+        /**
+         * ID of object.
+         */
+        private final ObjectId _id;
+    }
+
+    /**
+     * A cached object along with its serialized size.
+     */
+    private static class Entry {
+        /**
+         * Pairs VALUE with SIZE.
+         * @param value Cached object.
+         * @param size Serialized size in bytes.
+         */
+        Entry(Serializable value, long size) {
+            _value = value;
+            _size = size;
+        }
+
+        /**
+         * Cached object.
+         */
+        private final Serializable _value;
+
+        /**
+         * Serialized size of cached object in bytes.
+         */
+        private final long _size;
+    }
+
+    /**
+     * Default maximum number of cached objects.
+     */
+    static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    /**
+     * Default maximum total serialized size of cached objects.
+     */
+    static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    /**
+     * Cache shared by the whole process.
+     */
+    private static final ObjectCache SHARED = new ObjectCache(
+            Integer.getInteger("gitlet.cache.entries", DEFAULT_MAX_ENTRIES),
+            Long.getLong("gitlet.cache.bytes", DEFAULT_MAX_BYTES));
+
+    /**
+     * Cached objects, from least to most recently used.
+     */
+    private final LinkedHashMap<Key, Entry> _entries;
+
+    /**
+     * Pinned objects.
+     */
+    private final HashMap<Key, Serializable> _pinned = new HashMap<>();
+
+    /**
+     * Maximum number of cached objects.
+     */
+    private final int _maxEntries;
+
+    /**
+     * Maximum total serialized size of cached objects.
+     */
+    private final long _maxBytes;
+
+    /**
+     * Current total serialized size of cached objects.
+     */
+    private long _bytes;
+}
@@ -0,0 +1,153 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+
+/**
+ * Bloom filter over the IDs of the objects in a store. A negative answer
+ * from mightContain is certain, so an object the filter has never seen can
+ * be written without first asking the file system whether it exists; only
+ * positive answers, which are almost always right, need to be confirmed.
+ * The filter's bits are taken straight from the IDs, which are already
+ * uniformly distributed hashes. Small filters over the hashes of paths
+ * are also kept for each commit by ChangedPaths.
+ * @author Aishik Bhattacharyya
+ */
+class ObjectFilter implements Serializable {
+
+    /**
+     * Empty filter sized for CAPACITY objects.
+     * @param capacity Number of objects the filter is sized for.
+     */
+    ObjectFilter(int capacity) {
+        _capacity = capacity;
+        _bits = new long[Math.max(1, capacity * BITS_PER_OBJECT / 64)];
+    }
+
+    /**
+     * Filter with the given BITS, as returned by bits(), holding as many
+     * IDs as it was sized for.
+     * @param bits Filter bits.
+     */
+    ObjectFilter(long[] bits) {
+        _bits = bits;
+        _capacity = bits.length * 64 / BITS_PER_OBJECT;
+        _count = _capacity;
+    }
+
+    /**
+     * Returns a filter holding the IDs of every object stored in DIRS,
+     * sized with room to grow.
+     * @param dirs Object directories.
+     * @return New filter.
+     */
+    static ObjectFilter build(File... dirs) {
+        int count = 0;
+        String[][] names = new String[dirs.length][];
+        for (int i = 0; i < dirs.length; i += 1) {
+            names[i] = dirs[i].list();
+            count += names[i] == null ? 0 : names[i].length;
+        }
+        ObjectFilter result = new ObjectFilter(Math.max(MIN_CAPACITY,
+                2 * count));
+        for (String[] dirNames : names) {
+            if (dirNames == null) {
+                continue;
+            }
+            for (String name : dirNames) {
+                ObjectId id = ObjectId.parse(name);
+                if (id != null) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determine if ID may have been added to this filter.
+     * @param id Object ID.
+     * @return false if ID was certainly never added.
+     */
+    synchronized boolean mightContain(ObjectId id) {
+        long bits = 64L * _bits.length;
+        long h1 = id.word(0);
+        long h2 = id.word(1) | 1;
+        for (int i = 0; i < HASHES; i += 1) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+            if ((_bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add ID to this filter.
+     * @param id Object ID.
+     */
+    synchronized void add(ObjectId id) {
+        long bits = 64L * _bits.length;
+        long h1 = id.word(0);
+        long h2 = id.word(1) | 1;
+        for (int i = 0; i < HASHES; i += 1) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+            _bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        _count += 1;
+    }
+
+    /**
+     * Determine if more objects have been added than the filter was sized
+     * for, so that it should be rebuilt larger.
+     * @return boolean if the filter is overfull.
+     */
+    synchronized boolean isFull() {
+        return _count > _capacity;
+    }
+
+    /**
+     * Returns the bits of this filter, from which it can be rebuilt.
+     * @return Filter bits, not to be modified.
+     */
+    synchronized long[] bits() {
+        return _bits;
+    }
+
+    /**
+     * Number of bits set aside for each object, giving about a one
+     * percent false-positive rate.
+     */
+    private static final int BITS_PER_OBJECT = 10;
+
+    /**
+     * Number of bits set for each object.
+     */
+    private static final int HASHES = 7;
+
+    /**
+     * Smallest capacity of a built filter.
+     */
+    private static final int MIN_CAPACITY = 1024;
+
+    /**
+     * Filter bits.
+     */
+    private final long[] _bits;
+
+    /**
+     * Number of objects the filter is sized for.
+     */
+    private final int _capacity;
+
+    /**
+     * Number of objects added.
+     */
+    private int _count;
+
+    /**
+     * Version of the serialized form of a filter, kept in step with
+     * Repo.FORMAT.
+     */
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,231 @@
+package gitlet;
+
+import java.io.Serializable;
+
+/**
+ * The ID of a stored object: the raw bytes of its hash, packed into
+ * primitive longs. IDs are compared and hashed without allocating, and are
+ * rendered as hexadecimal only where they meet the user or the file system.
+ * @author Aishik Bhattacharyya
+ */
+public final class ObjectId implements Comparable<ObjectId>, Serializable {
+    /**
+     * Create the ID whose hash is the first LENGTH bytes of the big-endian
+     * words W0 through W3.
+     * @param w0 Bytes 0 to 7 of hash.
+     * @param w1 Bytes 8 to 15 of hash.
+     * @param w2 Bytes 16 to 23 of hash.
+     * @param w3 Bytes 24 to 31 of hash.
+     * @param length Number of bytes in hash.
+     */
+    ObjectId(long w0, long w1, long w2, long w3, int length) {
+        _w0 = w0;
+        _w1 = w1;
+        _w2 = w2;
+        _w3 = w3;
+        _length = (byte) length;
+    }
+
+    /**
+     * Returns the ID whose hash is BYTES.
+     * @param bytes Raw hash, at most MAX_LENGTH bytes long.
+     * @return ID of hash.
+     */
+    public static ObjectId of(byte[] bytes) {
+        if (bytes.length > MAX_LENGTH) {
+            throw new IllegalArgumentException("hash too long for ID");
+        }
+        long[] words = new long[WORDS];
+        for (int i = 0; i < bytes.length; i += 1) {
+            words[i / 8] |= (bytes[i] & 0xffL) << (56 - 8 * (i % 8));
+        }
+        return new ObjectId(words[0], words[1], words[2], words[3],
+                bytes.length);
+    }
+
+    /**
+     * Returns the ID written as the hexadecimal numeral HEX.
+     * @param hex Hexadecimal ID, as produced by toString.
+     * @return ID, or null if HEX is not a well-formed ID.
+     */
+    public static ObjectId parse(String hex) {
+        if (hex == null || hex.length() % 2 != 0
+                || hex.length() > 2 * MAX_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i += 1) {
+            int hi = Character.digit(hex.charAt(2 * i), 16);
+            int lo = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                return null;
+            }
+            bytes[i] = (byte) (hi << 4 | lo);
+        }
+        return of(bytes);
+    }
+
+    /**
+     * Returns the ID of the concatenation of VALS, which may be any mixture
+     * of byte arrays and Strings, under the repository's hash algorithm.
+     * @param vals Contents to hash.
+     * @return ID of contents.
+     */
+    public static ObjectId hash(Object... vals) {
+        return of(HashAlgorithm.current().hash(vals));
+    }
+
+    /**
+     * Get number of bytes in hash.
+     * @return Length of hash.
+     */
+    public int length() {
+        return _length;
+    }
+
+    /**
+     * Get one byte of hash.
+     * @param k Index of byte.
+     * @return Byte K of hash.
+     */
+    public int byteAt(int k) {
+        long word = k < 8 ? _w0 : k < 16 ? _w1 : k < 24 ? _w2 : _w3;
+        return (int) (word >>> (56 - 8 * (k % 8))) & 0xff;
+    }
+
+    /**
+     * Get raw bytes of hash.
+     * @return Hash bytes.
+     */
+    public byte[] toBytes() {
+        byte[] result = new byte[_length];
+        for (int i = 0; i < _length; i += 1) {
+            result[i] = (byte) byteAt(i);
+        }
+        return result;
+    }
+
+    /**
+     * Get one big-endian word of hash.
+     * @param k Index of word, 0 to 3.
+     * @return Bytes 8K to 8K + 7 of hash, zero-filled past its end.
+     */
+    long word(int k) {
+        return k == 0 ? _w0 : k == 1 ? _w1 : k == 2 ? _w2 : _w3;
+    }
+
+    /**
+     * Determine if the hexadecimal form of this ID starts with PREFIX.
+     * @param prefix Hexadecimal digits.
+     * @return boolean if PREFIX abbreviates this ID.
+     */
+    public boolean startsWith(String prefix) {
+        if (prefix.length() > 2 * _length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i += 1) {
+            int nibble = byteAt(i / 2) >>> (i % 2 == 0 ? 4 : 0) & 0xf;
+            if (Character.digit(prefix.charAt(i), 16) != nibble) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns hexadecimal form of ID.
+     * @return Hexadecimal numeral.
+     */
+    @Override
+    public String toString() {
+        char[] result = new char[2 * _length];
+        for (int i = 0; i < _length; i += 1) {
+            int b = byteAt(i);
+            result[2 * i] = HEX_DIGITS[b >>> 4];
+            result[2 * i + 1] = HEX_DIGITS[b & 0xf];
+        }
+        return new String(result);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return _w0 == other._w0 && _w1 == other._w1 && _w2 == other._w2
+                && _w3 == other._w3 && _length == other._length;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (_w0 >>> 32);
+    }
+
+    /**
+     * Orders IDs as their hexadecimal forms would be ordered.
+     * @param other ID being compared to.
+     * @return Negative, zero, or positive as this ID is less than, equal
+     *         to, or greater than OTHER.
+     */
+    @Override
+    public int compareTo(ObjectId other) {
+        int c = Long.compareUnsigned(_w0, other._w0);
+        if (c == 0) {
+            c = Long.compareUnsigned(_w1, other._w1);
+        }
+        if (c == 0) {
+            c = Long.compareUnsigned(_w2, other._w2);
+        }
+        if (c == 0) {
+            c = Long.compareUnsigned(_w3, other._w3);
+        }
+        return c != 0 ? c : Integer.compare(_length, other._length);
+    }
+
+    /**
+     * Largest number of bytes in a hash.
+     */
+    static final int MAX_LENGTH = 32;
+
+    /**
+     * Number of words holding a hash.
+     */
+    static final int WORDS = MAX_LENGTH / 8;
+
+    /**
+     * Lower-case hexadecimal digits.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Bytes 0 to 7 of hash, big-endian.
+     */
+    private final long _w0;
+
+    /**
+     * Bytes 8 to 15 of hash, big-endian.
+     */
+    private final long _w1;
+
+    /**
+     * Bytes 16 to 23 of hash, big-endian.
+     */
+    private final long _w2;
+
+    /**
+     * Bytes 24 to 31 of hash, big-endian.
+     */
+    private final long _w3;
+
+    /**
+     * Number of bytes in hash.
+     */
+    private final byte _length;
+
+    /**
+     * Version of the serialized form of an ID, kept in step with
+     * Repo.FORMAT.
+     */
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,271 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of ObjectIds that remembers insertion order. IDs are kept as
+ * primitive words in flat arrays, with an open-addressing index over them,
+ * so large sets cost a few dozen bytes per ID and lookups allocate nothing.
+ * @author Aishik Bhattacharyya
+ */
+public class ObjectIdSet implements Iterable<ObjectId>, Serializable {
+    public ObjectIdSet() {
+        _words = new long[ObjectId.WORDS * INITIAL_CAPACITY];
+        _lengths = new byte[INITIAL_CAPACITY];
+        _index = new int[2 * INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns a set holding the same IDs in the same order.
+     * @return Copy of set.
+     */
+    public ObjectIdSet copy() {
+        ObjectIdSet result = new ObjectIdSet();
+        result._words = _words.clone();
+        result._lengths = _lengths.clone();
+        result._index = _index.clone();
+        result._size = _size;
+        return result;
+    }
+
+    /**
+     * Get number of IDs in set.
+     * @return Size of set.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Determine if set has no IDs.
+     * @return boolean if set is empty.
+     */
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Determine if ID is in set.
+     * @param id ID to look for.
+     * @return boolean if ID is present.
+     */
+    public boolean contains(ObjectId id) {
+        return _index[slot(id)] != 0;
+    }
+
+    /**
+     * Find where ID was added to set.
+     * @param id ID to look for.
+     * @return Position of ID in insertion order, or -1 if absent.
+     */
+    public int indexOf(ObjectId id) {
+        return _index[slot(id)] - 1;
+    }
+
+    /**
+     * Add ID to the end of set, unless it is already present.
+     * @param id ID to add.
+     * @return boolean if ID was added.
+     */
+    public boolean add(ObjectId id) {
+        int slot = slot(id);
+        if (_index[slot] != 0) {
+            return false;
+        }
+        if (_size == _lengths.length) {
+            grow();
+            slot = slot(id);
+        }
+        for (int w = 0; w < ObjectId.WORDS; w += 1) {
+            _words[ObjectId.WORDS * _size + w] = id.word(w);
+        }
+        _lengths[_size] = (byte) id.length();
+        _size += 1;
+        _index[slot] = _size;
+        return true;
+    }
+
+    /**
+     * Get the Kth ID added to set.
+     * @param k Position of ID in insertion order.
+     * @return ID at position K.
+     */
+    public ObjectId get(int k) {
+        if (k < 0 || k >= _size) {
+            throw new IndexOutOfBoundsException(k);
+        }
+        int base = ObjectId.WORDS * k;
+        return new ObjectId(_words[base], _words[base + 1], _words[base + 2],
+                _words[base + 3], _lengths[k]);
+    }
+
+    /**
+     * Iterate over IDs in insertion order.
+     * @return Iterator over set.
+     */
+    @Override
+    public Iterator<ObjectId> iterator() {
+        return new Iterator<ObjectId>() {
+            @Override
+            public boolean hasNext() {
+                return _next < _size;
+            }
+
+            @Override
+            public ObjectId next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                _next += 1;
+                return get(_next - 1);
+            }
+
+            /**
+             * Position of next ID.
+             */
+            private int _next;
+        };
+    }
+
+    /**
+     * Find the index slot that holds ID, or the empty slot where it would
+     * go.
+     * @param id ID to look for.
+     * @return Slot in _index.
+     */
+    private int slot(ObjectId id) {
+        int mask = _index.length - 1;
+        int slot = mix(id.word(0)) & mask;
+        while (_index[slot] != 0 && !matches(_index[slot] - 1, id)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Determine if the Kth stored ID equals ID.
+     * @param k Position of stored ID.
+     * @param id ID being compared to.
+     * @return boolean if they are equal.
+     */
+    private boolean matches(int k, ObjectId id) {
+        int base = ObjectId.WORDS * k;
+        return _lengths[k] == id.length() && _words[base] == id.word(0)
+                && _words[base + 1] == id.word(1)
+                && _words[base + 2] == id.word(2)
+                && _words[base + 3] == id.word(3);
+    }
+
+    /** Double the capacity of the set and rebuild its index. */
+    private void grow() {
+        int capacity = 2 * _lengths.length;
+        _words = Arrays.copyOf(_words, ObjectId.WORDS * capacity);
+        _lengths = Arrays.copyOf(_lengths, capacity);
+        rebuildIndex(2 * capacity);
+    }
+
+    /**
+     * Rebuild the index with SLOTS slots from the stored IDs.
+     * @param slots Number of index slots, a power of two.
+     */
+    private void rebuildIndex(int slots) {
+        _index = new int[slots];
+        int mask = slots - 1;
+        for (int k = 0; k < _size; k += 1) {
+            int slot = mix(_words[ObjectId.WORDS * k]) & mask;
+            while (_index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            _index[slot] = k + 1;
+        }
+    }
+
+    /**
+     * Returns well-spread index bits from the first word of an ID.
+     * @param word First word of ID.
+     * @return Hash of WORD.
+     */
+    private static int mix(long word) {
+        return (int) (word ^ (word >>> 29));
+    }
+
+    /**
+     * Serialize only the stored IDs; the index is rebuilt when read.
+     * @param out Stream to write to.
+     * @throws IOException If writing fails.
+     */
+    private void writeObject(ObjectOutputStream out)
+            throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(_size);
+        for (int k = 0; k < _size; k += 1) {
+            out.writeByte(_lengths[k]);
+            for (int w = 0; w < ObjectId.WORDS; w += 1) {
+                out.writeLong(_words[ObjectId.WORDS * k + w]);
+            }
+        }
+    }
+
+    /**
+     * Read stored IDs and rebuild the index.
+     * @param in Stream to read from.
+     * @throws IOException If reading fails.
+     * @throws ClassNotFoundException If a class cannot be found.
+     */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        _size = in.readInt();
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < _size) {
+            capacity *= 2;
+        }
+        _words = new long[ObjectId.WORDS * capacity];
+        _lengths = new byte[capacity];
+        for (int k = 0; k < _size; k += 1) {
+            _lengths[k] = in.readByte();
+            for (int w = 0; w < ObjectId.WORDS; w += 1) {
+                _words[ObjectId.WORDS * k + w] = in.readLong();
+            }
+        }
+        rebuildIndex(2 * capacity);
+    }
+
+    /**
+     * Capacity of a new set.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Words of each stored ID, ObjectId.WORDS per ID, in insertion order.
+     */
+    private transient long[] _words;
+
+    /**
+     * Hash length of each stored ID, in insertion order.
+     */
+    private transient byte[] _lengths;
+
+    /**
+     * Open-addressing index: each slot holds one more than the position of
+     * a stored ID, or 0 if empty. Always at most half full.
+     */
+    private transient int[] _index;
+
+    /**
+     * Number of stored IDs.
+     */
+    private transient int _size;
+
+    /**
+     * Version of the serialized form of a set of IDs, kept in step with
+     * Repo.FORMAT.
+     */
+    private static final long serialVersionUID = 1L;
+}
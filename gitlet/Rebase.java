@@ -0,0 +1,339 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A replay of commits onto another commit, as done by cherry-pick and
+ * rebase. Each commit's changes from its first parent are merged into the
+ * files of the commit replayed before it entirely in memory: those files
+ * are kept as the snapshot replayed onto plus a map of the blob IDs
+ * changed since, so only the paths each commit changes are looked up, and
+ * no blob is read. A path merges cleanly when only one side changed it.
+ * Nothing is written by the replay itself; the caller then stores one
+ * snapshot and commit for each commit that still changes something, and
+ * updates the working tree once. A replay that meets a conflict stops at
+ * the commit causing it, keeping that commit and those after it, so that
+ * a rebase can be stored in the .gitlet directory and continued once the
+ * conflict is resolved.
+ * @author Aishik Bhattacharyya
+ */
+class Rebase implements Serializable {
+
+    /**
+     * Replay of the commits TODO, in order, for a branch whose head and
+     * history were ORIGHEAD and ORIGHISTORY.
+     * @param origHead ID of head commit before the replay.
+     * @param origHistory History of the branch before the replay.
+     * @param todo IDs of the commits to replay.
+     */
+    Rebase(ObjectId origHead, ObjectIdSet origHistory, List<ObjectId> todo) {
+        _origHead = origHead;
+        _origHistory = origHistory;
+        _todo = new ArrayList<>(todo);
+    }
+
+    /**
+     * Returns the rebase stored in FILE.
+     * @param file Rebase file, which need not exist.
+     * @return Rebase, or null if none is in progress.
+     */
+    static Rebase read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        return Utils.readObject(file, Rebase.class);
+    }
+
+    /**
+     * Returns the commits to replay to move the commits of HEAD that are
+     * not in UPSTREAM on top of it: every ancestor of HEAD that is not an
+     * ancestor of UPSTREAM, parents before children, leaving out merges.
+     * @param head ID of head of the branch being rebased.
+     * @param upstream ID of head of the branch rebased onto.
+     * @return IDs of commits, oldest first.
+     */
+    static ArrayList<ObjectId> commitsToReplay(ObjectId head,
+                                               ObjectId upstream) {
+        ObjectIdSet excluded = Branch.ancestors(upstream);
+        ObjectIdSet visited = new ObjectIdSet();
+        ObjectIdSet merges = new ObjectIdSet();
+        ObjectIdSet done = new ObjectIdSet();
+        ArrayList<ObjectId> result = new ArrayList<>();
+        ArrayDeque<ObjectId> stack = new ArrayDeque<>();
+        stack.push(head);
+        while (!stack.isEmpty()) {
+            ObjectId id = stack.peek();
+            if (visited.add(id)) {
+                List<ObjectId> parents = Utils.readObject(Tree.COMMITS_DIR,
+                        id, Commit.class).getParents();
+                if (parents.size() > 1) {
+                    merges.add(id);
+                }
+                for (int k = parents.size() - 1; k >= 0; k -= 1) {
+                    ObjectId parent = parents.get(k);
+                    if (!excluded.contains(parent)
+                            && !visited.contains(parent)) {
+                        stack.push(parent);
+                    }
+                }
+            } else {
+                stack.pop();
+                if (done.add(id) && !merges.contains(id)) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replay the remaining commits onto ONTO, until they are all replayed
+     * or one conflicts.
+     * @param onto Commit to replay onto.
+     */
+    void replay(Commit onto) {
+        _onto = onto;
+        _picked = new ArrayList<>();
+        _changes = new ArrayList<>();
+        _overlay = new TreeMap<>();
+        _partial = new TreeMap<>();
+        _conflicts = new TreeMap<>();
+        while (!_todo.isEmpty()) {
+            Commit commit = Utils.readObject(Tree.COMMITS_DIR, _todo.get(0),
+                    Commit.class);
+            ObjectId base = Directory.emptyID();
+            if (!commit.getParents().isEmpty()) {
+                base = Utils.readObject(Tree.COMMITS_DIR,
+                        commit.getParents().get(0), Commit.class).getTree();
+            }
+            TreeMap<String, ObjectId> changes = new TreeMap<>();
+            TreeMap<String, ObjectId> conflicts = new TreeMap<>();
+            for (String path : Directory.changedPaths(base,
+                    commit.getTree())) {
+                ObjectId theirs = commit.getFile(path);
+                ObjectId ours = file(path);
+                if (Objects.equals(ours, theirs)) {
+                    continue;
+                } else if (Objects.equals(ours,
+                        Directory.lookup(base, path))) {
+                    changes.put(path, theirs);
+                } else {
+                    conflicts.put(path, theirs);
+                }
+            }
+            if (!conflicts.isEmpty()) {
+                _partial = changes;
+                _conflicts = conflicts;
+                return;
+            }
+            _todo.remove(0);
+            if (!changes.isEmpty()) {
+                _picked.add(commit);
+                _changes.add(changes);
+                _overlay.putAll(changes);
+            }
+        }
+    }
+
+    /**
+     * Returns the blob ID of the file at PATH after the commits replayed
+     * so far.
+     * @param path Path of file.
+     * @return Blob ID, or null if there is no such file.
+     */
+    ObjectId file(String path) {
+        if (_overlay.containsKey(path)) {
+            return _overlay.get(path);
+        }
+        return _onto.getFile(path);
+    }
+
+    /**
+     * Returns the blob ID of the file at PATH in the working tree after
+     * the replay: that of the commits replayed, with the changes that
+     * merged cleanly from the commit that conflicted.
+     * @param path Path of a file without a conflict.
+     * @return Blob ID, or null if there is no such file.
+     */
+    ObjectId workingFile(String path) {
+        if (_partial.containsKey(path)) {
+            return _partial.get(path);
+        }
+        return file(path);
+    }
+
+    /**
+     * Returns the paths whose files may differ from those of the commit
+     * replayed onto.
+     * @return Sorted paths.
+     */
+    TreeSet<String> touched() {
+        TreeSet<String> result = new TreeSet<>(_overlay.keySet());
+        result.addAll(_partial.keySet());
+        result.addAll(_conflicts.keySet());
+        return result;
+    }
+
+    /**
+     * Returns the commit replayed onto.
+     * @return Commit.
+     */
+    Commit onto() {
+        return _onto;
+    }
+
+    /**
+     * Returns the commits replayed that still change something.
+     * @return Original commits, oldest first.
+     */
+    List<Commit> picked() {
+        return _picked;
+    }
+
+    /**
+     * Returns the changes of the Kth commit replayed from the one before.
+     * @param k Index into picked.
+     * @return Paths mapped to new blob IDs, or to null for removals.
+     */
+    TreeMap<String, ObjectId> changes(int k) {
+        return _changes.get(k);
+    }
+
+    /**
+     * Returns the changes of the commit that conflicted that merged
+     * cleanly.
+     * @return Paths mapped to new blob IDs, or to null for removals.
+     */
+    TreeMap<String, ObjectId> partial() {
+        return _partial;
+    }
+
+    /**
+     * Returns the paths that conflicted, mapped to the versions of the
+     * commit that conflicted.
+     * @return Paths mapped to blob IDs, or to null where it removed them.
+     */
+    TreeMap<String, ObjectId> conflicts() {
+        return _conflicts;
+    }
+
+    /**
+     * Determine if the replay stopped at a conflict.
+     * @return boolean if commits remain.
+     */
+    boolean isStopped() {
+        return !_todo.isEmpty();
+    }
+
+    /**
+     * Returns the commit the replay stopped at.
+     * @return ID of commit.
+     */
+    ObjectId stopped() {
+        return _todo.get(0);
+    }
+
+    /**
+     * Drop the commit the replay stopped at, once it has been resolved.
+     */
+    void skip() {
+        _todo.remove(0);
+    }
+
+    /**
+     * Record that the replay wrote or deleted the working files at PATHS.
+     * @param paths Paths of files.
+     */
+    void wrote(Collection<String> paths) {
+        _written.addAll(paths);
+    }
+
+    /**
+     * Returns the paths of the working files the replay has written or
+     * deleted, which an abort may overwrite.
+     * @return Sorted paths.
+     */
+    TreeSet<String> written() {
+        return _written;
+    }
+
+    /**
+     * Returns the head commit of the branch before the replay.
+     * @return ID of commit.
+     */
+    ObjectId origHead() {
+        return _origHead;
+    }
+
+    /**
+     * Returns the history of the branch before the replay.
+     * @return Commit history.
+     */
+    ObjectIdSet origHistory() {
+        return _origHistory;
+    }
+
+    /**
+     * ID of the head commit of the branch before the replay.
+     */
+    private final ObjectId _origHead;
+
+    /**
+     * History of the branch before the replay.
+     */
+    private final ObjectIdSet _origHistory;
+
+    /**
+     * IDs of the commits not yet replayed, oldest first.
+     */
+    private final ArrayList<ObjectId> _todo;
+
+    /**
+     * Paths of the working files written or deleted at each stop.
+     */
+    private final TreeSet<String> _written = new TreeSet<>();
+
+    /**
+     * Commit replayed onto.
+     */
+    private transient Commit _onto;
+
+    /**
+     * Commits replayed that still change something.
+     */
+    private transient ArrayList<Commit> _picked;
+
+    /**
+     * Changes of each commit in _picked.
+     */
+    private transient ArrayList<TreeMap<String, ObjectId>> _changes;
+
+    /**
+     * All changes from _onto of the commits replayed.
+     */
+    private transient TreeMap<String, ObjectId> _overlay;
+
+    /**
+     * Clean changes of the commit that conflicted.
+     */
+    private transient TreeMap<String, ObjectId> _partial;
+
+    /**
+     * Conflicted paths of the commit that conflicted.
+     */
+    private transient TreeMap<String, ObjectId> _conflicts;
+
+    /**
+     * Version of the serialized form of a stopped rebase, kept in step with
+     * Repo.FORMAT.
+     */
+    private static final long serialVersionUID = 1L;
+}
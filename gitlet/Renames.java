@@ -0,0 +1,229 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Detection of files that were renamed between two versions of a tree,
+ * which Commit records only as one path deleted and another added. Added
+ * files holding exactly the blob of a deleted file are paired by ID. The
+ * rest are compared through MinHash sketches of their sets of lines: files
+ * whose sketches agree in any band of rows are candidates, and candidates
+ * whose sketches estimate their similarity at SIMILARITY or better are
+ * paired, files that kept their names while moving between directories
+ * first and then the most similar. No pair of files is ever diffed, and
+ * each file is hashed into a fixed number of buckets, so the work stays
+ * near linear in the number and size of the files.
+ * @author Aishik Bhattacharyya
+ */
+class Renames {
+
+    /**
+     * Returns the renames from the files in DELETED to those in ADDED.
+     * @param deleted Blob IDs of deleted files, by path. Their contents
+     *                are read from the blob store.
+     * @param added Blob IDs of added files, by path.
+     * @param addedContents Contents of each added file, by path.
+     * @return Old path of each added file that was renamed, by new path.
+     */
+    static TreeMap<String, String> detect(Map<String, ObjectId> deleted,
+                                          Map<String, ObjectId> added,
+                                          Function<String, byte[]>
+                                                  addedContents) {
+        TreeMap<String, String> result = new TreeMap<>();
+        if (deleted.isEmpty() || added.isEmpty()) {
+            return result;
+        }
+        HashMap<ObjectId, ArrayDeque<String>> byBlob = new HashMap<>();
+        for (String path : new TreeMap<>(deleted).keySet()) {
+            byBlob.computeIfAbsent(deleted.get(path),
+                    id -> new ArrayDeque<>()).add(path);
+        }
+        ArrayList<String> newPaths = new ArrayList<>();
+        for (String path : new TreeMap<>(added).keySet()) {
+            ArrayDeque<String> same = byBlob.get(added.get(path));
+            if (same != null && !same.isEmpty()) {
+                result.put(path, same.poll());
+            } else {
+                newPaths.add(path);
+            }
+        }
+        ArrayList<String> oldPaths = new ArrayList<>();
+        for (ArrayDeque<String> paths : byBlob.values()) {
+            oldPaths.addAll(paths);
+        }
+        if (oldPaths.isEmpty() || newPaths.isEmpty()) {
+            return result;
+        }
+        oldPaths.sort(null);
+
+        long[][] oldSketches = oldPaths.parallelStream()
+                .map(path -> sketch(Blame.lines(deleted.get(path))))
+                .toArray(long[][]::new);
+        long[][] newSketches = newPaths.parallelStream()
+                .map(path -> sketch(Blame.lines(addedContents.apply(path))))
+                .toArray(long[][]::new);
+        List<HashMap<Long, List<Integer>>> bands = new ArrayList<>();
+        for (int b = 0; b < BANDS; b += 1) {
+            HashMap<Long, List<Integer>> buckets = new HashMap<>();
+            for (int i = 0; i < oldSketches.length; i += 1) {
+                if (oldSketches[i] != null) {
+                    buckets.computeIfAbsent(band(oldSketches[i], b),
+                            k -> new ArrayList<>()).add(i);
+                }
+            }
+            bands.add(buckets);
+        }
+
+        ArrayList<int[]> pairs = new ArrayList<>();
+        for (int j = 0; j < newSketches.length; j += 1) {
+            if (newSketches[j] == null) {
+                continue;
+            }
+            HashSet<Integer> seen = new HashSet<>();
+            for (int b = 0; b < BANDS; b += 1) {
+                List<Integer> bucket = bands.get(b)
+                        .get(band(newSketches[j], b));
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i : bucket) {
+                    if (!seen.add(i)) {
+                        continue;
+                    }
+                    int agree = agreement(oldSketches[i], newSketches[j]);
+                    if (agree >= SIMILARITY * SKETCH_SIZE) {
+                        int moved = baseName(oldPaths.get(i))
+                                .equals(baseName(newPaths.get(j))) ? 1 : 0;
+                        pairs.add(new int[] {moved, agree, i, j});
+                    }
+                }
+            }
+        }
+        pairs.sort(Comparator.<int[]>comparingInt(p -> -p[0])
+                .thenComparingInt(p -> -p[1]).thenComparingInt(p -> p[2])
+                .thenComparingInt(p -> p[3]));
+        boolean[] oldUsed = new boolean[oldPaths.size()];
+        boolean[] newUsed = new boolean[newPaths.size()];
+        for (int[] pair : pairs) {
+            if (!oldUsed[pair[2]] && !newUsed[pair[3]]) {
+                oldUsed[pair[2]] = true;
+                newUsed[pair[3]] = true;
+                result.put(newPaths.get(pair[3]), oldPaths.get(pair[2]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the MinHash sketch of the set of LINES: for each of
+     * SKETCH_SIZE independent hash functions, the least hash of any line.
+     * @param lines Lines of a file.
+     * @return Sketch, or null if LINES is empty.
+     */
+    static long[] sketch(List<String> lines) {
+        if (lines.isEmpty()) {
+            return null;
+        }
+        long[] result = new long[SKETCH_SIZE];
+        Arrays.fill(result, Long.MAX_VALUE);
+        for (String line : lines) {
+            long shingle = mix((long) line.length() << 32
+                    | line.hashCode() & 0xffffffffL);
+            for (int k = 0; k < SKETCH_SIZE; k += 1) {
+                long h = mix(shingle + k * GOLDEN);
+                if (h < result[k]) {
+                    result[k] = h;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of hash functions on which sketches A and B
+     * agree. Divided by SKETCH_SIZE, it estimates the Jaccard similarity
+     * of the sets of lines they were made from.
+     * @param a Sketch.
+     * @param b Sketch.
+     * @return Number of agreeing entries.
+     */
+    static int agreement(long[] a, long[] b) {
+        int result = 0;
+        for (int k = 0; k < SKETCH_SIZE; k += 1) {
+            if (a[k] == b[k]) {
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the hash of band B of SKETCH.
+     * @param sketch Sketch.
+     * @param b Band number.
+     * @return Hash of the ROWS entries of band B.
+     */
+    private static long band(long[] sketch, int b) {
+        long result = b;
+        for (int k = b * ROWS; k < (b + 1) * ROWS; k += 1) {
+            result = mix(result * GOLDEN + sketch[k]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the last component of PATH.
+     * @param path Path of file.
+     * @return File name.
+     */
+    private static String baseName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Returns X with its bits thoroughly mixed (the SplitMix64 finalizer).
+     * @param x Value.
+     * @return Mixed value.
+     */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+
+    /**
+     * Number of rows in each band. With BANDS bands, files whose sets of
+     * lines are half shared become candidates about 93% of the time, and
+     * those three-quarters shared almost always.
+     */
+    private static final int ROWS = 3;
+
+    /**
+     * Number of bands.
+     */
+    private static final int BANDS = 20;
+
+    /**
+     * Number of hash functions in a sketch.
+     */
+    static final int SKETCH_SIZE = ROWS * BANDS;
+
+    /**
+     * Least estimated similarity of a renamed file to its original.
+     */
+    static final double SIMILARITY = 0.5;
+
+    /**
+     * Odd constant from which the hash functions are derived.
+     */
+    private static final long GOLDEN = 0x9e3779b97f4a7c15L;
+}
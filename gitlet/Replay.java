@@ -0,0 +1,680 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Replays the acceptance tests in testing/samples inside one JVM. Each
+ * .in script is read as testing/tester.py reads it, and every gitlet
+ * command runs in a temporary directory, checked exactly as the tester
+ * checks it. The commands do not pay for starting a JVM. Each still loads
+ * the gitlet classes afresh, in a class loader of its own, so it starts
+ * from the same static state as a separate process would. The time of
+ * each command and each script is measured and compared against the
+ * budgets stored in a file, which --record rewrites from the times
+ * measured.
+ *
+ * Usage: java gitlet.Replay [--src=DIR] [--budgets=FILE] [--record]
+ *        [--reps=N] [--verbose] [--keep] TEST.in ...
+ * @author Aishik Bhattacharyya
+ */
+public class Replay {
+
+    /**
+     * Replay the scripts named in ARGS, exiting with status 1 if any fails
+     * or runs over budget.
+     * @param args Options, then .in files.
+     * @throws IOException If a script or the budgets cannot be read.
+     */
+    public static void main(String... args) throws IOException {
+        Replay replay = new Replay();
+        ArrayList<File> tests = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--src=")) {
+                replay._srcDir = new File(arg.substring("--src=".length()));
+            } else if (arg.startsWith("--budgets=")) {
+                replay._budgetFile = new File(
+                        arg.substring("--budgets=".length()));
+            } else if (arg.equals("--record")) {
+                replay._record = true;
+            } else if (arg.startsWith("--reps=")) {
+                replay._reps = Integer.parseInt(
+                        arg.substring("--reps=".length()));
+            } else if (arg.equals("--verbose")) {
+                replay._verbose = true;
+            } else if (arg.equals("--keep")) {
+                replay._keep = true;
+            } else if (arg.startsWith("--")) {
+                System.err.println(USAGE);
+                System.exit(2);
+            } else {
+                tests.add(new File(arg));
+            }
+        }
+        replay.readBudgets();
+
+        int passed = 0;
+        int slow = 0;
+        long total = 0;
+        for (File test : tests) {
+            String result = replay.runTest(test);
+            String name = baseName(test);
+            if (result == null) {
+                passed += 1;
+                long time = replay._scriptTimes.get(name);
+                total += time;
+                Long budget = replay._budgets.get(name);
+                ArrayList<String> over = replay.overBudget(name);
+                if (budget != null && time > budget) {
+                    over.add(0, String.format("script %d ms > %d ms", time,
+                            budget));
+                }
+                if (over.isEmpty() || replay._record) {
+                    System.out.printf("%s: OK (%d ms)%n", name, time);
+                } else {
+                    slow += 1;
+                    System.out.printf("%s: SLOW (%s)%n", name,
+                            String.join("; ", over));
+                }
+            } else {
+                System.out.printf("%s: ERROR (%s)%n", name, result);
+            }
+        }
+        System.out.printf("%nRan %d tests in %d ms. %d passed, %d over "
+                + "budget.%n", tests.size(), total, passed, slow);
+        if (replay._record) {
+            replay.writeBudgets();
+        }
+        System.exit(passed == tests.size() && slow == 0 ? 0 : 1);
+    }
+
+    /**
+     * Run the script TEST _reps times, keeping the fastest time of each
+     * command.
+     * @param test An .in file.
+     * @return null if the script passed, else a description of the error.
+     * @throws IOException If the script cannot be read.
+     */
+    private String runTest(File test) throws IOException {
+        List<String[]> lines = new ArrayList<>();
+        readScript(test, "", lines);
+        String name = baseName(test);
+        for (int rep = 0; rep < _reps; rep += 1) {
+            Path tmp = Files.createTempDirectory(name + "_");
+            try {
+                String result = runScript(name, lines, tmp.toFile());
+                if (result != null) {
+                    return result;
+                }
+            } finally {
+                if (_keep) {
+                    System.out.println("Testing directory: " + tmp);
+                } else {
+                    deleteAll(tmp);
+                }
+            }
+        }
+        long time = 0;
+        for (String key : _commandTimes.keySet()) {
+            if (key.startsWith(name + ":")) {
+                time += _commandTimes.get(key);
+            }
+        }
+        _scriptTimes.put(name, time);
+        return null;
+    }
+
+    /**
+     * Add the lines of the script FILE to RESULT, each with its line
+     * number, replacing include lines with the lines they include.
+     * @param file Script.
+     * @param prefix Prefix of line numbers, for included files.
+     * @param result Line numbers and lines.
+     * @throws IOException If FILE cannot be read.
+     */
+    private static void readScript(File file, String prefix,
+                                   List<String[]> result) throws IOException {
+        List<String> lines = Files.readAllLines(file.toPath());
+        for (int k = 0; k < lines.size(); k += 1) {
+            String number = prefix + (k + 1);
+            Matcher include = INCLUDE.matcher(lines.get(k));
+            if (include.lookingAt()) {
+                readScript(new File(file.getParentFile(), include.group(1)),
+                        number + ".", result);
+            } else {
+                result.add(new String[] {number, lines.get(k)});
+            }
+        }
+    }
+
+    /**
+     * Run the script NAME, whose lines are LINES, in the directory TMP.
+     * @param name Name of script.
+     * @param lines Line numbers and lines.
+     * @param tmp Empty directory.
+     * @return null if the script passed, else a description of the error.
+     * @throws IOException If a file cannot be copied.
+     */
+    private String runScript(String name, List<String[]> lines, File tmp)
+            throws IOException {
+        HashMap<String, String> defns = new HashMap<>();
+        ArrayList<String> groups = new ArrayList<>();
+        File dir = tmp;
+        for (int k = 0; k < lines.size(); k += 1) {
+            String number = lines.get(k)[0];
+            String line = lines.get(k)[1];
+            if (COMMENT.matcher(line).lookingAt() || line.isBlank()) {
+                continue;
+            }
+            line = substitute(line, defns, groups);
+            Matcher m;
+            if ((m = CHDIR.matcher(line)).lookingAt()) {
+                dir = m.group(1).isEmpty() ? tmp : new File(tmp, m.group(1));
+                dir.mkdir();
+            } else if (TIMEOUT.matcher(line).lookingAt()) {
+                continue;
+            } else if ((m = COPY.matcher(line)).lookingAt()) {
+                File dest = new File(dir, m.group(1));
+                if (!dest.getParentFile().isDirectory()) {
+                    return "file " + m.group(2) + " could not be copied to "
+                            + m.group(1);
+                }
+                Files.copy(new File(_srcDir, m.group(2)).toPath(),
+                        dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else if ((m = DELETE.matcher(line)).lookingAt()) {
+                new File(dir, m.group(1)).delete();
+            } else if ((m = COMMAND.matcher(line)).lookingAt()) {
+                String command = m.group(1);
+                ArrayList<String> expected = new ArrayList<>();
+                boolean regexp;
+                while (true) {
+                    k += 1;
+                    if (k == lines.size()) {
+                        return "unterminated command: " + line;
+                    }
+                    String out = lines.get(k)[1].stripTrailing();
+                    if (out.startsWith("<<<")) {
+                        regexp = out.startsWith("<<<*");
+                        break;
+                    }
+                    expected.add(substitute(out, defns, groups));
+                }
+                long start = System.nanoTime();
+                String output = execute(split(command), dir);
+                long time = (System.nanoTime() - start) / 1_000_000;
+                String key = name + ":" + number;
+                _commandTimes.merge(key, time, Math::min);
+                if (_verbose) {
+                    System.out.printf("  %-6s %5d ms  %s%n", number, time,
+                            command);
+                }
+                if (output == null) {
+                    return "java gitlet.Main threw an exception on line "
+                            + number;
+                } else if (!matches(expected, output, groups, regexp)) {
+                    return "incorrect output on line " + number;
+                }
+            } else if ((m = SAME.matcher(line)).lookingAt()) {
+                String actual = contents(new File(dir, m.group(1)));
+                String wanted = contents(new File(_srcDir, m.group(2)));
+                if (actual == null || !actual.equals(wanted)) {
+                    return "file " + m.group(1) + " has incorrect content";
+                }
+            } else if ((m = ABSENT.matcher(line)).lookingAt()) {
+                if (new File(dir, m.group(1)).exists()) {
+                    return "file " + m.group(1) + " present";
+                }
+            } else if ((m = PRESENT.matcher(line)).lookingAt()) {
+                if (!new File(dir, m.group(1)).exists()) {
+                    return "file or directory " + m.group(1)
+                            + " not present";
+                }
+            } else if ((m = DEFINE.matcher(line)).lookingAt()) {
+                defns.put(m.group(1), m.group(2));
+            } else {
+                return "bad test line at " + number;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns LINE with each ${VAR} replaced by its definition in DEFNS,
+     * and each ${N} by group N of the last regular-expression match,
+     * repeated until nothing changes.
+     * @param line Script line.
+     * @param defns Definitions.
+     * @param groups Output and groups of the last command.
+     * @return Substituted line.
+     */
+    private static String substitute(String line, Map<String, String> defns,
+                                     List<String> groups) {
+        String last = null;
+        for (int c = 0; c < 10 && !line.equals(last); c += 1) {
+            last = line;
+            Matcher m = VARIABLE.matcher(line);
+            StringBuilder result = new StringBuilder();
+            while (m.find()) {
+                String key = m.group(1);
+                String value;
+                if (key.matches("\\d+")) {
+                    int n = Integer.parseInt(key);
+                    value = n < groups.size() ? groups.get(n) : "";
+                } else {
+                    value = defns.getOrDefault(key, "");
+                }
+                m.appendReplacement(result,
+                        Matcher.quoteReplacement(value == null ? "" : value));
+            }
+            m.appendTail(result);
+            line = result.toString();
+        }
+        return line;
+    }
+
+    /**
+     * Determine if the command's OUTPUT is acceptable against the
+     * EXPECTED lines, as tester.py judges it: as a regular expression
+     * matching all of it if REGEXP, and otherwise within TOLERANCE edits.
+     * GROUPS receives the output and the match's groups.
+     * @param expected Expected lines.
+     * @param output Output of command.
+     * @param groups Receives output and groups.
+     * @param regexp Whether EXPECTED is a regular expression.
+     * @return boolean if OUTPUT is acceptable.
+     */
+    private static boolean matches(List<String> expected, String output,
+                                   List<String> groups, boolean regexp) {
+        String wanted = normalize(String.join("\n", expected));
+        String actual = normalize(output.replace("\r", ""));
+        groups.clear();
+        groups.add(actual);
+        if (!regexp) {
+            return editDistance(wanted.stripTrailing(),
+                    actual.stripTrailing()) <= TOLERANCE;
+        }
+        Pattern pattern = Pattern.compile(
+                wanted.stripTrailing().replace("\\Z", "\\z"));
+        Matcher m = pattern.matcher(actual);
+        if (!m.matches()) {
+            m = pattern.matcher(actual.stripTrailing());
+            if (!m.matches()) {
+                return false;
+            }
+        }
+        for (int g = 1; g <= m.groupCount(); g += 1) {
+            groups.add(m.group(g));
+        }
+        return true;
+    }
+
+    /**
+     * Returns TEXT with trailing blanks on each line removed and leading
+     * blanks collapsed to one space.
+     * @param text Text.
+     * @return Normalized text.
+     */
+    private static String normalize(String text) {
+        return text.replaceAll("[ \\t]+\\n", "\n")
+                .replaceAll("(?m)^[ \\t]+", " ");
+    }
+
+    /**
+     * Returns the Levenshtein distance between A and B.
+     * @param a String.
+     * @param b String.
+     * @return Number of single-character edits between them.
+     */
+    private static int editDistance(String a, String b) {
+        int[] prev = new int[b.length() + 1];
+        int[] curr = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j += 1) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i += 1) {
+            curr[0] = i;
+            for (int j = 1; j <= b.length(); j += 1) {
+                curr[j] = Math.min(Math.min(prev[j] + 1, curr[j - 1] + 1),
+                        prev[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1)
+                                ? 0 : 1));
+            }
+            int[] swap = prev;
+            prev = curr;
+            curr = swap;
+        }
+        return prev[b.length()];
+    }
+
+    /**
+     * Returns the words of COMMAND as a shell would split them, honoring
+     * single and double quotes and backslashes.
+     * @param command Command line.
+     * @return Arguments.
+     */
+    static String[] split(String command) {
+        ArrayList<String> result = new ArrayList<>();
+        StringBuilder word = null;
+        char quote = 0;
+        for (int i = 0; i < command.length(); i += 1) {
+            char c = command.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                if (word != null) {
+                    result.add(word.toString());
+                    word = null;
+                }
+                continue;
+            }
+            if (word == null) {
+                word = new StringBuilder();
+            }
+            if (quote == 0 && (c == '"' || c == '\'')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            } else if (c == '\\' && quote != '\'' && i + 1 < command.length()) {
+                i += 1;
+                word.append(command.charAt(i));
+            } else {
+                word.append(c);
+            }
+        }
+        if (word != null) {
+            result.add(word.toString());
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /**
+     * Run gitlet.Main with ARGS in the directory DIR, in a class loader of
+     * its own, returning what it printed.
+     * @param args Arguments.
+     * @param dir Working directory.
+     * @return Output, or null if the command threw an exception.
+     */
+    private String execute(String[] args, File dir) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream capture = new PrintStream(bytes, true,
+                StandardCharsets.UTF_8);
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        String userDir = System.getProperty("user.dir");
+        System.setOut(capture);
+        System.setErr(capture);
+        System.setProperty("user.dir", dir.getAbsolutePath());
+        try {
+            Class<?> main = new Loader().loadClass("gitlet.Main");
+            Method method = main.getMethod("main", String[].class);
+            method.invoke(null, (Object) args);
+        } catch (InvocationTargetException excp) {
+            if (_verbose) {
+                excp.getCause().printStackTrace(err);
+            }
+            return null;
+        } catch (ReflectiveOperationException excp) {
+            throw new IllegalStateException(excp);
+        } finally {
+            capture.flush();
+            System.setOut(out);
+            System.setErr(err);
+            System.setProperty("user.dir", userDir);
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Class loader that defines the gitlet classes itself, so that each
+     * command gets fresh copies with fresh static state, and leaves all
+     * other classes to the application's loader. Class files are read
+     * once and shared.
+     */
+    private static final class Loader extends ClassLoader {
+        Loader() {
+            super(Replay.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve)
+                throws ClassNotFoundException {
+            if (!name.startsWith("gitlet.")
+                    || name.equals(Replay.class.getName())) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> result = findLoadedClass(name);
+                if (result == null) {
+                    byte[] bytes = CLASS_FILES.computeIfAbsent(name,
+                            Loader::classFile);
+                    if (bytes == null) {
+                        throw new ClassNotFoundException(name);
+                    }
+                    result = defineClass(name, bytes, 0, bytes.length);
+                }
+                if (resolve) {
+                    resolveClass(result);
+                }
+                return result;
+            }
+        }
+
+        /**
+         * Returns the bytes of the class file of the class NAME.
+         * @param name Binary name of class.
+         * @return Class file, or null if there is none.
+         */
+        private static byte[] classFile(String name) {
+            String resource = name.replace('.', '/') + ".class";
+            try (InputStream in = Replay.class.getClassLoader()
+                    .getResourceAsStream(resource)) {
+                return in == null ? null : in.readAllBytes();
+            } catch (IOException excp) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Returns the runs of commands in script NAME that took longer than
+     * their budgets.
+     * @param name Name of script.
+     * @return Descriptions of the runs over budget.
+     */
+    private ArrayList<String> overBudget(String name) {
+        ArrayList<String> result = new ArrayList<>();
+        for (String key : _commandTimes.keySet()) {
+            Long budget = _budgets.get(key);
+            long time = _commandTimes.get(key);
+            if (key.startsWith(name + ":") && budget != null
+                    && time > budget) {
+                result.add(String.format("line %s %d ms > %d ms",
+                        key.substring(name.length() + 1), time, budget));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Read the budgets file, if it exists. Each line holds a script name,
+     * or a script name, ':' and a line number, and a budget in
+     * milliseconds.
+     * @throws IOException If the file cannot be read.
+     */
+    private void readBudgets() throws IOException {
+        if (!_budgetFile.isFile()) {
+            return;
+        }
+        for (String line : Files.readAllLines(_budgetFile.toPath())) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length == 2 && !line.startsWith("#")) {
+                _budgets.put(fields[0], Long.parseLong(fields[1]));
+            }
+        }
+    }
+
+    /**
+     * Write the times measured, with headroom, as the new budgets.
+     * @throws IOException If the file cannot be written.
+     */
+    private void writeBudgets() throws IOException {
+        TreeMap<String, Long> budgets = new TreeMap<>(_budgets);
+        for (String key : _scriptTimes.keySet()) {
+            budgets.put(key, HEADROOM * _scriptTimes.get(key) + SLACK);
+        }
+        for (String key : _commandTimes.keySet()) {
+            budgets.put(key, HEADROOM * _commandTimes.get(key) + SLACK);
+        }
+        StringBuilder text = new StringBuilder();
+        text.append("# Time budgets, in milliseconds, of the sample scripts"
+                + " and their commands,\n# as checked by gitlet.Replay."
+                + " Rewrite with --record.\n");
+        for (String key : budgets.keySet()) {
+            text.append(key).append(' ').append(budgets.get(key))
+                    .append('\n');
+        }
+        Files.writeString(_budgetFile.toPath(), text);
+    }
+
+    /**
+     * Returns the contents of FILE, without carriage returns.
+     * @param file File.
+     * @return Contents, or null if FILE cannot be read.
+     */
+    private static String contents(File file) {
+        try {
+            return Files.readString(file.toPath()).replace("\r", "");
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the name of the script TEST without its extension.
+     * @param test Script.
+     * @return Name.
+     */
+    private static String baseName(File test) {
+        String name = test.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    /**
+     * Delete DIR and everything beneath it.
+     * @param dir Directory.
+     * @throws IOException If DIR cannot be walked.
+     */
+    private static void deleteAll(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Usage message.
+     */
+    private static final String USAGE = "Usage: java gitlet.Replay"
+            + " [--src=DIR] [--budgets=FILE] [--record] [--reps=N]"
+            + " [--verbose] [--keep] TEST.in ...";
+
+    /**
+     * Largest edit distance between expected and actual output that
+     * tester.py accepts.
+     */
+    private static final int TOLERANCE = 3;
+
+    /**
+     * Factor by which recorded budgets exceed the times measured.
+     */
+    private static final long HEADROOM = 4;
+
+    /**
+     * Milliseconds added to each recorded budget.
+     */
+    private static final long SLACK = 100;
+
+    /** Script line patterns, as in tester.py. */
+    private static final Pattern
+        COMMENT = Pattern.compile("\\s*#"),
+        INCLUDE = Pattern.compile("I\\s+(\\S+)"),
+        CHDIR = Pattern.compile("C\\s*(\\S*)"),
+        TIMEOUT = Pattern.compile("T\\s*(\\S+)"),
+        COPY = Pattern.compile("\\+\\s*(\\S+)\\s+(\\S+)"),
+        DELETE = Pattern.compile("-\\s*(\\S+)"),
+        COMMAND = Pattern.compile(">\\s*(.*)"),
+        SAME = Pattern.compile("=\\s*(\\S+)\\s+(\\S+)"),
+        ABSENT = Pattern.compile("\\*\\s*(\\S+)"),
+        PRESENT = Pattern.compile("E\\s*(\\S+)"),
+        DEFINE = Pattern.compile(
+                "(?s)D\\s*([a-zA-Z_][a-zA-Z_0-9]*)\\s*\"(.*)\"\\s*$"),
+        VARIABLE = Pattern.compile("\\$\\{(.*?)\\}");
+
+    /**
+     * Class files of the gitlet classes, by class name.
+     */
+    private static final Map<String, byte[]> CLASS_FILES =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Directory holding the files that scripts copy and compare.
+     */
+    private File _srcDir = new File("src");
+
+    /**
+     * File of budgets.
+     */
+    private File _budgetFile = new File("budgets.txt");
+
+    /**
+     * Whether to rewrite the budgets from the times measured.
+     */
+    private boolean _record;
+
+    /**
+     * Number of times to run each script.
+     */
+    private int _reps = 1;
+
+    /**
+     * Whether to print the time of every command.
+     */
+    private boolean _verbose;
+
+    /**
+     * Whether to keep the directories the scripts ran in.
+     */
+    private boolean _keep;
+
+    /**
+     * Budgets, in milliseconds, by script name or script and line.
+     */
+    private final TreeMap<String, Long> _budgets = new TreeMap<>();
+
+    /**
+     * Fastest time of each command, by script and line.
+     */
+    private final TreeMap<String, Long> _commandTimes = new TreeMap<>();
+
+    /**
+     * Total time of each script that passed.
+     */
+    private final TreeMap<String, Long> _scriptTimes = new TreeMap<>();
+}
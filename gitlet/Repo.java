@@ -0,0 +1,817 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A .gitlet directory, possibly another repository's, seen as a store of
+ * objects and branches. Histories are copied between stores by walking the
+ * source's commit graph back from the wanted head and stopping at commits
+ * the target already has, so a transfer reads and writes only the new
+ * history, never the whole repository.
+ * @author Aishik Bhattacharyya
+ */
+class Repo {
+    /**
+     * Store in the .gitlet directory ROOT.
+     * @param root A .gitlet directory.
+     */
+    Repo(File root) {
+        _root = root;
+        _commits = new File(root, "commits");
+        _blobs = new File(root, "blobs");
+        _trees = new File(root, "trees");
+        _branches = new File(root, "branches");
+    }
+
+    /**
+     * Returns the store of the repository in the working directory.
+     * @return Local store.
+     */
+    static Repo local() {
+        return LOCAL;
+    }
+
+    /**
+     * Returns the .gitlet directory holding the store that the working
+     * tree whose .gitlet directory is GITLETDIR uses. A working tree made
+     * by worktree add names it in its WORKTREE_FILE; otherwise it is
+     * GITLETDIR itself.
+     * @param gitletDir A .gitlet directory.
+     * @return Directory of the shared store.
+     */
+    static File commonDir(File gitletDir) {
+        String[] link = worktreeLink(gitletDir);
+        return link == null ? gitletDir : new File(link[0]);
+    }
+
+    /**
+     * Returns the name of the file, among the shared store's branches,
+     * holding the branch checked out in the working tree whose .gitlet
+     * directory is GITLETDIR.
+     * @param gitletDir A .gitlet directory.
+     * @return "current", or "current-" and the worktree's name.
+     */
+    static String currentBranchName(File gitletDir) {
+        String[] link = worktreeLink(gitletDir);
+        return link == null ? CURRENT : CURRENT + "-" + link[1];
+    }
+
+    /**
+     * Determine if the branch file FILE is checked out in some working
+     * tree.
+     * @param file Branch file.
+     * @return boolean if its name marks it as checked out.
+     */
+    static boolean isCheckedOut(File file) {
+        String name = file.getName();
+        return name.equals(CURRENT) || name.startsWith(CURRENT + "-");
+    }
+
+    /**
+     * Record in GITLETDIR, the .gitlet directory of a new working tree,
+     * that it uses the store in COMMONDIR and is called NAME.
+     * @param gitletDir A new .gitlet directory.
+     * @param commonDir Directory of the shared store.
+     * @param name Name of the working tree.
+     * @throws IOException If COMMONDIR's path cannot be resolved.
+     */
+    static void linkWorktree(File gitletDir, File commonDir, String name)
+            throws IOException {
+        Utils.writeContents(new File(gitletDir, WORKTREE_FILE),
+                commonDir.getCanonicalPath() + "\n" + name + "\n");
+    }
+
+    /**
+     * Returns the shared store's directory and the working tree's name
+     * recorded in GITLETDIR.
+     * @param gitletDir A .gitlet directory.
+     * @return Directory and name, or null if GITLETDIR has its own store.
+     */
+    private static String[] worktreeLink(File gitletDir) {
+        File file = new File(gitletDir, WORKTREE_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        return Utils.readContentsAsString(file).split("\n");
+    }
+
+    /**
+     * Determine if this store exists.
+     * @return boolean if its directory is present.
+     */
+    boolean exists() {
+        return _root.isDirectory();
+    }
+
+    /**
+     * Returns the hash algorithm naming this store's objects.
+     * @return Hash algorithm.
+     */
+    HashAlgorithm algorithm() {
+        File hashFile = new File(_root, Tree.HASH_FILE.getName());
+        if (!hashFile.isFile()) {
+            return HashAlgorithm.SHA1;
+        }
+        return HashAlgorithm.forName
+                (Utils.readContentsAsString(hashFile).trim());
+    }
+
+    /**
+     * Determine if this store is in the format this build reads: its
+     * FORMAT_FILE holds FORMAT. Stores made before the format was
+     * recorded have no such file and hold objects this build cannot read.
+     * @return boolean if the store's format is FORMAT.
+     */
+    boolean isSupported() {
+        File formatFile = new File(_root, Tree.FORMAT_FILE.getName());
+        return formatFile.isFile() && Utils.readContentsAsString(formatFile)
+                .trim().equals(Integer.toString(FORMAT));
+    }
+
+    /**
+     * Determine if this store holds a commit.
+     * @param id ID of commit.
+     * @return boolean if the commit is present.
+     */
+    boolean hasCommit(ObjectId id) {
+        return hasObject(_commits, id);
+    }
+
+    /**
+     * Determine if this store holds an object, consulting the file system
+     * only if the object filter says it may.
+     * @param dir Object directory of this store.
+     * @param id ID of object.
+     * @return boolean if the object is present.
+     */
+    boolean hasObject(File dir, ObjectId id) {
+        File file = new File(dir, id.toString());
+        return filter().mightContain(id)
+                && (_batch != null && _batch.isPending(file)
+                    || file.exists());
+    }
+
+    /**
+     * Store OBJ as the object ID unless this store already holds it.
+     * Stored objects are never rewritten, because a clone may share them
+     * with another repository through hard links.
+     * @param dir Object directory of this store.
+     * @param id ID of object.
+     * @param obj Object to store.
+     */
+    void saveObject(File dir, ObjectId id, Serializable obj) {
+        if (hasObject(dir, id)) {
+            return;
+        }
+        if (_batch != null) {
+            _batch.write(new File(dir, id.toString()), id, obj);
+            recordObject(id);
+            return;
+        }
+        try (OutputStream out = Files.newOutputStream(
+                new File(dir, id.toString()).toPath(),
+                StandardOpenOption.CREATE_NEW)) {
+            out.write(Utils.serialize(obj));
+        } catch (FileAlreadyExistsException excp) {
+            /* Written by a process that did not update the filter. */
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        recordObject(id);
+    }
+
+    /**
+     * Hand the objects stored from now on to a batch, which writes them
+     * in the background and syncs them only at checkpoints, until
+     * endBatch. Stored objects can be read at once all the same.
+     */
+    void beginBatch() {
+        _batch = new ObjectBatch();
+    }
+
+    /**
+     * Wait until every object stored so far in the current batch is
+     * written and synced, and save the object filter, so that refs to
+     * them may safely be written.
+     * @throws IOException If an object cannot be written or synced.
+     */
+    void checkpoint() throws IOException {
+        _batch.checkpoint();
+        saveFilter();
+    }
+
+    /**
+     * Wait until every object stored in the current batch is written,
+     * and write objects directly again. Objects written since the last
+     * checkpoint are not synced.
+     * @throws IOException If an object cannot be written.
+     */
+    void endBatch() throws IOException {
+        try {
+            _batch.close();
+        } finally {
+            _batch = null;
+        }
+    }
+
+    /**
+     * Note that the object ID has been written to this store.
+     * @param id ID of object.
+     */
+    void recordObject(ObjectId id) {
+        filter().add(id);
+        _filterChanged = true;
+    }
+
+    /**
+     * Returns this store's object filter, reading it, or building it from
+     * the object directories, the first time it is needed.
+     * @return Object filter.
+     */
+    private synchronized ObjectFilter filter() {
+        if (_filter == null) {
+            File file = new File(_root, FILTER_FILE);
+            if (file.isFile()) {
+                _filter = Utils.readObject(file, ObjectFilter.class);
+            }
+            if (_filter == null || _filter.isFull()) {
+                _filter = ObjectFilter.build(_blobs, _trees, _commits);
+                _filterChanged = true;
+            }
+        }
+        return _filter;
+    }
+
+    /**
+     * Write this store's object filter back if it has changed, first
+     * rebuilding it larger if it has outgrown its size.
+     */
+    synchronized void saveFilter() {
+        if (_filter == null || !_filterChanged || !exists()) {
+            return;
+        }
+        if (_filter.isFull()) {
+            _filter = ObjectFilter.build(_blobs, _trees, _commits);
+        }
+        replaceObject(new File(_root, FILTER_FILE), _filter);
+        _filterChanged = false;
+    }
+
+    /**
+     * Take this store's lock, waiting until it is free: SHARED if only
+     * reading, which other readers may hold at the same time, and
+     * otherwise exclusive. The lock is held by the operating system on
+     * behalf of this process, so it is released even if the process dies.
+     * @param shared Whether to take a shared lock.
+     * @throws IOException If the lock file cannot be opened.
+     */
+    synchronized void lock(boolean shared) throws IOException {
+        if (_lock != null || !exists()) {
+            return;
+        }
+        _lock = FileChannel.open(new File(_root, LOCK_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        _lock.lock(0, Long.MAX_VALUE, shared);
+        synchronized (LOCKED) {
+            LOCKED.add(this);
+        }
+    }
+
+    /**
+     * Release the locks of all stores locked by this process.
+     * @throws IOException If a lock file cannot be closed.
+     */
+    static void unlockAll() throws IOException {
+        synchronized (LOCKED) {
+            for (Repo repo : LOCKED) {
+                synchronized (repo) {
+                    repo._lock.close();
+                    repo._lock = null;
+                }
+            }
+            LOCKED.clear();
+        }
+    }
+
+    /**
+     * Replace the contents of FILE, in this store, with OBJ. The new
+     * contents are written to a temporary file and renamed into place,
+     * so a reader sees either the old contents or the new, never a mix,
+     * and a crash leaves the old contents intact. Files outside the
+     * store, such as a worktree's staging area, are written beside
+     * themselves, so the rename never crosses file systems.
+     * @param file File to write.
+     * @param obj Its new contents.
+     */
+    void replaceObject(File file, Serializable obj) {
+        try {
+            File tempDir = new File(_root, TEMP_DIR);
+            if (!file.getAbsolutePath().startsWith(
+                    _root.getAbsolutePath() + File.separator)) {
+                tempDir = file.getAbsoluteFile().getParentFile();
+            }
+            tempDir.mkdir();
+            Path temp = Files.createTempFile(tempDir.toPath(),
+                    "." + file.getName(), null);
+            Files.write(temp, Utils.serialize(obj));
+            Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Returns the file holding the branch called NAME, which is the file
+     * "current", or "current-" and a worktree's name, if it is checked
+     * out.
+     * @param name Name of branch.
+     * @return Branch file, or null if there is no such branch.
+     */
+    File branchFile(String name) {
+        File[] files = _branches.listFiles();
+        if (files == null) {
+            return null;
+        }
+        for (File file : files) {
+            if (Utils.readObject(file, Branch.class).getName().equals(name)) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the file in which to store a new branch.
+     * @param branch New branch.
+     * @return Branch file.
+     */
+    File newBranchFile(Branch branch) {
+        return new File(_branches, branch.getID().toString());
+    }
+
+    /**
+     * Give TARGET, a new store, every object in this store. Objects never
+     * change once written, so where the file system allows they are hard
+     * links to this store's files, which costs no copying at all; across
+     * file systems they are copied.
+     * @param target Store to fill.
+     * @throws IOException If an object can be neither linked nor copied.
+     */
+    void shareObjectsWith(Repo target) throws IOException {
+        boolean link = true;
+        File[][] dirs = {
+            {_blobs, target._blobs},
+            {_trees, target._trees},
+            {_commits, target._commits}
+        };
+        for (File[] pair : dirs) {
+            pair[1].mkdirs();
+            String[] names = pair[0].list();
+            if (names == null) {
+                continue;
+            }
+            for (String name : names) {
+                Path from = new File(pair[0], name).toPath();
+                Path to = new File(pair[1], name).toPath();
+                if (link) {
+                    try {
+                        Files.createLink(to, from);
+                        continue;
+                    } catch (IOException | UnsupportedOperationException e) {
+                        link = false;
+                    }
+                }
+                copy(from, to);
+            }
+        }
+        String[] sideFiles = {FILTER_FILE, CHANGED_PATHS_FILE,
+            COMMIT_HEAP_FILE, COMMIT_TABLE_FILE};
+        for (String name : sideFiles) {
+            File file = new File(_root, name);
+            if (file.isFile()) {
+                copy(file.toPath(), new File(target._root, name).toPath());
+            }
+        }
+    }
+
+    /**
+     * Give TARGET, a new store, copies of this store's branches and hash
+     * algorithm setting. Unlike objects, these change, so they are never
+     * linked. Branches checked out in this store's other worktrees are
+     * plain branches in TARGET.
+     * @param target Store to fill.
+     * @throws IOException If copying fails.
+     */
+    void copyRefsTo(Repo target) throws IOException {
+        target._branches.mkdirs();
+        File[] branches = _branches.listFiles();
+        if (branches != null) {
+            for (File branch : branches) {
+                String name = branch.getName();
+                if (isCheckedOut(branch) && !name.equals(CURRENT)) {
+                    name = newBranchFile(Utils.readObject(branch,
+                            Branch.class)).getName();
+                }
+                copy(branch.toPath(),
+                        new File(target._branches, name).toPath());
+            }
+        }
+        for (File file : new File[] {
+            new File(_root, Tree.HASH_FILE.getName()),
+            new File(_root, Tree.FORMAT_FILE.getName()) }) {
+            if (file.isFile()) {
+                copy(file.toPath(),
+                        new File(target._root, file.getName()).toPath());
+            }
+        }
+    }
+
+    /**
+     * Copy the file FROM to the new file TO, letting the operating system
+     * move the bytes where it can.
+     * @param from File to copy.
+     * @param to New file.
+     * @throws IOException If copying fails.
+     */
+    private static void copy(Path from, Path to) throws IOException {
+        try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(to, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE_NEW)) {
+            long size = in.size();
+            for (long done = 0; done < size; ) {
+                done += in.transferTo(done, size - done, out);
+            }
+        }
+    }
+
+    /**
+     * Find the commits reachable from HEAD in this store that TARGET lacks.
+     * The walk stops at commits TARGET already has, which are added to
+     * COMMON.
+     * @param target Store to compare with.
+     * @param head ID of commit wanted by TARGET.
+     * @param common Receives the commits where the walk stopped.
+     * @return Missing commits, nearest to HEAD first.
+     */
+    ObjectIdSet missingCommits(Repo target, ObjectId head,
+                               ObjectIdSet common) {
+        ObjectIdSet missing = new ObjectIdSet();
+        ArrayDeque<ObjectId> queue = new ArrayDeque<>();
+        if (target.hasCommit(head)) {
+            common.add(head);
+            return missing;
+        }
+        missing.add(head);
+        queue.add(head);
+        while (!queue.isEmpty()) {
+            Commit commit = Utils.readObject(_commits, queue.remove(),
+                    Commit.class);
+            for (ObjectId parent : commit.getParents()) {
+                if (target.hasCommit(parent)) {
+                    common.add(parent);
+                } else if (missing.add(parent)) {
+                    queue.add(parent);
+                }
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Copy COMMITS, and the trees and blobs they use that TARGET lacks,
+     * from this store to TARGET. Objects are first copied to temporary
+     * files and synced to disk together. They are then renamed into
+     * place, with each object after those it refers to, so that an
+     * interrupted copy never leaves TARGET with an object whose
+     * references are missing.
+     * @param target Store to copy into.
+     * @param commits Commits to copy, as found by missingCommits.
+     * @throws IOException If copying fails.
+     */
+    void copyCommits(Repo target, ObjectIdSet commits) throws IOException {
+        ArrayList<File[]> copies = new ArrayList<>();
+        ObjectIdSet copiedTrees = new ObjectIdSet();
+        ObjectIdSet copiedBlobs = new ObjectIdSet();
+        for (ObjectId id : commits) {
+            Commit commit = Utils.readObject(_commits, id, Commit.class);
+            copyTree(target, commit.getTree(), copiedTrees, copiedBlobs,
+                    copies);
+        }
+        for (ObjectId id : parentsFirst(commits)) {
+            copies.add(stage(_commits, target._commits, id));
+        }
+        for (File[] copy : copies) {
+            sync(copy[0]);
+        }
+        for (File[] copy : copies) {
+            Files.move(copy[0].toPath(), copy[1].toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            target.recordObject(ObjectId.parse(copy[1].getName()));
+        }
+        sync(target._blobs);
+        sync(target._trees);
+        sync(target._commits);
+        target.saveFilter();
+        for (ObjectId id : commits) {
+            Commit commit = Utils.readObject(_commits, id, Commit.class);
+            target.recordCommit(commit);
+            ObjectId parentTree = commit.getParents().isEmpty() ? null
+                    : Utils.readObject(_commits, commit.getParents().get(0),
+                            Commit.class).getTree();
+            target.recordChangedPaths(id,
+                    Directory.changedPaths(parentTree, commit.getTree()));
+        }
+    }
+
+    /**
+     * Create this store's commit table, empty.
+     * @throws IOException If the table cannot be created.
+     */
+    void createCommitTable() throws IOException {
+        CommitTable.create(new File(_root, COMMIT_TABLE_FILE),
+                new File(_root, COMMIT_HEAP_FILE));
+    }
+
+    /**
+     * Add COMMIT to this store's commit table. Stores without a table
+     * are left alone, as open will build their tables from all of their
+     * commits, COMMIT included.
+     * @param commit Commit newly stored.
+     * @throws IOException If the table cannot be written.
+     */
+    void recordCommit(Commit commit) throws IOException {
+        File table = new File(_root, COMMIT_TABLE_FILE);
+        if (table.isFile()) {
+            CommitTable.append(table, new File(_root, COMMIT_HEAP_FILE),
+                    commit);
+        }
+    }
+
+    /**
+     * Returns this store's commit table, building it first if the store
+     * predates commit tables.
+     * @return Commit table.
+     * @throws IOException If the table cannot be read or built.
+     */
+    CommitTable commitTable() throws IOException {
+        return CommitTable.open(new File(_root, COMMIT_TABLE_FILE),
+                new File(_root, COMMIT_HEAP_FILE),
+                new File(_root, COMMIT_TIMES_FILE), _commits,
+                new File(_root, TEMP_DIR));
+    }
+
+    /**
+     * Record in this store's side file of changed paths that commit ID
+     * changed PATHS from its first parent.
+     * @param id ID of commit.
+     * @param paths Changed paths.
+     * @throws IOException If the side file cannot be written.
+     */
+    void recordChangedPaths(ObjectId id, Collection<String> paths)
+            throws IOException {
+        ChangedPaths.append(new File(_root, CHANGED_PATHS_FILE), id, paths);
+    }
+
+    /**
+     * Returns the changed-path filters of this store's commits.
+     * @return Filters.
+     * @throws IOException If the side file cannot be read.
+     */
+    ChangedPaths changedPaths() throws IOException {
+        return ChangedPaths.read(new File(_root, CHANGED_PATHS_FILE));
+    }
+
+    /**
+     * Queue copies of the tree ID and everything beneath it that TARGET
+     * lacks, children before parents.
+     * @param target Store to copy into.
+     * @param id ID of tree.
+     * @param trees Trees already queued.
+     * @param blobs Blobs already queued.
+     * @param copies Receives temporary and final files of each copy.
+     * @throws IOException If copying fails.
+     */
+    private void copyTree(Repo target, ObjectId id, ObjectIdSet trees,
+                          ObjectIdSet blobs, List<File[]> copies)
+            throws IOException {
+        if (id.equals(Directory.emptyID())
+                || target.hasObject(target._trees, id) || !trees.add(id)) {
+            return;
+        }
+        Directory dir = Utils.readObject(_trees, id, Directory.class);
+        ArrayList<ObjectId> fileIDs = new ArrayList<>();
+        ArrayList<ObjectId> treeIDs = new ArrayList<>();
+        dir.references(fileIDs, treeIDs);
+        for (ObjectId blob : fileIDs) {
+            if (!target.hasObject(target._blobs, blob) && blobs.add(blob)) {
+                copies.add(stage(_blobs, target._blobs, blob));
+            }
+        }
+        for (ObjectId sub : treeIDs) {
+            copyTree(target, sub, trees, blobs, copies);
+        }
+        copies.add(stage(_trees, target._trees, id));
+    }
+
+    /**
+     * Copy the object ID from directory FROM to a temporary file in the
+     * temporary directory of the store holding directory TO, out of sight
+     * of commands listing TO.
+     * @param from Source directory.
+     * @param to Target directory.
+     * @param id ID of object.
+     * @return Temporary file and the file it is to be renamed to.
+     * @throws IOException If copying fails.
+     */
+    private static File[] stage(File from, File to, ObjectId id)
+            throws IOException {
+        File target = new File(to, id.toString());
+        File tempDir = new File(to.getParentFile(), TEMP_DIR);
+        tempDir.mkdir();
+        File temp = new File(tempDir, to.getName() + "-" + id);
+        Files.copy(new File(from, id.toString()).toPath(), temp.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        return new File[] {temp, target};
+    }
+
+    /**
+     * Order COMMITS so that each comes after any of its parents among
+     * them.
+     * @param commits Commits to order.
+     * @return COMMITS, parents first.
+     */
+    private List<ObjectId> parentsFirst(ObjectIdSet commits) {
+        ArrayList<ObjectId> result = new ArrayList<>();
+        ObjectIdSet visited = new ObjectIdSet();
+        ArrayDeque<ObjectId> stack = new ArrayDeque<>();
+        ArrayDeque<Boolean> expanded = new ArrayDeque<>();
+        for (ObjectId start : commits) {
+            stack.push(start);
+            expanded.push(false);
+            while (!stack.isEmpty()) {
+                ObjectId id = stack.pop();
+                if (expanded.pop()) {
+                    result.add(id);
+                } else if (visited.add(id)) {
+                    stack.push(id);
+                    expanded.push(true);
+                    Commit commit = Utils.readObject(_commits, id,
+                            Commit.class);
+                    for (ObjectId parent : commit.getParents()) {
+                        if (commits.contains(parent)
+                                && !visited.contains(parent)) {
+                            stack.push(parent);
+                            expanded.push(false);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Force FILE, which may be a directory, to disk. Directories that
+     * cannot be opened for syncing are skipped.
+     * @param file File to sync.
+     * @throws IOException If a plain file cannot be synced.
+     */
+    private static void sync(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                file.isDirectory() ? StandardOpenOption.READ
+                        : StandardOpenOption.WRITE)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            if (!file.isDirectory()) {
+                throw excp;
+            }
+        }
+    }
+
+    /**
+     * Version of the layout of a store and of the serialized forms of the
+     * objects in it, recorded in Tree.FORMAT_FILE. It changes, along with
+     * the serialVersionUID of each stored class, whenever a store made by
+     * an older build can no longer be read.
+     */
+    static final int FORMAT = 1;
+
+    /**
+     * Store of the repository in the working directory.
+     */
+    private static final Repo LOCAL = new Repo(
+            commonDir(new File(System.getProperty("user.dir"), ".gitlet")));
+
+    /**
+     * Name of the file holding the checked-out branch of the store's own
+     * working tree.
+     */
+    private static final String CURRENT = "current";
+
+    /**
+     * File in the .gitlet directory of a working tree made by worktree
+     * add naming the store it shares and the working tree.
+     */
+    private static final String WORKTREE_FILE = "worktree";
+
+    /**
+     * Stores locked by this process.
+     */
+    private static final List<Repo> LOCKED = new ArrayList<>();
+
+    /**
+     * File in a store holding its object filter.
+     */
+    private static final String FILTER_FILE = "objects.bloom";
+
+    /**
+     * File in a store holding the paths changed by each commit.
+     */
+    private static final String CHANGED_PATHS_FILE = "changed-paths";
+
+    /**
+     * File in a store holding its commit table's records.
+     */
+    private static final String COMMIT_TABLE_FILE = "commit-table";
+
+    /**
+     * File in a store holding the strings of its commit table.
+     */
+    private static final String COMMIT_HEAP_FILE = "commit-heap";
+
+    /**
+     * File in a store holding its commit table's time index.
+     */
+    private static final String COMMIT_TIMES_FILE = "commit-times";
+
+    /**
+     * File in a store on which its lock is taken.
+     */
+    private static final String LOCK_FILE = "lock";
+
+    /**
+     * Directory of a store holding objects being copied into it, and
+     * files about to replace others.
+     */
+    private static final String TEMP_DIR = "tmp";
+
+    /**
+     * The .gitlet directory.
+     */
+    private final File _root;
+
+    /**
+     * Channel holding this store's lock, or null if not locked.
+     */
+    private FileChannel _lock;
+
+    /**
+     * Commits directory.
+     */
+    private final File _commits;
+
+    /**
+     * Blobs directory.
+     */
+    private final File _blobs;
+
+    /**
+     * Trees directory.
+     */
+    private final File _trees;
+
+    /**
+     * Branches directory.
+     */
+    private final File _branches;
+
+    /**
+     * Filter over the IDs of stored objects, or null until needed.
+     */
+    private ObjectFilter _filter;
+
+    /**
+     * Whether _filter differs from the stored filter.
+     */
+    private boolean _filterChanged;
+
+    /**
+     * Batch writing stored objects, or null if they are written directly.
+     */
+    private ObjectBatch _batch;
+}
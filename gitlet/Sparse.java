@@ -0,0 +1,104 @@
+package gitlet;
+
+import java.io.File;
+import java.util.TreeSet;
+
+/**
+ * The sparse-checkout patterns of a working tree: the files and
+ * directories of each commit that are written to the working directory.
+ * A pattern names a file or a directory, and a directory stands for
+ * everything beneath it. Commits always hold every file; the patterns
+ * only decide which are checked out, looked at by status, and checked
+ * for untracked files in the way. Walks of directory snapshots and of the
+ * working directory ask covers about each directory before entering it,
+ * so they read only the directories leading to and lying within the
+ * patterns.
+ * @author Aishik Bhattacharyya
+ */
+class Sparse {
+
+    /**
+     * Patterns PATTERNS, or every file if PATTERNS is null.
+     * @param patterns Paths of files and directories, without trailing
+     *                 '/'.
+     */
+    Sparse(TreeSet<String> patterns) {
+        _patterns = patterns;
+    }
+
+    /**
+     * Returns the patterns stored in FILE.
+     * @param file File of patterns, which need not exist.
+     * @return Patterns, which cover every file if FILE does not exist.
+     */
+    @SuppressWarnings("unchecked")
+    static Sparse read(File file) {
+        if (!file.isFile()) {
+            return new Sparse(null);
+        }
+        return new Sparse(Utils.readObject(file, TreeSet.class));
+    }
+
+    /**
+     * Returns PATH with any trailing '/' and leading "./" removed, as a
+     * pattern.
+     * @param path Path of file or directory.
+     * @return Pattern.
+     */
+    static String pattern(String path) {
+        while (path.startsWith("./")) {
+            path = path.substring(2);
+        }
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    /**
+     * Determine if the patterns cover every file.
+     * @return boolean if there are no patterns.
+     */
+    boolean isAll() {
+        return _patterns == null;
+    }
+
+    /**
+     * Returns the patterns.
+     * @return Patterns, or null if every file is covered.
+     */
+    TreeSet<String> patterns() {
+        return _patterns;
+    }
+
+    /**
+     * Determine if PATH is checked out. A PATH ending in '/' names a
+     * directory, which is covered if any file beneath it may be.
+     * @param path Path of file, or of directory ending in '/'.
+     * @return boolean if PATH lies within, or for a directory leads to,
+     *         a pattern.
+     */
+    boolean covers(String path) {
+        if (_patterns == null) {
+            return true;
+        }
+        boolean dir = path.endsWith("/");
+        String name = dir ? path.substring(0, path.length() - 1) : path;
+        for (int slash = name.indexOf('/'); slash >= 0;
+                slash = name.indexOf('/', slash + 1)) {
+            if (_patterns.contains(name.substring(0, slash))) {
+                return true;
+            }
+        }
+        if (_patterns.contains(name)) {
+            return true;
+        }
+        String beneath = _patterns.ceiling(path);
+        return dir && beneath != null && beneath.startsWith(path);
+    }
+
+    /**
+     * Paths of the files and directories checked out, or null for all.
+     */
+    private final TreeSet<String> _patterns;
+}
@@ -1,20 +1,35 @@
 package gitlet;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.TimeZone;
 import java.util.TreeMap;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 /**
  * Repository class that runs all Git commands.
@@ -35,59 +50,148 @@ public class Tree {
      * Staging area for addition.
      */
 
-    private TreeMap<String, String> _stagingAreaAdd;
+    private TreeMap<String, ObjectId> _stagingAreaAdd;
 
     /**
      * Staging are for removal.
      */
-    private TreeMap<String, String> _stagingAreaRemove;
+    private TreeMap<String, ObjectId> _stagingAreaRemove;
+
+    /**
+     * Sparse-checkout patterns of this working tree.
+     */
+    private Sparse _sparse = Sparse.read(SPARSE_FILE);
+
+    /**
+     * Working files as last reported by the monitor, or null if no
+     * monitor is running.
+     */
+    private WorkingState _working;
+
+    /**
+     * Whether the monitor has been queried for _working.
+     */
+    private boolean _workingQueried;
 
     /**
      * Common Working Directory file.
      */
     static final File CWD = new File(System.getProperty("user.dir"));
 
+    /**
+     * The .gitlet directory of this working tree.
+     */
+    static final File GITLET_DIR = new File(CWD, ".gitlet");
+
+    /**
+     * The .gitlet directory holding the objects and branches shared by
+     * all working trees of the repository: GITLET_DIR itself, unless this
+     * working tree was made by worktree add.
+     */
+    static final File COMMON_DIR = Repo.commonDir(GITLET_DIR);
+
     /**
      * Branches storage file.
      */
-    static final File BRANCHES_DIR = new File(".gitlet/branches");
+    static final File BRANCHES_DIR = new File(COMMON_DIR, "branches");
+
+    /**
+     * File in BRANCHES_DIR holding the branch checked out in this working
+     * tree.
+     */
+    static final File CURRENT_BRANCH = new File(BRANCHES_DIR,
+            Repo.currentBranchName(GITLET_DIR));
 
     /**
      * Commits storage file.
      */
-    static final File COMMITS_DIR = new File(".gitlet/commits");
+    static final File COMMITS_DIR = new File(COMMON_DIR, "commits");
 
     /**
      * Blobs storage file.
      */
-    static final File BLOB_DIR = new File(".gitlet/blobs");
+    static final File BLOB_DIR = new File(COMMON_DIR, "blobs");
+
+    /**
+     * Directory snapshots storage file.
+     */
+    static final File TREES_DIR = new File(COMMON_DIR, "trees");
 
     /**
      * Staging area for addition storage file.
      */
-    static final File STAGING_ADD = new File(".gitlet/staging/add");
+    static final File STAGING_ADD = new File(GITLET_DIR, "staging/add");
 
     /**
      * Staging area for removal storage file.
      */
-    static final File STAGING_REMOVE = new File(".gitlet/staging/remove");
+    static final File STAGING_REMOVE = new File(GITLET_DIR,
+            "staging/remove");
+
+    /**
+     * Sparse-checkout patterns of this working tree.
+     */
+    static final File SPARSE_FILE = new File(GITLET_DIR, "sparse");
+
+    /**
+     * Rebase of this working tree stopped at a conflict.
+     */
+    static final File REBASE_FILE = new File(GITLET_DIR, "rebase");
+
+    /**
+     * Name of the repository's hash algorithm.
+     */
+    static final File HASH_FILE = new File(COMMON_DIR, "hash");
+
+    /**
+     * Version of the repository's format; see Repo.FORMAT.
+     */
+    static final File FORMAT_FILE = new File(COMMON_DIR, "format");
+
+    /**
+     * Names of remotes mapped to their .gitlet directories.
+     */
+    static final File REMOTES_FILE = new File(COMMON_DIR, "remotes");
+
+    /**
+     * Names of the working trees made by worktree add mapped to their
+     * directories.
+     */
+    static final File WORKTREES_FILE = new File(COMMON_DIR, "worktrees");
+
+    /**
+     * Options of log and global-log taking a value, by their positions
+     * in the result of parsePage.
+     */
+    private static final String[] PAGE_OPTIONS = {
+        "-n", "--skip", "--since", "--until"
+    };
+
+    /**
+     * Number of hexadecimal digits of abbreviated commit IDs.
+     */
+    static final int SHORT_ID_LENGTH = 8;
+
+    /**
+     * Number of characters of output buffered before writing.
+     */
+    static final int OUTPUT_BUFFER_SIZE = 1 << 16;
 
     /**
-     * Maximum possible commit ID length.
+     * Option to init naming the hash algorithm.
      */
-    static final int MAX_COMMIT_ID_LENGTH = 40;
+    static final String HASH_OPTION = "--hash=";
 
     @SuppressWarnings("unchecked")
 
     public Tree() {
-        File currentBranchFile = Utils.join
-                (BRANCHES_DIR, "current");
+        File currentBranchFile = CURRENT_BRANCH;
         if (currentBranchFile.exists()) {
             Branch currentBranch = Utils.readObject
                     (currentBranchFile, Branch.class);
-            String lastCommitSha1 = currentBranch.getHeadCommit();
-            _head = Utils.readObject(Utils.join
-                    (COMMITS_DIR, lastCommitSha1), Commit.class);
+            ObjectId lastCommitSha1 = currentBranch.getHeadCommit();
+            _head = Utils.readObject(COMMITS_DIR, lastCommitSha1,
+                    Commit.class);
             _currentBranch = currentBranch;
 
             try {
@@ -106,10 +210,25 @@ public class Tree {
         }
     }
 
-    public void init() throws Exception {
-        File rootDir = new File(".gitlet");
+    public void init(String options) throws Exception {
+        HashAlgorithm algorithm = HashAlgorithm.SHA1;
+        if (options.startsWith(HASH_OPTION)) {
+            algorithm = HashAlgorithm.forName
+                    (options.substring(HASH_OPTION.length()));
+            if (algorithm == null) {
+                System.out.println("Unknown hash algorithm.");
+                return;
+            }
+        } else if (!options.isEmpty()) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        File rootDir = GITLET_DIR;
         if (!rootDir.exists()) {
-            new File(".gitlet").mkdir();
+            GITLET_DIR.mkdir();
+            HashAlgorithm.setCurrent(algorithm);
+            Utils.writeContents(HASH_FILE, algorithm.toString());
+            Utils.writeContents(FORMAT_FILE, Repo.FORMAT + "\n");
 
             File blobDir = BLOB_DIR;
             blobDir.mkdir();
@@ -117,79 +236,241 @@ public class Tree {
             File commitDir = COMMITS_DIR;
             commitDir.mkdir();
 
+            File treeDir = TREES_DIR;
+            treeDir.mkdir();
+
             File branchDir = BRANCHES_DIR;
             branchDir.mkdir();
-            File currBranch = Utils.join(BRANCHES_DIR, "current");
+            File currBranch = CURRENT_BRANCH;
             currBranch.createNewFile();
 
-            File stagingDir = new File(".gitlet", "staging");
+            File stagingDir = STAGING_ADD.getParentFile();
             stagingDir.mkdir();
             File add = STAGING_ADD;
             add.createNewFile();
             File remove = STAGING_ADD;
             remove.createNewFile();
 
+            Repo.local().createCommitTable();
             String initMsg = "initial commit";
-            String initDate = "Thu Jan 1 00:00:00 1970 -0800";
-            Commit initCommit = new Commit(initMsg, initDate);
+            Commit initCommit = new Commit(initMsg, 0, 0);
             serializeCommit(initCommit);
             _head = initCommit;
 
             Branch master = new Branch("master");
             master.addCommit(initCommit);
-            Utils.writeObject(new File(".gitlet/branches/current"), master);
+            Repo.local().replaceObject(CURRENT_BRANCH, master);
         } else {
             System.out.println("Gitlet version-control system"
                     + " already exists in the current directory.");
         }
     }
 
-    public void add(String fileName) throws IOException {
-        File file = new File(CWD, fileName);
-        if (file.exists()) {
-            TreeMap<String, String> stagingAreaAdd;
-
-            Blob blob = new Blob(fileName);
-            File newBlobFile = Utils.join(BLOB_DIR, blob.getHash());
-
-            if (_head.getFiles().containsKey(fileName)) {
-                Blob headBlob = Utils.readObject
-                        (Utils.join(BLOB_DIR,
-                                        _head.getFiles().get(fileName)),
-                                Blob.class);
-                byte[] currContents = Utils.readContents
-                        (new File(CWD, fileName));
-                if (!Arrays.equals(headBlob.getContents(), currContents)) {
-                    _stagingAreaAdd.put(fileName, blob.getHash());
-                    newBlobFile.createNewFile();
-                    Utils.writeObject(newBlobFile, blob);
-                } else if (_stagingAreaRemove.containsKey(fileName)) {
-                    _stagingAreaRemove.remove(fileName);
-                } else if (_stagingAreaAdd.containsKey(fileName)) {
-                    _stagingAreaAdd.remove(fileName);
+    /**
+     * Stage the files at PATHS. A path naming a directory, or ".", stands
+     * for every file beneath it. Paths are normalized as by workingPath,
+     * so "d/", "./f" and "d/../f" name what they do to a shell. Files are
+     * hashed and stored in parallel, and the staging area is written once
+     * at the end.
+     * @param paths Paths of files and directories to add.
+     */
+    public void add(String... paths) {
+        ArrayList<String> files = new ArrayList<>();
+        for (String operand : paths) {
+            String path = workingPath(operand);
+            if (path == null) {
+                System.out.println("Path is outside the working tree.");
+                return;
+            }
+            File file = path.isEmpty() ? CWD : new File(CWD, path);
+            if (file.isDirectory() && working() != null) {
+                String prefix = path.isEmpty() ? "" : path + "/";
+                for (String fileName : working().paths()) {
+                    if (fileName.startsWith(prefix)
+                            && !unchangedSinceStaged(fileName)) {
+                        files.add(fileName);
+                    }
                 }
+            } else if (file.isDirectory()) {
+                workingFiles(file, path.isEmpty() ? "" : path + "/", files);
+            } else if (file.isFile() || _stagingAreaRemove.containsKey(path)) {
+                files.add(path);
             } else {
-                _stagingAreaAdd.put(fileName, blob.getHash());
-                Utils.writeObject(newBlobFile, blob);
-            }
-            Utils.writeObject(STAGING_ADD, _stagingAreaAdd);
-            Utils.writeObject(STAGING_REMOVE, _stagingAreaRemove);
-        } else if (_stagingAreaRemove.containsKey(fileName)) {
-            Blob removedBlob = Utils.readObject
-                    (Utils.join(BLOB_DIR, _stagingAreaRemove.get(fileName)),
-                            Blob.class);
-            Utils.writeContents(new File(CWD, fileName),
-                    removedBlob.getContents());
+                System.out.println("File does not exist.");
+                return;
+            }
+        }
+
+        Set<ObjectId> saved = ConcurrentHashMap.newKeySet();
+        ObjectId[] hashes = files.parallelStream().map(fileName -> {
+            if (!new File(CWD, fileName).isFile()) {
+                return null;
+            }
+            Blob blob = new Blob(fileName);
+            if (saved.add(blob.getHash())) {
+                Repo.local().saveObject(BLOB_DIR, blob.getHash(), blob);
+            }
+            return blob.getHash();
+        }).toArray(ObjectId[]::new);
+
+        for (int i = 0; i < hashes.length; i += 1) {
+            stage(files.get(i), hashes[i]);
+            if (working() != null && hashes[i] != null) {
+                working().remember(files.get(i), hashes[i]);
+            }
+        }
+        Repo.local().replaceObject(STAGING_ADD, _stagingAreaAdd);
+        Repo.local().replaceObject(STAGING_REMOVE, _stagingAreaRemove);
+        if (working() != null) {
+            working().save();
+        }
+    }
+
+    /**
+     * Determine if adding the working file FILENAME would leave the
+     * staging area as it is, judging by the monitor's record of it alone.
+     * @param fileName Path of a working file.
+     * @return boolean if the file is unchanged since last hashed and its
+     *         hash is already what is staged or committed.
+     */
+    private boolean unchangedSinceStaged(String fileName) {
+        ObjectId hash = working().knownHash(fileName);
+        if (hash == null) {
+            return false;
+        } else if (_stagingAreaAdd.containsKey(fileName)) {
+            return hash.equals(_stagingAreaAdd.get(fileName));
+        }
+        return !_stagingAreaRemove.containsKey(fileName)
+                && hash.equals(_head.getFile(fileName));
+    }
+
+    /**
+     * Returns the working files as last reported by the monitor, querying
+     * it the first time.
+     * @return Working state, or null if no monitor is running.
+     */
+    private WorkingState working() {
+        if (!_workingQueried) {
+            _workingQueried = true;
+            _working = WorkingState.query(GITLET_DIR, _sparse);
+        }
+        return _working;
+    }
+
+    /**
+     * Determine if there is a working file at PATH, asking the monitor
+     * where one is running.
+     * @param path Path of file.
+     * @return boolean if the file is present.
+     */
+    private boolean workingFileExists(String path) {
+        if (working() == null || !_sparse.covers(path)) {
+            return new File(CWD, path).isFile();
+        }
+        return working().contains(path);
+    }
+
+    /**
+     * Returns the hash of the present working file at PATH, which the
+     * monitor may already know.
+     * @param path Path of file.
+     * @return Blob ID of its contents.
+     */
+    private ObjectId workingHash(String path) {
+        if (working() == null || !_sparse.covers(path)) {
+            return ObjectId.hash(Utils.readContents(new File(CWD, path)));
+        }
+        return working().hash(path);
+    }
+
+    /**
+     * Watch the working tree for changes until stopped, so that status,
+     * add and checks for untracked files look only at the paths changed
+     * since they last ran.
+     * @throws IOException If the working tree cannot be watched.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void monitor() throws IOException, InterruptedException {
+        if (!GITLET_DIR.exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            return;
+        }
+        new Monitor(CWD, GITLET_DIR).run();
+    }
+
+    /**
+     * Update the staging area for the file FILENAME, which has been stored
+     * as blob HASH, or restore it if it is missing from the working
+     * directory and staged for removal.
+     * @param fileName Path of file.
+     * @param hash ID of file's blob, or null if the file is missing.
+     */
+    private void stage(String fileName, ObjectId hash) {
+        if (hash == null) {
+            Blob removedBlob = Utils.readObject(BLOB_DIR,
+                    _stagingAreaRemove.get(fileName), Blob.class);
+            writeWorkingFile(fileName, removedBlob.getContents());
             _stagingAreaRemove.remove(fileName);
-            Utils.writeObject(new File(".gitlet/staging/remove"),
-                    _stagingAreaRemove);
+            return;
+        }
+        displace(fileName);
+        ObjectId headBlobID = _head.getFile(fileName);
+        if (headBlobID != null) {
+            if (!headBlobID.equals(hash)) {
+                _stagingAreaAdd.put(fileName, hash);
+            } else if (_stagingAreaRemove.containsKey(fileName)) {
+                _stagingAreaRemove.remove(fileName);
+            } else if (_stagingAreaAdd.containsKey(fileName)) {
+                _stagingAreaAdd.remove(fileName);
+            }
         } else {
-            System.out.println("File does not exist.");
+            _stagingAreaAdd.put(fileName, hash);
+        }
+    }
+
+    /**
+     * Stage the removal of the tracked files that the file FILENAME, being
+     * staged, replaces: those beneath it, where it was a directory, and
+     * those at its ancestors, where they were files. Additions staged at
+     * those paths are dropped, so a commit never holds a file and a
+     * directory of the same name.
+     * @param fileName Path of file.
+     */
+    private void displace(String fileName) {
+        String prefix = fileName + "/";
+        _stagingAreaAdd.subMap(prefix, fileName + "0").clear();
+        TreeMap<String, ObjectId> beneath = new TreeMap<>();
+        Directory.flatten(_head.getTree(), "", beneath, path ->
+                path.startsWith(prefix)
+                        || path.endsWith("/") && prefix.startsWith(path));
+        for (Map.Entry<String, ObjectId> entry : beneath.entrySet()) {
+            _stagingAreaRemove.put(entry.getKey(), entry.getValue());
+        }
+        for (int slash = fileName.indexOf('/'); slash >= 0;
+             slash = fileName.indexOf('/', slash + 1)) {
+            String parent = fileName.substring(0, slash);
+            _stagingAreaAdd.remove(parent);
+            ObjectId headID = _head.getFile(parent);
+            if (headID != null) {
+                _stagingAreaRemove.put(parent, headID);
+            }
         }
     }
 
-    @SuppressWarnings("unchecked")
     public void commit(String commitMsg) throws IOException {
+        commit(commitMsg, null);
+    }
+
+    /**
+     * Commit the staged changes with message COMMITMSG, as the merge of
+     * MERGEDHEAD into the current branch if it is not null. All parents
+     * are added before the commit is stored, so it is written just once.
+     * @param commitMsg Commit message.
+     * @param mergedHead Head of the branch merged in, or null.
+     * @throws IOException If the commit cannot be stored.
+     */
+    private void commit(String commitMsg, ObjectId mergedHead)
+            throws IOException {
         if (commitMsg.length() == 0) {
             System.out.println("Please enter a commit message.");
             return;
@@ -199,68 +480,420 @@ public class Tree {
             System.out.println("No changes added to the commit");
             return;
         }
-        TreeMap<String, String> filesCopy = (TreeMap<String, String>)
-                _head.getFiles().clone();
-        if (_stagingAreaAdd != null && !_stagingAreaAdd.isEmpty()) {
-            for (String toAdd : _stagingAreaAdd.keySet()) {
-                filesCopy.put(toAdd, _stagingAreaAdd.get(toAdd));
-            }
-        }
-        if (_stagingAreaRemove != null && !_stagingAreaRemove.isEmpty()) {
-            for (String toRemove : _stagingAreaRemove.keySet()) {
-                filesCopy.remove(toRemove);
-            }
+        TreeMap<String, ObjectId> changes = new TreeMap<>(_stagingAreaAdd);
+        for (String toRemove : _stagingAreaRemove.keySet()) {
+            changes.put(toRemove, null);
         }
+        ObjectId newTree = Directory.update(_head.getTree(), changes);
 
-        DateFormat df = new SimpleDateFormat("EE MMM dd HH:mm:ss yyyy Z");
-        df.setTimeZone(TimeZone.getTimeZone("America/Anchorage"));
-        String dStr = df.format(new Date());
-        Commit newCommit = new Commit(commitMsg, dStr);
+        Instant now = Instant.now();
+        Commit newCommit = new Commit(commitMsg, now.toEpochMilli(),
+                ZoneId.systemDefault().getRules().getOffset(now)
+                        .getTotalSeconds());
         newCommit.addParent(_head.getID());
-        newCommit.setFiles(filesCopy);
+        if (mergedHead != null) {
+            newCommit.addParent(mergedHead);
+        }
+        newCommit.setTree(newTree);
         serializeCommit(newCommit);
+        Repo.local().recordChangedPaths(newCommit.getID(), changes.keySet());
         _head = newCommit;
 
-        File currBranchFile = new File(".gitlet/branches/current");
+        File currBranchFile = CURRENT_BRANCH;
         _currentBranch.addCommit(newCommit);
-        Utils.writeObject(currBranchFile, _currentBranch);
+        Repo.local().replaceObject(currBranchFile, _currentBranch);
 
         _stagingAreaAdd.clear();
         _stagingAreaRemove.clear();
 
-        Utils.writeObject(STAGING_ADD, _stagingAreaAdd);
-        Utils.writeObject(STAGING_REMOVE, _stagingAreaRemove);
+        Repo.local().replaceObject(STAGING_ADD, _stagingAreaAdd);
+        Repo.local().replaceObject(STAGING_REMOVE, _stagingAreaRemove);
+    }
+
+    /**
+     * Print the current branch's history from its head back, honoring the
+     * paging options "-n COUNT" and "--skip COUNT". Only the commits shown
+     * are read, and printing stops once output is no longer being read.
+     * The options "--since TIME" and "--until TIME" show only the commits
+     * made in that window, found in the commit table's time index.
+     * OPTIONS may end with "--" and a path, to show only the commits that
+     * changed that file from their first parents; commits whose
+     * changed-path filters rule the file out are skipped without being
+     * read.
+     * @param options Options, then optionally "--" and a path.
+     * @throws IOException If the commit table or changed-path filters
+     *                     cannot be read.
+     */
+    public void log(String... options) throws IOException {
+        int dashes = Arrays.asList(options).indexOf("--");
+        String path = null;
+        if (dashes >= 0) {
+            if (dashes + 2 != options.length) {
+                System.out.println("Incorrect operands.");
+                return;
+            }
+            path = options[dashes + 1];
+            options = Arrays.copyOfRange(options, 0, dashes);
+        }
+        long[] page = parsePage(options);
+        if (page == null) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        ObjectIdSet commits = _currentBranch.getCommits();
+        int head = commits.indexOf(_currentBranch.getHeadCommit());
+        boolean timed = page[2] != Long.MIN_VALUE
+                || page[3] != Long.MAX_VALUE;
+        if (path == null && !timed) {
+            PrintWriter out = bufferedOutput();
+            for (long k = head - page[1], shown = 0; k >= 0
+                    && shown < page[0] && !out.checkError();
+                    k -= 1, shown += 1) {
+                Utils.readObject(COMMITS_DIR, commits.get((int) k),
+                        Commit.class).writeLog(out);
+                out.print('\n');
+            }
+            out.flush();
+            return;
+        }
+
+        HashSet<ObjectId> window = null;
+        if (timed) {
+            CommitTable table = Repo.local().commitTable();
+            window = new HashSet<>();
+            for (int k : table.madeBetween(page[2], page[3])) {
+                window.add(table.id(k));
+            }
+        }
+        ChangedPaths filters = path == null ? null
+                : Repo.local().changedPaths();
+        ObjectId pathID = path == null ? null : ObjectId.hash(path);
+        PrintWriter out = bufferedOutput();
+        for (long k = head, seen = 0; k >= 0 && seen < page[0] + page[1]
+                && !out.checkError(); k -= 1) {
+            ObjectId id = commits.get((int) k);
+            if (window != null && !window.contains(id)
+                    || path != null
+                    && !filters.mightHaveChanged(id, pathID)) {
+                continue;
+            }
+            Commit commit = Utils.readObject(COMMITS_DIR, id, Commit.class);
+            if (path != null && !changes(commit, path)) {
+                continue;
+            }
+            seen += 1;
+            if (seen > page[1]) {
+                commit.writeLog(out);
+                out.print('\n');
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Determine if COMMIT changed the file at PATH from its first parent.
+     * @param commit Commit.
+     * @param path Path of file.
+     * @return boolean if the file was added, removed or modified.
+     */
+    private static boolean changes(Commit commit, String path) {
+        List<ObjectId> parents = commit.getParents();
+        ObjectId before = parents.isEmpty() ? null
+                : Utils.readObject(COMMITS_DIR, parents.get(0),
+                        Commit.class).getFile(path);
+        return !Objects.equals(before, commit.getFile(path));
+    }
+
+    /**
+     * Print every commit ever made, in the order they were stored,
+     * honoring the same options as log. Commits are printed from the
+     * commit table, without reading any of them, and skipped commits are
+     * not looked at. With "--since" or "--until", the commits in the
+     * window are printed most recent first.
+     * @param options Paging and time options.
+     * @throws IOException If the commit table cannot be read.
+     */
+    public void globalLog(String... options) throws IOException {
+        long[] page = parsePage(options);
+        if (page == null) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        CommitTable table = Repo.local().commitTable();
+        int[] records = page[2] == Long.MIN_VALUE && page[3] == Long.MAX_VALUE
+                ? null : table.madeBetween(page[2], page[3]);
+        int size = records == null ? table.size() : records.length;
+        PrintWriter out = bufferedOutput();
+        long end = Math.min(size, page[1] + page[0]);
+        for (long k = page[1]; k < end && !out.checkError(); k += 1) {
+            table.writeLog(records == null ? (int) k : records[(int) k],
+                    out);
+            out.print('\n');
+        }
+        out.flush();
     }
 
-    public void log() {
-        LinkedHashMap<String, String> commits = _currentBranch.getCommits();
-        List<String> allKeys = new ArrayList<>(commits.keySet());
-        Collections.reverse(allKeys);
-        boolean foundHead = false;
-        for (String sha1 : allKeys) {
-            Commit currCommit = Utils.readObject(Utils.join(COMMITS_DIR, sha1),
+    /**
+     * Print each line of the file FILENAME in the head commit, preceded
+     * by the abbreviated ID and date of the commit that last changed it.
+     * @param fileName Path of file.
+     */
+    public void blame(String fileName) {
+        ObjectId[] blame = Blame.attribute(_head.getID(), fileName);
+        if (blame == null) {
+            System.out.println("File does not exist in that commit.");
+            return;
+        }
+        List<String> lines = Blame.lines(_head.getFile(fileName));
+        String width = Integer.toString(Integer.toString(lines.size())
+                .length());
+        PrintWriter out = bufferedOutput();
+        for (int i = 0; i < lines.size() && !out.checkError(); i += 1) {
+            Commit commit = Utils.readObject(COMMITS_DIR, blame[i],
                     Commit.class);
-            if (_currentBranch.getHeadCommit().equals(sha1)) {
-                foundHead = true;
+            out.printf("%s (%s %" + width + "d) %s%n",
+                    blame[i].toString().substring(0, SHORT_ID_LENGTH),
+                    commit.getTimeStamp(), i + 1, lines.get(i));
+        }
+        out.flush();
+    }
+
+    /**
+     * Print in unified format the differences between two commits, or
+     * between a commit and the working directory. OPTIONS are up to two
+     * commit IDs, defaulting to the head commit and the working directory,
+     * optionally followed by "--" and a single path to compare. Only
+     * paths whose blob IDs differ are read and diffed, in parallel.
+     * @param options Commits, then optionally "--" and a path.
+     */
+    public void diff(String... options) {
+        ArrayList<Commit> commits = new ArrayList<>();
+        String onlyPath = null;
+        for (int i = 0; i < options.length; i += 1) {
+            if (options[i].equals("--")) {
+                if (i + 2 != options.length) {
+                    System.out.println("Incorrect operands.");
+                    return;
+                }
+                onlyPath = options[i + 1];
+                break;
+            }
+            ObjectId id = findFullID(options[i]);
+            if (id == null
+                    || !Utils.join(COMMITS_DIR, id.toString()).exists()) {
+                System.out.println("No commit with that id exists.");
+                return;
+            }
+            commits.add(Utils.readObject(COMMITS_DIR, id, Commit.class));
+        }
+        if (commits.size() > 2) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        Commit from = commits.isEmpty() ? _head : commits.get(0);
+        Commit to = commits.size() == 2 ? commits.get(1) : null;
+
+        Collection<String> candidates;
+        if (onlyPath != null) {
+            candidates = List.of(onlyPath);
+        } else if (to != null) {
+            candidates = Directory.changedPaths(from.getTree(), to.getTree());
+        } else {
+            TreeSet<String> tracked = new TreeSet<>(from.getFiles().keySet());
+            tracked.addAll(_stagingAreaAdd.keySet());
+            candidates = tracked;
+        }
+        TreeMap<String, String> renames = onlyPath != null ? new TreeMap<>()
+                : diffRenames(candidates, from, to);
+        Set<String> sources = new TreeSet<>(renames.values());
+        PrintWriter out = bufferedOutput();
+        candidates.parallelStream().filter(path -> !sources.contains(path))
+                .map(path -> diffPath(renames.getOrDefault(path, path), path,
+                        from, to))
+                .forEachOrdered(out::print);
+        out.flush();
+    }
+
+    /**
+     * Returns the renames among the CANDIDATES paths from commit FROM to
+     * commit TO, or to the working directory if TO is null.
+     * @param candidates Paths that may differ.
+     * @param from Old commit.
+     * @param to New commit, or null.
+     * @return Old path of each renamed file, by new path.
+     */
+    private TreeMap<String, String> diffRenames(Collection<String> candidates,
+                                                Commit from, Commit to) {
+        TreeMap<String, ObjectId> deleted = new TreeMap<>();
+        TreeMap<String, ObjectId> added = new TreeMap<>();
+        for (String path : candidates) {
+            ObjectId before = from.getFile(path);
+            if (to != null) {
+                ObjectId after = to.getFile(path);
+                if (before != null && after == null) {
+                    deleted.put(path, before);
+                } else if (before == null && after != null) {
+                    added.put(path, after);
+                }
+            } else if (!new File(CWD, path).isFile()) {
+                if (before != null) {
+                    deleted.put(path, before);
+                }
+            } else if (before == null) {
+                added.put(path, ObjectId.hash(
+                        Utils.readContents(new File(CWD, path))));
+            }
+        }
+        if (to != null) {
+            return Renames.detect(deleted, added,
+                path -> Utils.readObject(BLOB_DIR, added.get(path),
+                        Blob.class).getContents());
+        }
+        return Renames.detect(deleted, added,
+                path -> Utils.readContents(new File(CWD, path)));
+    }
+
+    /**
+     * Returns the unified diff of the file at OLDPATH in commit FROM,
+     * which is at PATH in commit TO, or in the working directory if TO is
+     * null. Versions are compared by blob ID first, and read only if they
+     * differ.
+     * @param oldPath Path of file in FROM.
+     * @param path Path of file in TO.
+     * @param from Old commit.
+     * @param to New commit, or null.
+     * @return Diff text, or "" if the file is unchanged.
+     */
+    private String diffPath(String oldPath, String path, Commit from,
+                            Commit to) {
+        ObjectId before = from.getFile(oldPath);
+        boolean renamed = !oldPath.equals(path);
+        List<String> afterLines = null;
+        if (to == null) {
+            File file = new File(CWD, path);
+            if (file.isFile()) {
+                byte[] contents = Utils.readContents(file);
+                if (ObjectId.hash(contents).equals(before) && !renamed) {
+                    return "";
+                }
+                afterLines = Blame.lines(contents);
+            } else if (before == null) {
+                return "";
             }
-            if (foundHead) {
-                System.out.println(currCommit.toString());
+        } else {
+            ObjectId after = to.getFile(path);
+            if (Objects.equals(before, after) && !renamed) {
+                return "";
             }
+            afterLines = after == null ? null : Blame.lines(after);
         }
+        return UnifiedDiff.format(oldPath, path,
+                before == null ? null : Blame.lines(before), afterLines);
     }
 
-    public void globalLog() {
-        Set<String> commitIDs = new HashSet<>();
+    /**
+     * Parse the paging and time options of log and global-log.
+     * @param options Options "-n COUNT", "--skip COUNT", "--since TIME"
+     *                and "--until TIME", or their forms "-nCOUNT",
+     *                "--max-count=COUNT", "--skip=COUNT", "--since=TIME"
+     *                and "--until=TIME". TIME is as for parseTime.
+     * @return Number of commits to show, number to skip, and earliest
+     *         and latest times of commits, or null if OPTIONS are
+     *         malformed.
+     */
+    private static long[] parsePage(String[] options) {
+        long[] page = {Integer.MAX_VALUE, 0, Long.MIN_VALUE, Long.MAX_VALUE};
+        for (int i = 0; i < options.length; i += 1) {
+            String option = options[i];
+            int which = -1;
+            String value = null;
+            for (int k = 0; k < PAGE_OPTIONS.length; k += 1) {
+                String name = PAGE_OPTIONS[k];
+                if (option.equals(name)) {
+                    if (i + 1 == options.length) {
+                        return null;
+                    }
+                    which = k;
+                    i += 1;
+                    value = options[i];
+                } else if (option.startsWith(name + "=")) {
+                    which = k;
+                    value = option.substring(name.length() + 1);
+                }
+            }
+            if (which == -1 && option.startsWith("--max-count=")) {
+                which = 0;
+                value = option.substring("--max-count=".length());
+            } else if (which == -1 && option.startsWith("-n")) {
+                which = 0;
+                value = option.substring(2);
+            } else if (which == -1) {
+                return null;
+            }
+            if (which >= 2) {
+                Long time = parseTime(value, which == 3);
+                if (time == null) {
+                    return null;
+                }
+                page[which] = time;
+                continue;
+            }
+            try {
+                page[which] = Integer.parseInt(value);
+            } catch (NumberFormatException excp) {
+                return null;
+            }
+            if (page[which] < 0) {
+                return null;
+            }
+        }
+        return page;
+    }
 
-        for (File commitFile : COMMITS_DIR.listFiles()) {
-            Commit currCommit = Utils.readObject(commitFile, Commit.class);
-            if (!commitIDs.contains(currCommit.getID())) {
-                commitIDs.add(currCommit.getID());
-                System.out.println(currCommit);
+    /**
+     * Parse the time VALUE, given as a date such as "2024-05-01", a date
+     * and time such as "2024-05-01T13:30" or "2024-05-01T13:30:00", both
+     * taken in the local zone, or a date and time with an offset such as
+     * "2024-05-01T13:30:00-08:00". A bare date means its first moment, or
+     * its last if END.
+     * @param value Time to parse.
+     * @param end Whether a bare date stands for its end.
+     * @return Time, in milliseconds since the epoch, or null if VALUE is
+     *         malformed.
+     */
+    private static Long parseTime(String value, boolean end) {
+        ZoneId zone = ZoneId.systemDefault();
+        try {
+            if (value.indexOf('T') < 0) {
+                LocalDate date = LocalDate.parse(value);
+                if (end) {
+                    return date.plusDays(1).atStartOfDay(zone).toInstant()
+                            .toEpochMilli() - 1;
+                }
+                return date.atStartOfDay(zone).toInstant().toEpochMilli();
             }
+            try {
+                return OffsetDateTime.parse(value).toInstant()
+                        .toEpochMilli();
+            } catch (DateTimeParseException excp) {
+                return LocalDateTime.parse(value).atZone(zone).toInstant()
+                        .toEpochMilli();
+            }
+        } catch (DateTimeParseException excp) {
+            return null;
         }
     }
 
+    /**
+     * Returns a writer that buffers output to standard output. Callers
+     * must flush it when done.
+     * @return Buffered writer on standard output.
+     */
+    static PrintWriter bufferedOutput() {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter
+                (System.out, StandardCharsets.UTF_8), OUTPUT_BUFFER_SIZE));
+    }
+
     public void checkout(String str) {
         if (str.contains("++")) {
             System.out.println("Incorrect operands.");
@@ -270,51 +903,36 @@ public class Tree {
             checkoutBranch(str);
         } else if (str.indexOf('-') == 0) {
             String fileName = str.substring(3);
-            TreeMap<String, String> headFiles = _head.getFiles();
-            File f = new File(CWD, fileName);
-            try {
-                String blobID = headFiles.get(fileName);
-                File prevFile = new File(".gitlet/blobs", blobID);
-                Blob fileBlob = Utils.readObject(prevFile, Blob.class);
-                Utils.writeContents(f, fileBlob.getContents());
-            } catch (Exception e) {
+            ObjectId blobID = _head.getFile(fileName);
+            if (blobID == null) {
                 System.out.println("File does not exist in that commit.");
                 return;
             }
+            Blob fileBlob = Utils.readObject(BLOB_DIR, blobID, Blob.class);
+            writeWorkingFile(fileName, fileBlob.getContents());
         } else {
-            String commitID = str.substring(0, str.indexOf("-") - 1);
-            commitID = findFullID(commitID);
+            ObjectId commitID = findFullID(str.substring(0,
+                    str.indexOf("-") - 1));
             String fileName = str.substring(str.indexOf("-") + 3);
-            if (!_currentBranch.getCommits().containsKey(commitID)) {
+            if (commitID == null
+                    || !_currentBranch.getCommits().contains(commitID)) {
                 System.out.println("No commit with that id exists.");
                 return;
             }
-            File commitFile = Utils.join(COMMITS_DIR, commitID);
-            Commit c = Utils.readObject(commitFile, Commit.class);
-            if (!c.getFiles().containsKey(fileName)) {
+            Commit c = Utils.readObject(COMMITS_DIR, commitID, Commit.class);
+            ObjectId blobID = c.getFile(fileName);
+            if (blobID == null) {
                 System.out.println("File does not exist in that commit.");
                 return;
             }
-            String blobID = c.getFiles().get(fileName);
-            File blobFile = Utils.join(BLOB_DIR, blobID);
-            Blob blob = Utils.readObject(blobFile, Blob.class);
-            Utils.writeContents(Utils.join(CWD, fileName),
-                    blob.getContents());
+            Blob blob = Utils.readObject(BLOB_DIR, blobID, Blob.class);
+            writeWorkingFile(fileName, blob.getContents());
         }
     }
 
     private void checkoutBranch(String branchName) {
         boolean found = false;
         String branchSha1 = "";
-        for (File file : CWD.listFiles()) {
-            String fileName = file.getName();
-            if (!_head.getFiles().containsKey(fileName)
-                    && fileName.charAt(0) != '.' && file.isFile()) {
-                System.out.println("There is an untracked file in the way; "
-                        + "delete it, or add and commit it first.");
-                return;
-            }
-        }
         for (File currFile : BRANCHES_DIR.listFiles()) {
             Branch tempBranch = Utils.readObject(currFile, Branch.class);
             if (tempBranch.getName().equals(branchName)) {
@@ -331,30 +949,28 @@ public class Tree {
             System.out.println("No need to checkout the current branch.");
             return;
         }
-        File newBranchFile = new File(".gitlet/branches", branchSha1);
+        if (Repo.isCheckedOut(new File(BRANCHES_DIR, branchSha1))) {
+            System.out.println("Branch is checked out in another worktree.");
+            return;
+        }
+        File newBranchFile = new File(BRANCHES_DIR, branchSha1);
         Branch newBranch = Utils.readObject(newBranchFile, Branch.class);
-        String newHeadStr = newBranch.getHeadCommit();
-        Commit newHead = Utils.readObject(new File(".gitlet/commits",
-                newHeadStr), Commit.class);
-        for (String fileName : newHead.getFiles().keySet()) {
-            String sha1 = newHead.getFiles().get(fileName);
-            Blob blob = Utils.readObject(new File(".gitlet/blobs",
-                    sha1), Blob.class);
-            Utils.writeContents(new File(CWD, fileName),
-                    blob.getContents());
-        }
-        for (String fileName : _head.getFiles().keySet()) {
-            if (!newHead.getFiles().containsKey(fileName)) {
-                File toDel = new File(CWD, fileName);
-                if (toDel.exists()) {
-                    toDel.delete();
-                }
-            }
+        ObjectId newHeadStr = newBranch.getHeadCommit();
+        Commit newHead = Utils.readObject(COMMITS_DIR, newHeadStr,
+                Commit.class);
+        TreeSet<String> changed = Directory.changedPaths(_head.getTree(),
+                newHead.getTree(), _sparse::covers);
+        if (untrackedInTheWay(changed, newHead)
+                || clashInTheWay(changed, newHead)) {
+            System.out.println("There is an untracked file in the way; "
+                    + "delete it, or add and commit it first.");
+            return;
         }
-        Utils.writeObject(new File(".gitlet/branches",
-                _currentBranch.getID()), _currentBranch);
-        Utils.writeObject(new File(".gitlet/branches/current"), newBranch);
-        File curr = new File(".gitlet/branches", newBranch.getID());
+        checkoutPaths(changed, newHead);
+        Repo.local().replaceObject(new File(BRANCHES_DIR,
+                _currentBranch.getID().toString()), _currentBranch);
+        Repo.local().replaceObject(CURRENT_BRANCH, newBranch);
+        File curr = new File(BRANCHES_DIR, newBranch.getID().toString());
         if (curr.exists()) {
             curr.delete();
         }
@@ -363,43 +979,292 @@ public class Tree {
         clearStagingArea();
     }
 
-    private void clearStagingArea() {
-        _stagingAreaAdd.clear();
-        _stagingAreaRemove.clear();
-
-        Utils.writeObject(new File(".gitlet/staging/add"),
-                _stagingAreaAdd);
-        Utils.writeObject(new File(".gitlet/staging/remove"),
-                _stagingAreaRemove);
+    /**
+     * Determine whether checking out any of PATHS from TARGET would
+     * overwrite a working file that the head commit does not track.
+     * @param paths Paths that will be written or deleted.
+     * @param target Commit being checked out.
+     * @return boolean if an untracked file is in the way.
+     */
+    private boolean untrackedInTheWay(Collection<String> paths,
+                                      Commit target) {
+        for (String path : paths) {
+            if (target.getFile(path) != null && _head.getFile(path) == null
+                    && workingFileExists(path)) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private String findFullID(String commitID) {
-        if (commitID.length() == MAX_COMMIT_ID_LENGTH) {
-            return commitID;
+    /**
+     * Determine whether checking out PATHS from TARGET would have to put
+     * a file where the working tree has a directory holding files that
+     * are not being deleted, or a directory where it has a file that is
+     * not being deleted. Checking this first means checkoutPaths never
+     * fails part way through.
+     * @param paths Paths that will be written or deleted.
+     * @param target Commit being checked out.
+     * @return boolean if such a file is in the way.
+     */
+    private boolean clashInTheWay(Collection<String> paths, Commit target) {
+        HashSet<String> deleted = new HashSet<>();
+        for (String path : paths) {
+            if (_sparse.covers(path) && target.getFile(path) == null) {
+                deleted.add(path);
+            }
         }
-        int length = commitID.length();
-        for (File commitFile : COMMITS_DIR.listFiles()) {
-            String subName = commitFile.getName().substring(0, length);
-            if (subName.equals(commitID)) {
-                return commitFile.getName();
+        for (String path : paths) {
+            if (!_sparse.covers(path) || target.getFile(path) == null) {
+                continue;
+            }
+            File file = new File(CWD, path);
+            if (file.isDirectory() && holdsOthers(file, path + "/", deleted)) {
+                return true;
+            }
+            for (int slash = path.indexOf('/'); slash >= 0;
+                 slash = path.indexOf('/', slash + 1)) {
+                String parent = path.substring(0, slash);
+                File parentFile = new File(CWD, parent);
+                if (parentFile.exists() && !parentFile.isDirectory()
+                        && !deleted.contains(parent)) {
+                    return true;
+                }
             }
         }
-        return "";
+        return false;
     }
 
-    public void removeFile(String fileName) {
-        if (_stagingAreaAdd.containsKey(fileName)) {
-            _stagingAreaAdd.remove(fileName);
-        } else if (_head.getFiles().containsKey(fileName)) {
-            _stagingAreaRemove.put(fileName, _head.getFiles().get(fileName));
-            Utils.join(CWD, fileName).delete();
-        } else {
-            System.out.println("No reason to remove the file.");
-            return;
+    /**
+     * Determine whether the working directory DIR holds anything but
+     * directories and the files whose paths are in DELETED.
+     * @param dir Working directory.
+     * @param prefix Path of DIR, ending in '/'.
+     * @param deleted Paths of files about to be deleted.
+     * @return boolean if DIR would not be empty once they are deleted.
+     */
+    private static boolean holdsOthers(File dir, String prefix,
+                                       Set<String> deleted) {
+        File[] entries = dir.listFiles();
+        for (File entry : entries == null ? new File[0] : entries) {
+            String path = prefix + entry.getName();
+            if (entry.isDirectory() && !Files.isSymbolicLink(entry.toPath())) {
+                if (holdsOthers(entry, path + "/", deleted)) {
+                    return true;
+                }
+            } else if (!deleted.contains(path)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        Utils.writeObject(STAGING_ADD, _stagingAreaAdd);
-        Utils.writeObject(STAGING_REMOVE, _stagingAreaRemove);
+    /**
+     * Make the working files at PATHS match TARGET, writing the ones it
+     * tracks and deleting the rest. Every deletion comes first, deepest
+     * path first, pruning the directories it empties, so that a file may
+     * replace a directory and a directory a file. Paths outside the
+     * sparse-checkout patterns are left alone. Callers check
+     * clashInTheWay first.
+     * @param paths Paths to update.
+     * @param target Commit being checked out.
+     */
+    private void checkoutPaths(Collection<String> paths, Commit target) {
+        TreeSet<String> deleted = new TreeSet<>(Collections.reverseOrder());
+        TreeMap<String, ObjectId> written = new TreeMap<>();
+        for (String path : paths) {
+            if (!_sparse.covers(path)) {
+                continue;
+            }
+            ObjectId blobID = target.getFile(path);
+            if (blobID == null) {
+                deleted.add(path);
+            } else {
+                written.put(path, blobID);
+            }
+        }
+        for (String path : deleted) {
+            deleteWorkingFile(path);
+        }
+        for (Map.Entry<String, ObjectId> entry : written.entrySet()) {
+            File file = new File(CWD, entry.getKey());
+            if (file.isDirectory()) {
+                deleteEmptyDirs(file);
+            }
+            Blob blob = Utils.readObject(BLOB_DIR, entry.getValue(),
+                    Blob.class);
+            writeWorkingFile(entry.getKey(), blob.getContents());
+        }
+    }
+
+    /**
+     * Delete DIR, which holds nothing but directories.
+     * @param dir Directory to delete.
+     */
+    private static void deleteEmptyDirs(File dir) {
+        File[] entries = dir.listFiles();
+        for (File entry : entries == null ? new File[0] : entries) {
+            deleteEmptyDirs(entry);
+        }
+        dir.delete();
+    }
+
+    /**
+     * Returns the file at PATH, taken relative to the working directory
+     * unless it is absolute.
+     * @param path Path given by the user, with '/' separators.
+     * @return File.
+     */
+    static File resolve(String path) {
+        File file = new File(path.replace("/", File.separator));
+        return file.isAbsolute() ? file : new File(CWD, file.getPath());
+    }
+
+    /**
+     * Returns the path, relative to the working directory and with '/'
+     * separators, that OPERAND names: "." and ".." are resolved, repeated
+     * and trailing separators dropped, and absolute paths accepted if
+     * they lie within the working tree.
+     * @param operand Path given by the user.
+     * @return Path of file or directory, "" for the working directory
+     *         itself, or null if OPERAND lies outside it.
+     */
+    static String workingPath(String operand) {
+        Path root = CWD.toPath().toAbsolutePath().normalize();
+        Path path = root.resolve(resolve(operand).toPath()).normalize();
+        if (!path.startsWith(root)) {
+            return null;
+        }
+        return root.relativize(path).toString()
+                .replace(File.separator, "/");
+    }
+
+    /**
+     * Write CONTENTS to the working file at PATH, creating any missing
+     * parent directories.
+     * @param path Path of file relative to the working directory.
+     * @param contents New contents of file.
+     */
+    private void writeWorkingFile(String path, Object contents) {
+        File file = new File(CWD, path);
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, contents);
+    }
+
+    /**
+     * Delete the working file at PATH, along with any parent directories
+     * left empty.
+     * @param path Path of file relative to the working directory.
+     */
+    private void deleteWorkingFile(String path) {
+        File file = new File(CWD, path);
+        if (!file.isDirectory()) {
+            file.delete();
+        }
+        File dir = file.getParentFile();
+        while (!dir.equals(CWD) && dir.isDirectory() && dir.delete()) {
+            dir = dir.getParentFile();
+        }
+    }
+
+    /**
+     * Add the paths of all plain files beneath DIR to RESULT, skipping
+     * files and directories whose names start with '.' and directories
+     * holding working trees of their own.
+     * @param dir Directory to list.
+     * @param prefix Path of DIR, ending in '/', or "" for CWD.
+     * @param result List of working file paths to fill in.
+     */
+    private static void workingFiles(File dir, String prefix,
+                                     List<String> result) {
+        workingFiles(dir, prefix, result, path -> true);
+    }
+
+    /**
+     * Add the paths of the plain files beneath DIR that WITHIN accepts to
+     * RESULT, entering only the directories whose paths, ending in '/',
+     * it accepts.
+     * @param dir Directory to list.
+     * @param prefix Path of DIR, ending in '/', or "" for CWD.
+     * @param result List of working file paths to fill in.
+     * @param within Test of the paths of files and directories.
+     */
+    static void workingFiles(File dir, String prefix, List<String> result,
+                             Predicate<String> within) {
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        Arrays.sort(names);
+        for (String name : names) {
+            if (name.charAt(0) == '.') {
+                continue;
+            }
+            File file = new File(dir, name);
+            if (file.isDirectory()) {
+                if (!new File(file, GITLET_DIR.getName()).exists()
+                        && within.test(prefix + name + "/")) {
+                    workingFiles(file, prefix + name + "/", result, within);
+                }
+            } else if (file.isFile() && within.test(prefix + name)) {
+                result.add(prefix + name);
+            }
+        }
+    }
+
+    private void clearStagingArea() {
+        _stagingAreaAdd.clear();
+        _stagingAreaRemove.clear();
+
+        Repo.local().replaceObject(STAGING_ADD, _stagingAreaAdd);
+        Repo.local().replaceObject(STAGING_REMOVE, _stagingAreaRemove);
+    }
+
+    private ObjectId findFullID(String commitID) {
+        if (commitID.length() == HashAlgorithm.current().hexLength()) {
+            return ObjectId.parse(commitID);
+        }
+        for (String commitName : COMMITS_DIR.list()) {
+            if (commitName.startsWith(commitID)) {
+                return ObjectId.parse(commitName);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Unstage or remove the files at PATHS, writing the staging area once.
+     * Nothing is removed if any of PATHS is outside the working tree or
+     * neither staged nor tracked. Paths are normalized as by workingPath.
+     * @param paths Paths of files to remove.
+     */
+    public void removeFile(String... paths) {
+        String[] fileNames = new String[paths.length];
+        for (int i = 0; i < paths.length; i += 1) {
+            fileNames[i] = workingPath(paths[i]);
+            if (fileNames[i] == null) {
+                System.out.println("Path is outside the working tree.");
+                return;
+            }
+        }
+        for (String fileName : fileNames) {
+            if (!_stagingAreaAdd.containsKey(fileName)
+                    && _head.getFile(fileName) == null) {
+                System.out.println("No reason to remove the file.");
+                return;
+            }
+        }
+        for (String fileName : fileNames) {
+            if (_stagingAreaAdd.containsKey(fileName)) {
+                _stagingAreaAdd.remove(fileName);
+            } else {
+                _stagingAreaRemove.put(fileName, _head.getFile(fileName));
+                deleteWorkingFile(fileName);
+            }
+        }
+
+        Repo.local().replaceObject(STAGING_ADD, _stagingAreaAdd);
+        Repo.local().replaceObject(STAGING_REMOVE, _stagingAreaRemove);
     }
 
     public void removeBranch(String branchName) {
@@ -409,9 +1274,14 @@ public class Tree {
             Branch currBranch = Utils.readObject
                     (currBranchFile, Branch.class);
             if (currBranch.getName().equals(branchName)
-                    && currBranchFile.getName().equals("current")) {
+                    && currBranchFile.equals(CURRENT_BRANCH)) {
                 System.out.println("Cannot remove the current branch.");
                 return;
+            } else if (currBranch.getName().equals(branchName)
+                    && Repo.isCheckedOut(currBranchFile)) {
+                System.out.println(
+                        "Branch is checked out in another worktree.");
+                return;
             }
         }
         for (File currBranchFile : allBranchFiles) {
@@ -424,68 +1294,63 @@ public class Tree {
         System.out.println("A branch with that name does not exist.");
     }
 
-    public void reset(String commitID) throws IOException {
-        commitID = findFullID(commitID);
-        if (!Arrays.asList(COMMITS_DIR.list()).contains(commitID)) {
+    public void reset(String commitName) throws IOException {
+        ObjectId commitID = findFullID(commitName);
+        if (commitID == null
+                || !Utils.join(COMMITS_DIR, commitID.toString()).exists()) {
             System.out.println("No commit with that id exists.");
             return;
         }
-        File commitFile = Utils.join(COMMITS_DIR, commitID);
-        Commit commit = Utils.readObject(commitFile, Commit.class);
-
-        for (File file : CWD.listFiles()) {
-            String fileName = file.getName();
-            if (!_head.getFiles().containsKey(fileName)
-                    && !_stagingAreaAdd.containsKey(fileName)
-                    && fileName.charAt(0) != '.' && file.isFile()) {
-                System.out.println("There is an untracked file in the way;"
-                        + " delete it, or add and commit it first.");
-                return;
-            }
-        }
+        resetTo(Utils.readObject(COMMITS_DIR, commitID, Commit.class),
+                Collections.emptySet());
+    }
 
-        ArrayList<String> toDelete = new ArrayList<>();
-        for (File file : CWD.listFiles()) {
-            String fileName = file.getName();
-            if (fileName.charAt(0) != '.' && file.isFile()) {
-                if (!commit.getFiles().containsKey(fileName)) {
-                    toDelete.add(file.getName());
-                } else {
-                    File currBlobFile = Utils.join
-                            (BLOB_DIR, commit.getFiles().get(fileName));
-                    Blob currBlob = Utils.readObject
-                            (currBlobFile, Blob.class);
-                    Utils.writeContents(file, currBlob.getContents());
-                }
+    /**
+     * Check out the files of COMMIT, make it the head of the current
+     * branch and clear the staging area, unless an untracked file is in
+     * the way. Files at OVERWRITABLE, written by a command being undone,
+     * are not counted as in the way.
+     * @param commit Commit to reset to.
+     * @param overwritable Paths that may be overwritten.
+     * @return boolean if the reset was done.
+     */
+    private boolean resetTo(Commit commit, Collection<String> overwritable) {
+        TreeSet<String> changed = Directory.changedPaths(_head.getTree(),
+                commit.getTree(), _sparse::covers);
+        TreeSet<String> unstaged = new TreeSet<>(changed);
+        unstaged.removeAll(_stagingAreaAdd.keySet());
+        unstaged.removeAll(overwritable);
+        for (String fileName : _stagingAreaAdd.keySet()) {
+            if (commit.getFile(fileName) == null) {
+                changed.add(fileName);
             }
         }
-
-        for (String delFileName : toDelete) {
-            File delFile = new File(CWD, delFileName);
-            delFile.delete();
+        if (untrackedInTheWay(unstaged, commit)
+                || clashInTheWay(changed, commit)) {
+            System.out.println("There is an untracked file in the way;"
+                    + " delete it, or add and commit it first.");
+            return false;
         }
 
-        for (String fileName : commit.getFiles().keySet()) {
-            if (!new File(CWD, fileName).exists()) {
-                File newFile = new File(CWD, fileName);
-                newFile.createNewFile();
-                Blob blob = Utils.readObject(Utils.join(BLOB_DIR,
-                        commit.getFiles().get(fileName)), Blob.class);
-                Utils.writeContents(newFile, blob.getContents());
+        checkoutPaths(changed, commit);
+        for (String fileName : sparseFiles(commit).keySet()) {
+            if (!changed.contains(fileName)
+                    && !new File(CWD, fileName).exists()) {
+                checkoutPaths(List.of(fileName), commit);
             }
         }
         _head = commit;
         _currentBranch.setHead(_head.getID());
 
-        Utils.writeObject(Utils.join(BRANCHES_DIR, "current"), _currentBranch);
+        Repo.local().replaceObject(CURRENT_BRANCH, _currentBranch);
 
         _stagingAreaAdd.clear();
         _stagingAreaRemove.clear();
-        Utils.writeObject(STAGING_ADD, _stagingAreaAdd);
-        Utils.writeObject(STAGING_REMOVE, _stagingAreaRemove);
+        Repo.local().replaceObject(STAGING_ADD, _stagingAreaAdd);
+        Repo.local().replaceObject(STAGING_REMOVE, _stagingAreaRemove);
+        return true;
     }
 
-    @SuppressWarnings("unchecked")
     public void branch(String branchName) throws IOException {
         for (File file : BRANCHES_DIR.listFiles()) {
             Branch currBranch = Utils.readObject(file, Branch.class);
@@ -495,32 +1360,41 @@ public class Tree {
             }
         }
         Branch newBranch = new Branch(branchName);
-        newBranch.setCommits((LinkedHashMap<String, String>)
-                _currentBranch.getCommits().clone());
+        newBranch.setCommits(_currentBranch.getCommits().copy());
         newBranch.setHead(_head.getID());
 
-        File newBranchFile = Utils.join(BRANCHES_DIR, newBranch.getID());
+        File newBranchFile = Utils.join(BRANCHES_DIR,
+                newBranch.getID().toString());
         newBranchFile.createNewFile();
 
-        Utils.writeObject(newBranchFile, newBranch);
+        Repo.local().replaceObject(newBranchFile, newBranch);
     }
 
-    public void find(String commitMsg) {
-        boolean found = false;
-        for (File commitFile : COMMITS_DIR.listFiles()) {
-            Commit currCommit = Utils.readObject(commitFile, Commit.class);
-            if (currCommit.getMessage().equals(commitMsg)) {
-                System.out.println(currCommit.getID());
-                found = true;
-            }
+    /**
+     * Print the IDs of all commits with message COMMITMSG. The messages
+     * are compared in the commit table, split among several threads, and
+     * no commit is read.
+     * @param commitMsg Commit message.
+     * @throws IOException If the commit table cannot be read.
+     */
+    public void find(String commitMsg) throws IOException {
+        CommitTable table = Repo.local().commitTable();
+        byte[] message = commitMsg.getBytes(StandardCharsets.UTF_8);
+        List<ObjectId> found = IntStream.range(0, table.size()).parallel()
+                .filter(k -> table.messageEquals(k, message))
+                .mapToObj(table::id).toList();
+        PrintWriter out = bufferedOutput();
+        for (ObjectId id : found) {
+            out.println(id);
         }
-        if (!found) {
+        out.flush();
+        if (found.isEmpty()) {
             System.out.println("Found no commit with that message.");
         }
     }
 
     public void status() {
-        if (!new File(".gitlet").exists()) {
+        if (!GITLET_DIR.exists()) {
             System.out.println("Not in an initialized Gitlet directory.");
             return;
         }
@@ -533,40 +1407,53 @@ public class Tree {
         removedFileStatus();
 
         System.out.println();
+        renamedFileStatus();
         modifiedAndUntrackedStatus();
     }
 
+    /**
+     * Print the staged additions of new files that rename files staged
+     * for removal, if there are any.
+     */
+    private void renamedFileStatus() {
+        TreeMap<String, ObjectId> added = new TreeMap<>();
+        for (String fileName : _stagingAreaAdd.keySet()) {
+            if (_head.getFile(fileName) == null) {
+                added.put(fileName, _stagingAreaAdd.get(fileName));
+            }
+        }
+        TreeMap<String, String> renames = Renames.detect(_stagingAreaRemove,
+                added, path -> Utils.readObject(BLOB_DIR, added.get(path),
+                        Blob.class).getContents());
+        if (renames.isEmpty()) {
+            return;
+        }
+        System.out.println("=== Renamed Files ===");
+        for (String fileName : renames.keySet()) {
+            System.out.println(renames.get(fileName) + " -> " + fileName);
+        }
+        System.out.println();
+    }
+
     private void modifiedAndUntrackedStatus() {
         ArrayList<String> modifiedNames = new ArrayList<>();
         ArrayList<String> modRemovedNames = new ArrayList<>();
         ArrayList<String> untrackedNames = new ArrayList<>();
+        TreeMap<String, ObjectId> tracked = sparseFiles(_head);
 
-        for (String fileName : _head.getFiles().keySet()) {
-            File cwdFile = new File(CWD, fileName);
-            if (!cwdFile.exists()) {
+        for (String fileName : tracked.keySet()) {
+            if (!workingFileExists(fileName)) {
                 if (!_stagingAreaRemove.containsKey(fileName)) {
                     modRemovedNames.add(fileName);
                 }
-            } else {
-                byte[] contents = Utils.readContents(cwdFile);
-                String blobID = _head.getFiles().get(fileName);
-                Blob blob = Utils.readObject(Utils.join(BLOB_DIR, blobID),
-                        Blob.class);
-                if (!Arrays.equals(contents, blob.getContents())) {
-                    if (_stagingAreaAdd.containsKey(fileName)) {
-                        if (!Arrays.equals(blob.getContents(), contents)) {
-                            modifiedNames.add(fileName);
-                        }
-                    } else {
-                        modifiedNames.add(fileName);
-                    }
-                }
+            } else if (!workingHash(fileName).equals(
+                    tracked.get(fileName))) {
+                modifiedNames.add(fileName);
             }
         }
 
         for (String stagingAdd : _stagingAreaAdd.keySet()) {
-            File file = new File(CWD, stagingAdd);
-            if (!file.exists()) {
+            if (!workingFileExists(stagingAdd)) {
                 modRemovedNames.add(stagingAdd);
             }
         }
@@ -583,18 +1470,24 @@ public class Tree {
         }
         System.out.println();
         System.out.println("=== Untracked Files ===");
-        for (String cwdFileName : CWD.list()) {
+        ArrayList<String> cwdFileNames = new ArrayList<>();
+        if (working() != null) {
+            cwdFileNames.addAll(working().paths());
+        } else {
+            workingFiles(CWD, "", cwdFileNames, _sparse::covers);
+        }
+        for (String cwdFileName : cwdFileNames) {
             if (!_stagingAreaAdd.containsKey(cwdFileName)
-                    && !_head.getFiles().containsKey(cwdFileName)) {
-                File currFile = new File(cwdFileName);
-                if (!currFile.isDirectory() && cwdFileName.charAt(0) != '.') {
-                    untrackedNames.add(cwdFileName);
-                }
+                    && !tracked.containsKey(cwdFileName)) {
+                untrackedNames.add(cwdFileName);
             }
         }
         for (String removedName : untrackedNames) {
             System.out.println(removedName);
         }
+        if (working() != null) {
+            working().save();
+        }
     }
 
     private void removedFileStatus() {
@@ -611,15 +1504,7 @@ public class Tree {
 
     private void stagedFileStatus() {
         System.out.println("=== Staged Files ===");
-        ArrayList<String> stagedNames = new ArrayList<>();
         for (String stagedName : _stagingAreaAdd.keySet()) {
-            Blob blob = Utils.readObject
-                    (Utils.join(BLOB_DIR, _stagingAreaAdd.get(stagedName)),
-                            Blob.class);
-            stagedNames.add(blob.getName());
-        }
-        Collections.sort(stagedNames);
-        for (String stagedName : stagedNames) {
             System.out.println(stagedName);
         }
     }
@@ -647,7 +1532,7 @@ public class Tree {
             return;
         }
         Branch otherBranch = null;
-        for (File branchFile: new File(".gitlet/branches").listFiles()) {
+        for (File branchFile: BRANCHES_DIR.listFiles()) {
             Branch currBranch = Utils.readObject(branchFile, Branch.class);
             if (currBranch.getName().equals(otherBranchName)) {
                 otherBranch = currBranch;
@@ -664,17 +1549,22 @@ public class Tree {
             return;
         }
 
-        for (File file: CWD.listFiles()) {
-            String fileName = file.getName();
-            if (!_head.getFiles().containsKey(fileName)
-                    && fileName.charAt(0) != '.' && file.isFile()) {
-                System.out.println("There is an untracked file in the way; "
-                        + "delete it, or add and commit it first.");
-                return;
-            }
+        ObjectId splitPoint = Branch.splitPoint(_currentBranch, otherBranch);
+        Commit splitPointCommit = Utils.readObject(COMMITS_DIR, splitPoint,
+                Commit.class);
+
+        Commit otherBranchHead = Utils.readObject(COMMITS_DIR,
+                otherBranch.getHeadCommit(), Commit.class);
+
+        TreeSet<String> changed = Directory.changedPaths(
+                splitPointCommit.getTree(), otherBranchHead.getTree());
+        if (untrackedInTheWay(changed, otherBranchHead)
+                || clashInTheWay(changed, otherBranchHead)) {
+            System.out.println("There is an untracked file in the way; "
+                    + "delete it, or add and commit it first.");
+            return;
         }
 
-        String splitPoint = Branch.splitPoint(_currentBranch, otherBranch);
         if (splitPoint.equals(otherBranch.getHeadCommit())) {
             System.out.println("Given branch is an ancestor of "
                     + "the current branch.");
@@ -682,112 +1572,210 @@ public class Tree {
         }
         if (splitPoint.equals(_currentBranch.getHeadCommit())) {
             System.out.println("Current branch fast-forwarded.");
-            checkout(otherBranchName);
+            fastForward(otherBranch, otherBranchHead, changed);
             return;
         }
-        Commit splitPointCommit = Utils.readObject(Utils.join(COMMITS_DIR,
-                        splitPoint), Commit.class);
-
-        Commit otherBranchHead = Utils.readObject(Utils.join(COMMITS_DIR,
-                otherBranch.getHeadCommit()), Commit.class);
 
         boolean conflict = runMergeWithSplitPoint(splitPointCommit,
-                otherBranchHead);
+                otherBranchHead, changed);
         mergeInfoUpdate(otherBranchHead, otherBranch, conflict);
     }
 
     private boolean runMergeWithSplitPoint(Commit splitPointCommit,
-                                           Commit otherBranchHead)
+                                           Commit otherBranchHead,
+                                           Set<String> changed)
             throws IOException {
-        boolean conflict = false;
-        for (String fileName : otherBranchHead.getFiles().keySet()) {
-            File otherBranchFile = Utils.join(BLOB_DIR,
-                    otherBranchHead.getFiles().get(fileName));
-            Blob otherBranchBlob = Utils.readObject
-                    (otherBranchFile, Blob.class);
-            if (splitPointCommit.getFiles().keySet().contains(fileName)) {
-
-                File splitPointFile = Utils.join(BLOB_DIR,
-                        splitPointCommit.getFiles().get(fileName));
-                Blob splitPointBlob = Utils.readObject
-                        (splitPointFile, Blob.class);
-
-                if (!Arrays.equals(otherBranchBlob.getContents(),
-                        splitPointBlob.getContents())) {
-                    if (_head.getFiles().containsKey(fileName)) {
-                        if (_head.getFiles().get(fileName).equals
-                                (splitPointCommit.getFiles().get(fileName))) {
-                            Utils.writeContents(new File(CWD, fileName),
-                                    otherBranchBlob.getContents());
-                            _stagingAreaAdd.put(fileName,
-                                    otherBranchHead.getFiles().get(fileName));
-                        } else {
-                            conflictUpdate(fileName, otherBranchBlob);
-                            conflict = true;
-                        }
+        TreeSet<String> rest = new TreeSet<>(changed);
+        boolean conflict = mergeRenames(splitPointCommit, otherBranchHead,
+                rest);
+        for (String fileName : rest) {
+            ObjectId otherID = otherBranchHead.getFile(fileName);
+            if (otherID == null) {
+                continue;
+            }
+            Blob otherBranchBlob = Utils.readObject(BLOB_DIR, otherID,
+                    Blob.class);
+            ObjectId splitID = splitPointCommit.getFile(fileName);
+            ObjectId headID = _head.getFile(fileName);
+            if (splitID != null) {
+                if (headID != null) {
+                    if (headID.equals(splitID)) {
+                        writeWorkingFile(fileName,
+                                otherBranchBlob.getContents());
+                        _stagingAreaAdd.put(fileName, otherID);
+                    } else {
+                        conflictUpdate(fileName, otherBranchBlob);
+                        conflict = true;
                     }
                 }
             } else {
-                if (_head.getFiles().containsKey(fileName)) {
-                    if (!_head.getFiles().get(fileName).equals
-                            (otherBranchHead.getFiles().get(fileName))) {
+                if (headID != null) {
+                    if (!headID.equals(otherID)) {
                         conflictUpdate(fileName, otherBranchBlob);
                         conflict = true;
                     }
                 } else {
-                    Utils.writeContents(new File(CWD, fileName),
-                            otherBranchBlob.getContents());
-                    _stagingAreaAdd.put(fileName,
-                            otherBranchHead.getFiles().get(fileName));
+                    writeWorkingFile(fileName, otherBranchBlob.getContents());
+                    _stagingAreaAdd.put(fileName, otherID);
                 }
 
             }
         }
 
         conflict = mergeHeadSplitFiles(splitPointCommit,
-                otherBranchHead) || conflict;
+                otherBranchHead, rest) || conflict;
+        return conflict;
+    }
+
+    /**
+     * Merge the files renamed since SPLITPOINTCOMMIT on one branch and
+     * modified on the other, which would otherwise look like a file
+     * deleted on one side and changed on the other. Changes made under
+     * the old path are carried over to the new path, and the paths
+     * handled are removed from CHANGED.
+     * @param splitPointCommit Split point.
+     * @param otherBranchHead Head of the branch being merged.
+     * @param changed Paths that differ between SPLITPOINTCOMMIT and
+     *                OTHERBRANCHHEAD.
+     * @return boolean if a conflict was encountered.
+     */
+    private boolean mergeRenames(Commit splitPointCommit,
+                                 Commit otherBranchHead,
+                                 Set<String> changed) throws IOException {
+        TreeMap<String, ObjectId> otherDeleted = new TreeMap<>();
+        TreeMap<String, ObjectId> otherAdded = new TreeMap<>();
+        TreeMap<String, ObjectId> headDeleted = new TreeMap<>();
+        for (String fileName : changed) {
+            ObjectId splitID = splitPointCommit.getFile(fileName);
+            ObjectId headID = _head.getFile(fileName);
+            ObjectId otherID = otherBranchHead.getFile(fileName);
+            if (splitID != null && otherID == null && headID != null
+                    && !headID.equals(splitID)) {
+                otherDeleted.put(fileName, splitID);
+            } else if (splitID == null && otherID != null
+                    && headID == null) {
+                otherAdded.put(fileName, otherID);
+            } else if (splitID != null && otherID != null
+                    && headID == null) {
+                headDeleted.put(fileName, splitID);
+            }
+        }
+        boolean conflict = false;
+        TreeMap<String, String> renames = Renames.detect(otherDeleted,
+                otherAdded, path -> Utils.readObject(BLOB_DIR,
+                        otherAdded.get(path), Blob.class).getContents());
+        for (String newName : renames.keySet()) {
+            String oldName = renames.get(newName);
+            ObjectId headID = _head.getFile(oldName);
+            ObjectId otherID = otherBranchHead.getFile(newName);
+            if (otherID.equals(otherDeleted.get(oldName))) {
+                Blob headBlob = Utils.readObject(BLOB_DIR, headID,
+                        Blob.class);
+                writeWorkingFile(newName, headBlob.getContents());
+                _stagingAreaAdd.put(newName, headID);
+            } else {
+                conflictUpdate(newName, headID, Utils.readObject(BLOB_DIR,
+                        otherID, Blob.class));
+                conflict = true;
+            }
+            deleteWorkingFile(oldName);
+            _stagingAreaRemove.put(oldName, headID);
+            changed.remove(oldName);
+            changed.remove(newName);
+        }
+        if (headDeleted.isEmpty()) {
+            return conflict;
+        }
+
+        TreeMap<String, ObjectId> headAdded = new TreeMap<>();
+        for (String fileName : Directory.changedPaths(
+                splitPointCommit.getTree(), _head.getTree())) {
+            ObjectId headID = _head.getFile(fileName);
+            if (headID != null && splitPointCommit.getFile(fileName) == null
+                    && otherBranchHead.getFile(fileName) == null) {
+                headAdded.put(fileName, headID);
+            }
+        }
+        renames = Renames.detect(headDeleted, headAdded,
+                path -> Utils.readObject(BLOB_DIR, headAdded.get(path),
+                        Blob.class).getContents());
+        for (String newName : renames.keySet()) {
+            String oldName = renames.get(newName);
+            ObjectId headID = _head.getFile(newName);
+            ObjectId otherID = otherBranchHead.getFile(oldName);
+            Blob otherBlob = Utils.readObject(BLOB_DIR, otherID, Blob.class);
+            if (headID.equals(headDeleted.get(oldName))) {
+                writeWorkingFile(newName, otherBlob.getContents());
+                _stagingAreaAdd.put(newName, otherID);
+            } else {
+                conflictUpdate(newName, headID, otherBlob);
+                conflict = true;
+            }
+            changed.remove(oldName);
+        }
         return conflict;
     }
 
     private boolean mergeHeadSplitFiles(Commit splitPointCommit,
-                                        Commit otherBranchHead)
+                                        Commit otherBranchHead,
+                                        Set<String> changed)
             throws IOException {
         boolean conflict = false;
-        for (String fileName : _head.getFiles().keySet()) {
-            if (splitPointCommit.getFiles().containsKey(fileName)) {
-                if (!splitPointCommit.getFiles().get(fileName).equals
-                        (_head.getFiles().get(fileName))) {
-                    if (!otherBranchHead.getFiles().containsKey(fileName)) {
-                        conflictUpdate(fileName, null);
-                        conflict = true;
-                    }
-                }
+        for (String fileName : changed) {
+            ObjectId splitID = splitPointCommit.getFile(fileName);
+            ObjectId headID = _head.getFile(fileName);
+            if (splitID == null || headID == null
+                    || otherBranchHead.getFile(fileName) != null) {
+                continue;
             }
-        }
-        for (String fileName : splitPointCommit.getFiles().keySet()) {
-            if (_head.getFiles().containsKey(fileName)) {
-                if (_head.getFiles().get(fileName).equals
-                        (splitPointCommit.getFiles().get(fileName))) {
-                    if (!otherBranchHead.getFiles().containsKey
-                            (fileName)) {
-                        new File(CWD, fileName).delete();
-                        _stagingAreaRemove.put(fileName,
-                                splitPointCommit.getFiles().get
-                                        (fileName));
-                    }
-                }
+            if (!splitID.equals(headID)) {
+                conflictUpdate(fileName, null);
+                conflict = true;
+            } else {
+                deleteWorkingFile(fileName);
+                _stagingAreaRemove.put(fileName, splitID);
             }
         }
         return conflict;
     }
 
+    /**
+     * Move the current branch up to the head of OTHERBRANCH, which
+     * descends from it, updating the CHANGED paths in the working
+     * directory.
+     * @param otherBranch Branch being merged.
+     * @param otherBranchHead Head commit of OTHERBRANCH.
+     * @param changed Paths that differ between the two heads.
+     */
+    private void fastForward(Branch otherBranch, Commit otherBranchHead,
+                             Collection<String> changed) {
+        checkoutPaths(changed, otherBranchHead);
+        addHistory(otherBranch, otherBranchHead);
+        _head = otherBranchHead;
+        _currentBranch.setHead(_head.getID());
+        Repo.local().replaceObject(CURRENT_BRANCH, _currentBranch);
+    }
+
+    /**
+     * Add the history of OTHERBRANCH up to OTHERBRANCHHEAD to the current
+     * branch's, so that its commits are logged and can be checked out
+     * from.
+     * @param otherBranch Branch whose commits become reachable.
+     * @param otherBranchHead Head commit of OTHERBRANCH.
+     */
+    private void addHistory(Branch otherBranch, Commit otherBranchHead) {
+        ObjectIdSet history = _currentBranch.getCommits();
+        ObjectIdSet otherHistory = otherBranch.getCommits();
+        int otherHead = otherHistory.indexOf(otherBranchHead.getID());
+        for (int k = 0; k <= otherHead; k += 1) {
+            history.add(otherHistory.get(k));
+        }
+    }
+
     private void mergeInfoUpdate(Commit otherBranchHead, Branch otherBranch,
                                  boolean conflict) throws IOException {
         commit("Merged " + otherBranch.getName() + " into "
-                + _currentBranch.getName() + ".");
-        _head.addParent(otherBranchHead.getID());
-        Utils.writeObject(new File(".gitlet/commits",
-                _head.getID()), _head);
+                + _currentBranch.getName() + ".", otherBranchHead.getID());
         if (conflict) {
             System.out.println("Encountered a merge conflict.");
         }
@@ -795,27 +1783,845 @@ public class Tree {
 
     private void conflictUpdate(String fileName, Blob otherBranchBlob)
             throws IOException {
-        File currentBranchBlobFile = Utils.join(BLOB_DIR,
-                _head.getFiles().get(fileName));
-        Blob currentBranchBlob = Utils.readObject(currentBranchBlobFile,
-                Blob.class);
+        conflictUpdate(fileName, _head.getFile(fileName), otherBranchBlob);
+    }
+
+    /**
+     * Write to FILENAME, and stage, the conflict between the current
+     * branch's blob HEADID and OTHERBRANCHBLOB.
+     * @param fileName Path of file.
+     * @param headID ID of the current branch's version.
+     * @param otherBranchBlob Other branch's version, or null if deleted.
+     */
+    private void conflictUpdate(String fileName, ObjectId headID,
+                                Blob otherBranchBlob) throws IOException {
+        writeWorkingFile(fileName, conflictContents(headID,
+                otherBranchBlob));
+        add(fileName);
+    }
+
+    /**
+     * Returns the contents of a file in conflict between the current
+     * branch's blob HEADID and OTHERBRANCHBLOB.
+     * @param headID ID of the current branch's version, or null if
+     *               deleted.
+     * @param otherBranchBlob Other branch's version, or null if deleted.
+     * @return Both versions between conflict markers.
+     */
+    private static String conflictContents(ObjectId headID,
+                                           Blob otherBranchBlob) {
         String newContent = "<<<<<<< HEAD" + "\n";
-        newContent += new String(currentBranchBlob.getContents(),
-                StandardCharsets.UTF_8);
+        if (headID != null) {
+            Blob currentBranchBlob = Utils.readObject(BLOB_DIR, headID,
+                    Blob.class);
+            newContent += new String(currentBranchBlob.getContents(),
+                    StandardCharsets.UTF_8);
+        }
         newContent += "=======" + "\n";
         if (otherBranchBlob != null) {
             newContent += new String(otherBranchBlob.getContents(),
                     StandardCharsets.UTF_8);
         }
         newContent += ">>>>>>>" + "\n";
-        Utils.writeContents(new File(CWD, fileName), newContent);
-        add(fileName);
+        return newContent;
+    }
+
+    /**
+     * Apply the changes that the commit COMMITID made to its first parent
+     * to the head commit, as a new commit with the same message and time.
+     * The merge of each changed path is decided from blob IDs alone, and
+     * only the working files that change are written. If a path
+     * conflicts, nothing is committed: the changes that merged cleanly are
+     * staged, and the conflicting files are written with conflict markers
+     * to be resolved, added and committed.
+     * @param commitID ID of commit, possibly abbreviated.
+     * @throws IOException If the new commit cannot be stored.
+     */
+    public void cherryPick(String commitID) throws IOException {
+        if (REBASE_FILE.exists()) {
+            System.out.println("A rebase is in progress.");
+            return;
+        }
+        if (!_stagingAreaAdd.isEmpty() || !_stagingAreaRemove.isEmpty()) {
+            System.out.println("You have uncommitted changes.");
+            return;
+        }
+        ObjectId id = findFullID(commitID);
+        if (id == null || !new File(COMMITS_DIR, id.toString()).exists()) {
+            System.out.println("No commit with that id exists.");
+            return;
+        }
+        Rebase pick = new Rebase(_head.getID(),
+                _currentBranch.getCommits().copy(), List.of(id));
+        pick.replay(_head);
+        if (!pick.isStopped() && pick.picked().isEmpty()) {
+            System.out.println("No changes added to the commit");
+            return;
+        }
+        finishReplay(pick, false);
+    }
+
+    /**
+     * Replay the commits of the current branch that are not in the branch
+     * named by OPTIONS onto its head, as by cherry-pick, leaving out
+     * merges and commits whose changes are already there. The new commits
+     * are computed in memory, then stored, and the working tree is
+     * updated once. The branch's history becomes that of the other
+     * branch followed by the new commits. A conflict stops the rebase at
+     * the commit causing it; "--continue" commits the resolved, staged
+     * changes with its message and replays the rest, and "--abort" resets
+     * the branch to where it was.
+     * @param options Branch name, "--continue" or "--abort".
+     * @throws IOException If a commit cannot be stored.
+     */
+    public void rebase(String... options) throws IOException {
+        Rebase rebase = Rebase.read(REBASE_FILE);
+        if (options.length != 1) {
+            System.out.println("Incorrect operands.");
+            return;
+        } else if (options[0].equals("--continue")
+                || options[0].equals("--abort")) {
+            if (rebase == null) {
+                System.out.println("No rebase in progress.");
+            } else if (options[0].equals("--abort")) {
+                Commit origHead = Utils.readObject(COMMITS_DIR,
+                        rebase.origHead(), Commit.class);
+                if (resetTo(origHead, rebase.written())) {
+                    _currentBranch.setCommits(rebase.origHistory());
+                    Repo.local().replaceObject(CURRENT_BRANCH,
+                            _currentBranch);
+                    REBASE_FILE.delete();
+                }
+            } else {
+                Commit stopped = Utils.readObject(COMMITS_DIR,
+                        rebase.stopped(), Commit.class);
+                if (!_stagingAreaAdd.isEmpty()
+                        || !_stagingAreaRemove.isEmpty()) {
+                    commit(stopped.getMessage());
+                }
+                rebase.skip();
+                rebase.replay(_head);
+                finishReplay(rebase, true);
+            }
+            return;
+        } else if (rebase != null) {
+            System.out.println("A rebase is in progress.");
+            return;
+        }
+        rebase(options[0]);
+    }
+
+    /**
+     * Rebase the current branch onto the branch OTHERBRANCHNAME.
+     * @param otherBranchName Name of branch.
+     * @throws IOException If a commit cannot be stored.
+     */
+    private void rebase(String otherBranchName) throws IOException {
+        if (!_stagingAreaAdd.isEmpty() || !_stagingAreaRemove.isEmpty()) {
+            System.out.println("You have uncommitted changes.");
+            return;
+        }
+        Branch otherBranch = null;
+        for (File branchFile : BRANCHES_DIR.listFiles()) {
+            Branch currBranch = Utils.readObject(branchFile, Branch.class);
+            if (currBranch.getName().equals(otherBranchName)) {
+                otherBranch = currBranch;
+                break;
+            }
+        }
+        if (otherBranch == null) {
+            System.out.println("A branch with that name does not exist.");
+            return;
+        }
+        if (_currentBranch.getName().equals(otherBranchName)) {
+            System.out.println("Cannot rebase a branch onto itself.");
+            return;
+        }
+        ObjectId splitPoint = Branch.splitPoint(_currentBranch, otherBranch);
+        Commit otherBranchHead = Utils.readObject(COMMITS_DIR,
+                otherBranch.getHeadCommit(), Commit.class);
+        if (otherBranchHead.getID().equals(splitPoint)) {
+            System.out.println("Current branch is up to date.");
+            return;
+        }
+        if (_head.getID().equals(splitPoint)) {
+            TreeSet<String> changed = Directory.changedPaths(
+                    _head.getTree(), otherBranchHead.getTree());
+            if (untrackedInTheWay(changed, otherBranchHead)
+                    || clashInTheWay(changed, otherBranchHead)) {
+                System.out.println("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+                return;
+            }
+            System.out.println("Current branch fast-forwarded.");
+            fastForward(otherBranch, otherBranchHead, changed);
+            return;
+        }
+        Rebase rebase = new Rebase(_head.getID(), _currentBranch.getCommits(),
+                Rebase.commitsToReplay(_head.getID(),
+                        otherBranchHead.getID()));
+        rebase.replay(otherBranchHead);
+        _currentBranch.setCommits(new ObjectIdSet());
+        addHistory(otherBranch, otherBranchHead);
+        finishReplay(rebase, true);
+    }
+
+    /**
+     * Store the commits of REPLAY on the current branch and bring the
+     * working tree up to date with it, writing only the files that change.
+     * If the replay stopped at a conflict, its clean changes are staged
+     * against the new head, the conflicting files are written with
+     * conflict markers, and the replay is saved, with the paths it wrote,
+     * to be continued if RESUMABLE. Nothing is done if an untracked file
+     * is in the way.
+     * @param replay Replay, after replay.
+     * @param resumable Whether a stopped replay is a rebase to continue.
+     * @throws IOException If a commit cannot be stored.
+     */
+    private void finishReplay(Rebase replay, boolean resumable)
+            throws IOException {
+        TreeSet<String> touched = replay.touched();
+        TreeSet<String> changed = Directory.changedPaths(_head.getTree(),
+                replay.onto().getTree());
+        changed.removeAll(touched);
+        for (String path : touched) {
+            if (replay.conflicts().containsKey(path) || !Objects.equals(
+                    _head.getFile(path), replay.workingFile(path))) {
+                changed.add(path);
+            }
+        }
+        for (String path : changed) {
+            if (_head.getFile(path) == null && workingFileExists(path)
+                    && (replay.workingFile(path) != null
+                    || replay.conflicts().containsKey(path))) {
+                System.out.println("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+                return;
+            }
+        }
+
+        Commit newHead = replay.onto();
+        for (int k = 0; k < replay.picked().size(); k += 1) {
+            Commit original = replay.picked().get(k);
+            TreeMap<String, ObjectId> changes = replay.changes(k);
+            Commit newCommit = new Commit(original.getMessage(),
+                    original.getTime(), original.getOffset());
+            newCommit.addParent(newHead.getID());
+            newCommit.setTree(Directory.update(newHead.getTree(), changes));
+            serializeCommit(newCommit);
+            Repo.local().recordChangedPaths(newCommit.getID(),
+                    changes.keySet());
+            _currentBranch.addCommit(newCommit);
+            newHead = newCommit;
+        }
+        _head = newHead;
+        _currentBranch.setHead(_head.getID());
+        Repo.local().replaceObject(CURRENT_BRANCH, _currentBranch);
+
+        ArrayList<String> unchanged = new ArrayList<>();
+        for (String path : changed) {
+            if (replay.conflicts().containsKey(path)) {
+                ObjectId theirs = replay.conflicts().get(path);
+                writeWorkingFile(path, conflictContents(replay.file(path),
+                        theirs == null ? null : Utils.readObject(BLOB_DIR,
+                                theirs, Blob.class)));
+            } else if (replay.partial().containsKey(path)) {
+                ObjectId blobID = replay.partial().get(path);
+                if (blobID == null) {
+                    deleteWorkingFile(path);
+                } else {
+                    writeWorkingFile(path, Utils.readObject(BLOB_DIR,
+                            blobID, Blob.class).getContents());
+                }
+            } else {
+                unchanged.add(path);
+            }
+        }
+        checkoutPaths(unchanged, _head);
+        for (Map.Entry<String, ObjectId> entry
+                : replay.partial().entrySet()) {
+            ObjectId headID = _head.getFile(entry.getKey());
+            if (entry.getValue() == null && headID != null) {
+                _stagingAreaRemove.put(entry.getKey(), headID);
+            } else if (entry.getValue() != null
+                    && !entry.getValue().equals(headID)) {
+                _stagingAreaAdd.put(entry.getKey(), entry.getValue());
+            }
+        }
+        Repo.local().replaceObject(STAGING_ADD, _stagingAreaAdd);
+        Repo.local().replaceObject(STAGING_REMOVE, _stagingAreaRemove);
+
+        if (!replay.isStopped()) {
+            REBASE_FILE.delete();
+            return;
+        }
+        if (resumable) {
+            replay.wrote(changed);
+            Repo.local().replaceObject(REBASE_FILE, replay);
+        }
+        System.out.println("Encountered a merge conflict.");
+    }
+
+    /**
+     * Returns the files of COMMIT within the sparse-checkout patterns,
+     * reading only the directories that lead to them.
+     * @param commit Commit.
+     * @return Blob IDs of its checked-out files, by path.
+     */
+    private TreeMap<String, ObjectId> sparseFiles(Commit commit) {
+        if (_sparse.isAll()) {
+            return commit.getFiles();
+        }
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        Directory.flatten(commit.getTree(), "", result, _sparse::covers);
+        return result;
+    }
+
+    /**
+     * Run the sparse-checkout subcommand in OPTIONS. "set PATH..." limits
+     * the files checked out in this working tree to those at or beneath
+     * the PATHs, writing the head commit's files that come into the set
+     * and deleting the unchanged ones that leave it. "disable" checks out
+     * every file again, and "list" prints the patterns.
+     * @param options Subcommand and its operands.
+     */
+    public void sparseCheckout(String... options) {
+        Sparse sparse;
+        if (options.length > 1 && options[0].equals("set")) {
+            TreeSet<String> patterns = new TreeSet<>();
+            for (int k = 1; k < options.length; k += 1) {
+                patterns.add(Sparse.pattern(options[k]));
+            }
+            sparse = new Sparse(patterns);
+        } else if (options.length == 1 && options[0].equals("disable")) {
+            sparse = new Sparse(null);
+        } else if (options.length == 1 && options[0].equals("list")) {
+            if (!_sparse.isAll()) {
+                for (String pattern : _sparse.patterns()) {
+                    System.out.println(pattern);
+                }
+            }
+            return;
+        } else {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+
+        TreeMap<String, ObjectId> before = sparseFiles(_head);
+        _sparse = sparse;
+        TreeMap<String, ObjectId> after = sparseFiles(_head);
+        ArrayList<String> entering = new ArrayList<>();
+        for (String path : after.keySet()) {
+            File file = new File(CWD, path);
+            if (before.containsKey(path)) {
+                continue;
+            } else if (file.isFile() && !ObjectId.hash(Utils.readContents(
+                    file)).equals(after.get(path))) {
+                _sparse = Sparse.read(SPARSE_FILE);
+                System.out.println("There is an untracked file in the way;"
+                        + " delete it, or add and commit it first.");
+                return;
+            }
+            entering.add(path);
+        }
+        checkoutPaths(entering, _head);
+        for (String path : before.keySet()) {
+            File file = new File(CWD, path);
+            if (!after.containsKey(path) && file.isFile()
+                    && !_stagingAreaAdd.containsKey(path)
+                    && ObjectId.hash(Utils.readContents(file))
+                    .equals(before.get(path))) {
+                deleteWorkingFile(path);
+            }
+        }
+        if (sparse.isAll()) {
+            SPARSE_FILE.delete();
+        } else {
+            Repo.local().replaceObject(SPARSE_FILE, sparse.patterns());
+        }
+    }
+
+    /**
+     * Verify the integrity of the repository's store, printing each
+     * problem found: objects that are corrupt or do not hash to their
+     * names, objects referred to but missing, and objects nothing refers
+     * to. Objects are checked in parallel, and progress is shown while
+     * running at a terminal. The working tree's head is not read first, so
+     * this runs even when it is damaged.
+     * @throws IOException If the store cannot be listed.
+     */
+    public static void fsck() throws IOException {
+        if (!GITLET_DIR.exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            return;
+        }
+        Fsck fsck = new Fsck(COMMITS_DIR, TREES_DIR, BLOB_DIR,
+                System.console() == null ? null : System.err);
+        ArrayList<File> gitletDirs = new ArrayList<>(List.of(COMMON_DIR));
+        for (String dir : readWorktrees().values()) {
+            gitletDirs.add(new File(dir, GITLET_DIR.getName()));
+        }
+        ArrayList<File> staging = new ArrayList<>();
+        for (File dir : gitletDirs) {
+            File stagingDir = new File(dir, STAGING_ADD.getParentFile()
+                    .getName());
+            staging.add(new File(stagingDir, STAGING_ADD.getName()));
+            staging.add(new File(stagingDir, STAGING_REMOVE.getName()));
+        }
+        fsck.checkRefs(BRANCHES_DIR.listFiles(), staging);
+        for (String problem : fsck.run()) {
+            System.out.println(problem);
+        }
+    }
+
+    /**
+     * Write the files of a commit to an archive without checking them
+     * out. OPTIONS hold the commit's ID, "-o FILE" naming the archive,
+     * and optionally "--format=tar" or "--format=zip"; without a format,
+     * a FILE ending in ".zip" gets a zip archive and any other a tar
+     * archive. The contents are streamed from the blobs, read ahead of
+     * the archive being written.
+     * @param options Commit ID and options.
+     * @throws IOException If a blob cannot be read or the archive written.
+     */
+    public void archive(String... options) throws IOException {
+        String commitName = null;
+        String output = null;
+        String format = null;
+        for (int k = 0; k < options.length; k += 1) {
+            if (options[k].equals("-o") && k + 1 < options.length) {
+                k += 1;
+                output = options[k];
+            } else if (options[k].startsWith("--format=")) {
+                format = options[k].substring("--format=".length());
+            } else if (commitName == null && !options[k].startsWith("-")) {
+                commitName = options[k];
+            } else {
+                commitName = null;
+                break;
+            }
+        }
+        if (commitName == null || output == null) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        if (format == null) {
+            format = output.endsWith(".zip") ? "zip" : "tar";
+        }
+        if (!format.equals("tar") && !format.equals("zip")) {
+            System.out.println("Unknown archive format.");
+            return;
+        }
+        ObjectId commitID = findFullID(commitName);
+        if (commitID == null
+                || !new File(COMMITS_DIR, commitID.toString()).exists()) {
+            System.out.println("No commit with that id exists.");
+            return;
+        }
+        Commit commit = Utils.readObject(COMMITS_DIR, commitID, Commit.class);
+        new Archive(BLOB_DIR, commit.getFiles(), commit.getTime()).write(
+                Files.newOutputStream(resolve(output).toPath()),
+                format.equals("zip"));
+    }
+
+    /**
+     * Import history from a stream in git's fast-import format, read from
+     * the standard input or from the file named by the only one of
+     * OPTIONS. Blobs, snapshots and commits are written straight to the
+     * store, in batches synced only at checkpoints, and branches are
+     * moved once their commits are on disk; neither the working tree nor
+     * the staging area is touched.
+     * @param options Optionally, the file to read.
+     * @throws IOException If the stream cannot be read or objects cannot
+     *                     be written.
+     */
+    public void fastImport(String... options) throws IOException {
+        if (!GITLET_DIR.exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            return;
+        }
+        if (options.length > 1) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        InputStream in = System.in;
+        if (options.length == 1) {
+            File file = resolve(options[0]);
+            if (!file.isFile()) {
+                System.out.println("File does not exist.");
+                return;
+            }
+            in = Files.newInputStream(file.toPath());
+        }
+        try {
+            new FastImport(in, _currentBranch.getCommits().get(0),
+                    System.out).run();
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+        } finally {
+            if (in != System.in) {
+                in.close();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TreeMap<String, String> readRemotes() {
+        if (!REMOTES_FILE.exists()) {
+            return new TreeMap<>();
+        }
+        return Utils.readObject(REMOTES_FILE, TreeMap.class);
+    }
+
+    public void addRemote(String remoteName, String remoteDir) {
+        TreeMap<String, String> remotes = readRemotes();
+        if (remotes.containsKey(remoteName)) {
+            System.out.println("A remote with that name already exists.");
+            return;
+        }
+        remotes.put(remoteName, remoteDir.replace("/", File.separator));
+        Repo.local().replaceObject(REMOTES_FILE, remotes);
+    }
+
+    public void removeRemote(String remoteName) {
+        TreeMap<String, String> remotes = readRemotes();
+        if (remotes.remove(remoteName) == null) {
+            System.out.println("A remote with that name does not exist.");
+            return;
+        }
+        Repo.local().replaceObject(REMOTES_FILE, remotes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TreeMap<String, String> readWorktrees() {
+        if (!WORKTREES_FILE.exists()) {
+            return new TreeMap<>();
+        }
+        return Utils.readObject(WORKTREES_FILE, TreeMap.class);
+    }
+
+    /**
+     * Run the worktree subcommand in OPTIONS. "add PATH BRANCH" makes the
+     * empty directory PATH a working tree of this repository with BRANCH
+     * checked out. The new tree has its own staging area and its own file
+     * for its checked-out branch among the shared branches, but keeps no
+     * objects: it names this repository's store, so adding it costs only
+     * the checkout, whose files are written in parallel. A branch may be
+     * checked out in only one working tree at a time. "list" prints each
+     * working tree's directory and branch, and "remove PATH" forgets the
+     * working tree at PATH, leaving its files.
+     * @param options Subcommand and its operands.
+     * @throws IOException If the worktree cannot be set up.
+     */
+    public void worktree(String... options) throws IOException {
+        if (options.length == 3 && options[0].equals("add")) {
+            addWorktree(resolve(options[1]),
+                    options[2]);
+        } else if (options.length == 2 && options[0].equals("remove")) {
+            removeWorktree(resolve(options[1]));
+        } else if (options.length == 1 && options[0].equals("list")) {
+            TreeMap<String, String> worktrees = readWorktrees();
+            TreeMap<String, String> branches = new TreeMap<>();
+            for (File branchFile : BRANCHES_DIR.listFiles()) {
+                if (Repo.isCheckedOut(branchFile)) {
+                    branches.put(branchFile.getName(), Utils.readObject(
+                            branchFile, Branch.class).getName());
+                }
+            }
+            System.out.println(COMMON_DIR.getAbsoluteFile().getParent()
+                    + " " + branches.get("current"));
+            for (String name : worktrees.keySet()) {
+                System.out.println(worktrees.get(name) + " "
+                        + branches.get("current-" + name));
+            }
+        } else {
+            System.out.println("Incorrect operands.");
+        }
+    }
+
+    /**
+     * Make DIR a working tree of this repository with the branch
+     * BRANCHNAME checked out.
+     * @param dir Directory, which must be missing or empty.
+     * @param branchName Name of branch.
+     * @throws IOException If the branch cannot be moved.
+     */
+    private void addWorktree(File dir, String branchName) throws IOException {
+        String[] names = dir.list();
+        if (dir.exists() && (names == null || names.length > 0)) {
+            System.out.println("Directory is not empty.");
+            return;
+        }
+        File branchFile = Repo.local().branchFile(branchName);
+        if (branchFile == null) {
+            System.out.println("A branch with that name does not exist.");
+            return;
+        }
+        if (Repo.isCheckedOut(branchFile)) {
+            System.out.println("Branch is already checked out.");
+            return;
+        }
+        dir = dir.getCanonicalFile();
+        TreeMap<String, String> worktrees = readWorktrees();
+        String name = dir.getName();
+        for (int k = 2; worktrees.containsKey(name); k += 1) {
+            name = dir.getName() + "-" + k;
+        }
+        File gitletDir = new File(dir, GITLET_DIR.getName());
+        File stagingDir = new File(gitletDir, STAGING_ADD.getParentFile()
+                .getName());
+        stagingDir.mkdirs();
+        Utils.writeObject(new File(stagingDir, STAGING_ADD.getName()),
+                new TreeMap<String, ObjectId>());
+        Utils.writeObject(new File(stagingDir, STAGING_REMOVE.getName()),
+                new TreeMap<String, ObjectId>());
+        Repo.linkWorktree(gitletDir, COMMON_DIR, name);
+        worktrees.put(name, dir.getPath());
+        Repo.local().replaceObject(WORKTREES_FILE, worktrees);
+        File current = new File(BRANCHES_DIR,
+                Repo.currentBranchName(gitletDir));
+        Files.move(branchFile.toPath(), current.toPath(),
+                StandardCopyOption.ATOMIC_MOVE);
+
+        Branch branch = Utils.readObject(current, Branch.class);
+        Commit head = Utils.readObject(COMMITS_DIR, branch.getHeadCommit(),
+                Commit.class);
+        File root = dir;
+        head.getFiles().entrySet().parallelStream().forEach(entry -> {
+            Blob blob = Utils.readObject(BLOB_DIR, entry.getValue(),
+                    Blob.class);
+            File file = new File(root, entry.getKey());
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, blob.getContents());
+        });
+    }
+
+    /**
+     * Forget the working tree at DIR, returning its branch to the shared
+     * branches and deleting its .gitlet directory. Its files are kept.
+     * @param dir Directory of a working tree made by worktree add.
+     * @throws IOException If the branch cannot be moved.
+     */
+    private void removeWorktree(File dir) throws IOException {
+        TreeMap<String, String> worktrees = readWorktrees();
+        String name = null;
+        for (String other : worktrees.keySet()) {
+            if (new File(worktrees.get(other)).equals(
+                    dir.getCanonicalFile())) {
+                name = other;
+            }
+        }
+        File gitletDir = new File(dir, GITLET_DIR.getName());
+        if (name == null || gitletDir.getAbsoluteFile()
+                .equals(GITLET_DIR.getAbsoluteFile())) {
+            System.out.println("No such worktree.");
+            return;
+        }
+        File current = new File(BRANCHES_DIR, "current-" + name);
+        if (current.exists()) {
+            Branch branch = Utils.readObject(current, Branch.class);
+            Files.move(current.toPath(),
+                    Repo.local().newBranchFile(branch).toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        worktrees.remove(name);
+        Repo.local().replaceObject(WORKTREES_FILE, worktrees);
+        deleteAll(gitletDir);
+    }
+
+    /**
+     * Delete FILE and, if it is a directory, everything beneath it.
+     * @param file File or directory.
+     */
+    private static void deleteAll(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Returns the store of the remote called REMOTENAME, printing an error
+     * if it is missing or names its objects with another hash algorithm.
+     * The remote is locked, SHARED if it will only be read.
+     * @param remoteName Name of remote.
+     * @param shared Whether to take a shared lock on the remote.
+     * @return Remote store, or null.
+     * @throws IOException If the remote cannot be locked.
+     */
+    private Repo openRemote(String remoteName, boolean shared)
+            throws IOException {
+        String remoteDir = readRemotes().get(remoteName);
+        Repo remote = remoteDir == null ? null
+                : new Repo(Repo.commonDir(resolve(remoteDir)));
+        if (remote == null || !remote.exists()) {
+            System.out.println("Remote directory not found.");
+            return null;
+        }
+        if (remote.algorithm() != HashAlgorithm.current()) {
+            System.out.println("Remote uses a different hash algorithm.");
+            return null;
+        }
+        if (!remote.isSupported()) {
+            System.out.println("Remote uses an unsupported repository"
+                    + " format.");
+            return null;
+        }
+        remote.lock(shared);
+        return remote;
+    }
+
+    public void push(String remoteName, String remoteBranchName)
+            throws IOException {
+        Repo remote = openRemote(remoteName, false);
+        if (remote == null) {
+            return;
+        }
+        File remoteBranchFile = remote.branchFile(remoteBranchName);
+        Branch remoteBranch;
+        ObjectIdSet common = new ObjectIdSet();
+        ObjectIdSet missing = Repo.local().missingCommits(remote,
+                _head.getID(), common);
+        if (remoteBranchFile == null) {
+            remoteBranch = new Branch(remoteBranchName);
+            remoteBranchFile = remote.newBranchFile(remoteBranch);
+        } else {
+            remoteBranch = Utils.readObject(remoteBranchFile, Branch.class);
+            ObjectId remoteHead = remoteBranch.getHeadCommit();
+            if (!common.contains(remoteHead)
+                    && !Branch.ancestors(_head.getID()).contains(remoteHead)) {
+                System.out.println("Please pull down remote changes "
+                        + "before pushing.");
+                return;
+            }
+        }
+        Repo.local().copyCommits(remote, missing);
+
+        ObjectIdSet history = remoteBranch.getCommits();
+        ObjectIdSet localHistory = _currentBranch.getCommits();
+        int head = localHistory.indexOf(_head.getID());
+        for (int k = 0; k <= head; k += 1) {
+            history.add(localHistory.get(k));
+        }
+        remoteBranch.setHead(_head.getID());
+        remote.replaceObject(remoteBranchFile, remoteBranch);
+    }
+
+    /**
+     * Copy the branch REMOTEBRANCHNAME of the remote REMOTENAME, with the
+     * commits and objects it needs, into the local branch
+     * REMOTENAME/REMOTEBRANCHNAME.
+     * @param remoteName Name of remote.
+     * @param remoteBranchName Name of branch on remote.
+     * @return boolean if the branch was fetched.
+     * @throws IOException If copying fails.
+     */
+    public boolean fetch(String remoteName, String remoteBranchName)
+            throws IOException {
+        Repo remote = openRemote(remoteName, true);
+        if (remote == null) {
+            return false;
+        }
+        File remoteBranchFile = remote.branchFile(remoteBranchName);
+        if (remoteBranchFile == null) {
+            System.out.println("That remote does not have that branch.");
+            return false;
+        }
+        Branch remoteBranch = Utils.readObject(remoteBranchFile, Branch.class);
+        ObjectId remoteHead = remoteBranch.getHeadCommit();
+        remote.copyCommits(Repo.local(), remote.missingCommits(Repo.local(),
+                remoteHead, new ObjectIdSet()));
+
+        String name = remoteName + "/" + remoteBranchName;
+        File branchFile = Repo.local().branchFile(name);
+        Branch branch;
+        if (branchFile == null) {
+            branch = new Branch(name);
+            branchFile = Repo.local().newBranchFile(branch);
+        } else {
+            branch = Utils.readObject(branchFile, Branch.class);
+        }
+        branch.setCommits(remoteBranch.getCommits());
+        branch.setHead(remoteHead);
+        Repo.local().replaceObject(branchFile, branch);
+        return true;
+    }
+
+    /**
+     * Make the empty working directory a clone of the repository at
+     * SOURCE, which may name either that repository's working directory
+     * or its .gitlet directory. The clone shares SOURCE's objects through
+     * hard links where it can, records SOURCE as the remote "origin", and
+     * checks out SOURCE's current branch, writing files in parallel.
+     * @param source Path of repository to clone.
+     * @throws IOException If objects cannot be linked or copied.
+     */
+    public void clone(String source) throws IOException {
+        File sourceDir = resolve(source);
+        if (new File(sourceDir, ".gitlet").isDirectory()) {
+            sourceDir = new File(sourceDir, ".gitlet");
+        }
+        sourceDir = Repo.commonDir(sourceDir);
+        Repo origin = new Repo(sourceDir);
+        if (GITLET_DIR.exists()) {
+            System.out.println("Gitlet version-control system"
+                    + " already exists in the current directory.");
+            return;
+        }
+        if (!origin.exists()) {
+            System.out.println("Remote directory not found.");
+            return;
+        }
+        for (String name : CWD.list()) {
+            if (name.charAt(0) != '.') {
+                System.out.println("Current directory is not empty.");
+                return;
+            }
+        }
+        if (!origin.isSupported()) {
+            System.out.println("Remote uses an unsupported repository"
+                    + " format.");
+            return;
+        }
+        origin.lock(true);
+        Repo local = Repo.local();
+        origin.shareObjectsWith(local);
+        origin.copyRefsTo(local);
+        HashAlgorithm.setCurrent(origin.algorithm());
+        STAGING_ADD.getParentFile().mkdir();
+        _stagingAreaAdd = new TreeMap<>();
+        _stagingAreaRemove = new TreeMap<>();
+        clearStagingArea();
+        TreeMap<String, String> remotes = new TreeMap<>();
+        remotes.put("origin", sourceDir.getPath());
+        Repo.local().replaceObject(REMOTES_FILE, remotes);
+
+        _currentBranch = Utils.readObject(CURRENT_BRANCH, Branch.class);
+        _head = Utils.readObject(COMMITS_DIR, _currentBranch.getHeadCommit(),
+                Commit.class);
+        _head.getFiles().entrySet().parallelStream().forEach(entry -> {
+            Blob blob = Utils.readObject(BLOB_DIR, entry.getValue(),
+                    Blob.class);
+            writeWorkingFile(entry.getKey(), blob.getContents());
+        });
+    }
+
+    public void pull(String remoteName, String remoteBranchName)
+            throws IOException {
+        if (fetch(remoteName, remoteBranchName)) {
+            merge(remoteName + "/" + remoteBranchName);
+        }
     }
 
     private void serializeCommit(Commit initCommit) throws IOException {
-        File commitFile = new File(".gitlet/commits",
-                initCommit.getID());
+        File commitFile = new File(COMMITS_DIR,
+                initCommit.getID().toString());
         commitFile.createNewFile();
         Utils.writeObject(commitFile, initCommit);
+        Repo.local().recordObject(initCommit.getID());
+        Repo.local().recordCommit(initCommit);
     }
 }
@@ -0,0 +1,133 @@
+package gitlet;
+
+import java.util.List;
+
+/**
+ * Renders the differences between two versions of a file in unified diff
+ * format, with CONTEXT lines of unchanged text around each change.
+ * @author Aishik Bhattacharyya
+ */
+class UnifiedDiff {
+
+    /**
+     * Returns the unified diff of the file at PATH from BEFORE to AFTER.
+     * @param path Path of file.
+     * @param before Lines of old version, or null if the file was added.
+     * @param after Lines of new version, or null if the file was deleted.
+     * @return Diff text, ending in a newline, or "" if the versions are
+     *         identical.
+     */
+    static String format(String path, List<String> before,
+                         List<String> after) {
+        return format(path, path, before, after);
+    }
+
+    /**
+     * Returns the unified diff of the file at OLDPATH in its BEFORE
+     * version, renamed to PATH in its AFTER version.
+     * @param oldPath Path of old version.
+     * @param path Path of new version.
+     * @param before Lines of old version, or null if the file was added.
+     * @param after Lines of new version, or null if the file was deleted.
+     * @return Diff text, ending in a newline, or "" if neither the path
+     *         nor the contents changed.
+     */
+    static String format(String oldPath, String path, List<String> before,
+                         List<String> after) {
+        List<String> old = before == null ? List.of() : before;
+        List<String> now = after == null ? List.of() : after;
+        Diff diff = new Diff();
+        diff.setSequences(old, now);
+        int[] edits = diff.diffs();
+        boolean renamed = !oldPath.equals(path);
+        if (edits.length == 0 && (before == null) == (after == null)
+                && !renamed) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder();
+        out.append("diff --git a/").append(oldPath).append(" b/").append(path)
+                .append('\n');
+        if (renamed) {
+            out.append("rename from ").append(oldPath).append('\n');
+            out.append("rename to ").append(path).append('\n');
+            if (edits.length == 0) {
+                return out.toString();
+            }
+        }
+        out.append("--- ")
+                .append(before == null ? "/dev/null" : "a/" + oldPath)
+                .append('\n');
+        out.append("+++ ").append(after == null ? "/dev/null" : "b/" + path)
+                .append('\n');
+        for (int first = 0; first < edits.length; ) {
+            int last = first;
+            while (last + 4 < edits.length
+                    && edits[last + 4] - (edits[last] + edits[last + 1])
+                    <= 2 * CONTEXT) {
+                last += 4;
+            }
+            hunk(out, old, now, edits, first, last);
+            first = last + 4;
+        }
+        return out.toString();
+    }
+
+    /**
+     * Append to OUT the hunk covering EDITS[FIRST .. LAST + 3], edits in
+     * the form produced by Diff.diffs, from OLD to NOW.
+     * @param out Text being built.
+     * @param old Lines of old version.
+     * @param now Lines of new version.
+     * @param edits Edits from OLD to NOW.
+     * @param first Index of first edit of hunk.
+     * @param last Index of last edit of hunk.
+     */
+    private static void hunk(StringBuilder out, List<String> old,
+                             List<String> now, int[] edits, int first,
+                             int last) {
+        int start1 = Math.max(0, edits[first] - CONTEXT);
+        int start2 = edits[first + 2] - (edits[first] - start1);
+        int end1 = Math.min(old.size(),
+                edits[last] + edits[last + 1] + CONTEXT);
+        int end2 = edits[last + 2] + edits[last + 3]
+                + (end1 - edits[last] - edits[last + 1]);
+        out.append("@@ -").append(range(start1, end1 - start1))
+                .append(" +").append(range(start2, end2 - start2))
+                .append(" @@\n");
+        int k = start1;
+        for (int e = first; e <= last; e += 4) {
+            for (; k < edits[e]; k += 1) {
+                out.append(' ').append(old.get(k)).append('\n');
+            }
+            for (int i = 0; i < edits[e + 1]; i += 1) {
+                out.append('-').append(old.get(edits[e] + i)).append('\n');
+            }
+            for (int i = 0; i < edits[e + 3]; i += 1) {
+                out.append('+').append(now.get(edits[e + 2] + i))
+                        .append('\n');
+            }
+            k = edits[e] + edits[e + 1];
+        }
+        for (; k < end1; k += 1) {
+            out.append(' ').append(old.get(k)).append('\n');
+        }
+    }
+
+    /**
+     * Returns the hunk header range of LENGTH lines from line START.
+     * @param start First line, 0-based.
+     * @param length Number of lines.
+     * @return Range as written in a hunk header.
+     */
+    private static String range(int start, int length) {
+        if (length == 1) {
+            return Integer.toString(start + 1);
+        }
+        return (length == 0 ? start : start + 1) + "," + length;
+    }
+
+    /**
+     * Number of unchanged lines shown around each change.
+     */
+    static final int CONTEXT = 3;
+}
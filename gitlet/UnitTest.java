@@ -1,5 +1,9 @@
 package gitlet;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
 import ucb.junit.textui;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -20,6 +24,24 @@ public class UnitTest {
     public void placeholderTest() {
     }
 
+    /** An object as large as the whole write budget, stored after a small
+     *  one still waiting in the caller's batch, is written rather than
+     *  waiting forever for the small one. */
+    @Test(timeout = 60000)
+    public void batchLargeObjectAfterSmall() throws IOException {
+        File dir = Files.createTempDirectory("batch").toFile();
+        byte[] small = new byte[5];
+        byte[] large = new byte[ObjectBatch.MAX_PENDING_BYTES];
+        large[0] = 1;
+        ObjectBatch batch = new ObjectBatch();
+        batch.write(new File(dir, "small"), ObjectId.hash(small), small);
+        batch.write(new File(dir, "large"), ObjectId.hash(large), large);
+        batch.checkpoint();
+        batch.close();
+        assertTrue(new File(dir, "small").isFile());
+        assertTrue(new File(dir, "large").length() > large.length);
+    }
+
 }
 
 
@@ -14,8 +14,6 @@ import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Formatter;
 import java.util.List;
@@ -28,31 +26,20 @@ class Utils {
 
     /* SHA-1 HASH VALUES. */
 
-    /** The length of a complete SHA-1 UID as a hexadecimal numeral. */
-    static final int UID_LENGTH = 40;
-
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
-                }
-            }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
-            }
-            return result.toString();
-        } catch (NoSuchAlgorithmException excp) {
-            throw new IllegalArgumentException("System does not support SHA-1");
+        Formatter result = new Formatter();
+        for (byte b : sha1Bytes(vals)) {
+            result.format("%02x", b);
         }
+        return result.toString();
+    }
+
+    /** Returns the raw bytes of the SHA-1 hash of the concatenation of VALS,
+     *  which may be any mixture of byte arrays and Strings. */
+    static byte[] sha1Bytes(Object... vals) {
+        return HashAlgorithm.SHA1.hash(vals);
     }
 
     /** Returns the SHA-1 hash of the concatenation of the strings in
@@ -152,6 +139,28 @@ class Utils {
         }
     }
 
+    /** Return the object of type T stored under ID in the object directory
+     *  DIR, casting it to EXPECTEDCLASS.  Objects are content-addressed and
+     *  immutable, so repeated reads within one process are answered from
+     *  the shared ObjectCache.  Throws IllegalArgumentException in case of
+     *  problems. */
+    static <T extends Serializable> T readObject(File dir, ObjectId id,
+                                                 Class<T> expectedClass) {
+        ObjectCache cache = ObjectCache.shared();
+        Serializable cached = cache.get(dir, id);
+        if (cached != null) {
+            try {
+                return expectedClass.cast(cached);
+            } catch (ClassCastException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        File file = join(dir, id.toString());
+        T result = readObject(file, expectedClass);
+        cache.put(dir, id, result, file.length());
+        return result;
+    }
+
     /** Write OBJ to FILE. */
     static void writeObject(File file, Serializable obj) {
         writeContents(file, serialize(obj));
@@ -0,0 +1,232 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The files of a working tree as of the last query of its monitor, kept
+ * in the .gitlet directory between commands. Each query asks the monitor
+ * for the paths changed since the epoch and number stored here, and looks
+ * at only those paths on disk: changed files are listed again and their
+ * hashes forgotten, and changed directories are walked again. Hashes of
+ * the files left alone stay valid, so they are computed only when first
+ * needed after a change. When the monitor has started a new epoch, or the
+ * sparse-checkout patterns differ, the whole tree is listed again.
+ * Read-only commands save the state too, while holding only the shared
+ * lock, so saves take a lock of their own and never replace a state
+ * brought further up to date by another command.
+ * @author Aishik Bhattacharyya
+ */
+class WorkingState implements Serializable {
+
+    /**
+     * State of the working tree whose .gitlet directory is GITLETDIR and
+     * whose files are limited by SPARSE, brought up to date through the
+     * tree's monitor.
+     * @param gitletDir A .gitlet directory.
+     * @param sparse Sparse-checkout patterns.
+     * @return State, or null if no monitor is running.
+     */
+    static WorkingState query(File gitletDir, Sparse sparse) {
+        Monitor monitor = Monitor.query(gitletDir);
+        if (monitor == null) {
+            return null;
+        }
+        File file = new File(gitletDir, STATE_FILE);
+        WorkingState state = read(file);
+        if (state == null || !monitor.epoch().equals(state._epoch)
+                || !Objects.equals(sparse.patterns(), state._sparse)) {
+            state = new WorkingState();
+            ArrayList<String> paths = new ArrayList<>();
+            Tree.workingFiles(Tree.CWD, "", paths, sparse::covers);
+            for (String path : paths) {
+                state._files.put(path, null);
+            }
+        } else {
+            for (String path : monitor.changedSince(state._sequence)) {
+                state.rescan(path, sparse);
+            }
+        }
+        state._epoch = monitor.epoch();
+        state._sequence = monitor.sequence();
+        state._sparse = sparse.patterns();
+        state._file = file;
+        state._modified = true;
+        return state;
+    }
+
+    /**
+     * Returns the state stored in FILE.
+     * @param file State file.
+     * @return State, or null if there is none or it cannot be read.
+     */
+    private static WorkingState read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return Utils.readObject(file, WorkingState.class);
+        } catch (IllegalArgumentException excp) {
+            return null;
+        }
+    }
+
+    /**
+     * Bring the entries at and beneath PATH up to date with the disk.
+     * @param path Path of a changed file or directory.
+     * @param sparse Sparse-checkout patterns.
+     */
+    private void rescan(String path, Sparse sparse) {
+        _files.remove(path);
+        _files.subMap(path + "/", path + "0").clear();
+        for (String name : path.split("/")) {
+            if (name.isEmpty() || name.charAt(0) == '.') {
+                return;
+            }
+        }
+        File file = new File(Tree.CWD, path);
+        if (file.isFile() && sparse.covers(path)) {
+            _files.put(path, null);
+        } else if (file.isDirectory() && sparse.covers(path + "/")
+                && !new File(file, ".gitlet").exists()) {
+            ArrayList<String> paths = new ArrayList<>();
+            Tree.workingFiles(file, path + "/", paths, sparse::covers);
+            for (String found : paths) {
+                _files.put(found, null);
+            }
+        }
+    }
+
+    /**
+     * Returns the paths of the working files.
+     * @return Sorted paths.
+     */
+    TreeSet<String> paths() {
+        return new TreeSet<>(_files.keySet());
+    }
+
+    /**
+     * Determine if there is a working file at PATH.
+     * @param path Path of file.
+     * @return boolean if it was present at the query.
+     */
+    boolean contains(String path) {
+        return _files.containsKey(path);
+    }
+
+    /**
+     * Returns the hash of the working file at PATH, if it is known.
+     * @param path Path of file.
+     * @return Blob ID of its contents, or null if it has changed since
+     *         it was last hashed.
+     */
+    ObjectId knownHash(String path) {
+        return _files.get(path);
+    }
+
+    /**
+     * Returns the hash of the working file at PATH, computing and
+     * remembering it if it is not known.
+     * @param path Path of a present file.
+     * @return Blob ID of its contents.
+     */
+    ObjectId hash(String path) {
+        ObjectId result = _files.get(path);
+        if (result == null) {
+            result = ObjectId.hash(Utils.readContents(
+                    new File(Tree.CWD, path)));
+            remember(path, result);
+        }
+        return result;
+    }
+
+    /**
+     * Record that the working file at PATH hashes to ID.
+     * @param path Path of a present file.
+     * @param id Blob ID of its contents.
+     */
+    void remember(String path, ObjectId id) {
+        if (_files.containsKey(path)) {
+            _files.put(path, id);
+            _modified = true;
+        }
+    }
+
+    /**
+     * Write this state back to the .gitlet directory if it has changed,
+     * unless the stored state has since been brought up to a later
+     * change of the same epoch.
+     */
+    void save() {
+        if (!_modified) {
+            return;
+        }
+        File lockFile = new File(_file.getParentFile(), LOCK_FILE);
+        try (FileChannel channel = FileChannel.open(lockFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            WorkingState stored = read(_file);
+            if (stored == null || !_epoch.equals(stored._epoch)
+                    || stored._sequence <= _sequence) {
+                Repo.local().replaceObject(_file, this);
+            }
+            _modified = false;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * File in the .gitlet directory holding the state.
+     */
+    private static final String STATE_FILE = "monitor-state";
+
+    /**
+     * File in the .gitlet directory locked while the state is saved.
+     */
+    private static final String LOCK_FILE = "monitor-state.lock";
+
+    /**
+     * Epoch of the monitor at the last query.
+     */
+    private String _epoch;
+
+    /**
+     * Number of the monitor's latest change at the last query.
+     */
+    private long _sequence;
+
+    /**
+     * Sparse-checkout patterns the files were listed under.
+     */
+    private TreeSet<String> _sparse;
+
+    /**
+     * Hash of each working file, or null where it is not known.
+     */
+    private final TreeMap<String, ObjectId> _files = new TreeMap<>();
+
+    /**
+     * File the state is stored in.
+     */
+    private transient File _file;
+
+    /**
+     * Whether the state differs from the stored one.
+     */
+    private transient boolean _modified;
+
+    /**
+     * Version of the serialized form of a working state, kept in step with
+     * Repo.FORMAT.
+     */
+    private static final long serialVersionUID = 1L;
+}
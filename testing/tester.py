@@ -1,9 +1,9 @@
 import sys, re
 from subprocess import \
      check_output, PIPE, STDOUT, DEVNULL, CalledProcessError, TimeoutExpired
-from os.path import abspath, basename, dirname, exists, join, splitext
+from os.path import abspath, basename, dirname, exists, join, splitext, isdir
 from getopt import getopt, GetoptError
-from os import chdir, environ, getcwd, mkdir, remove, access, W_OK
+from os import chdir, environ, getcwd, mkdir, remove, rmdir, access, W_OK
 from shutil import copyfile, rmtree
 from math import log
 
@@ -51,7 +51,7 @@ The instructions each have one of the following forms:
    + NAME F
           Copy the contents of src/F into a file named NAME.
    - NAME
-          Delete the file named NAME.
+          Delete the file, or empty directory, named NAME.
    > COMMAND OPERANDS
    LINE1
    LINE2
@@ -146,7 +146,10 @@ def cleanTempDir(dir):
 
 def doDelete(name, dir):
     try:
-        remove(join(dir, name))
+        if isdir(join(dir, name)):
+            rmdir(join(dir, name))
+        else:
+            remove(join(dir, name))
     except OSError:
         pass
 